@@ -0,0 +1,83 @@
+package com.persistence.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.persistence.PersistenceFramework;
+
+/**
+ * Shared-repository lookups from a parameterized number of threads. Each invocation has every thread
+ * run {@value #LOOKUPS_PER_THREAD} {@code findById} calls, so the score shows how total latency grows
+ * as threads contend for the connection pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentReadBenchmark {
+    private static final int LOOKUPS_PER_THREAD = 100;
+
+    @Param({ "1", "4", "16" })
+    public int threads;
+
+    @Param({ "1000" })
+    public int rows;
+
+    private PersistenceFramework users;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = InMemoryDatabase.start("concurrent_reads", 8);
+        users.insertAll(InMemoryDatabase.users(0, rows));
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        InMemoryDatabase.stop();
+    }
+
+    @Benchmark
+    public int findByIdFromThreads() throws Exception {
+        List<Future<Integer>> results = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * LOOKUPS_PER_THREAD;
+            results.add(executor.submit(() -> {
+                int found = 0;
+                for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                    if (users.findById((offset + i) % rows) != null) {
+                        found++;
+                    }
+                }
+                return found;
+            }));
+        }
+        int found = 0;
+        for (Future<Integer> result : results) {
+            found += result.get();
+        }
+        return found;
+    }
+}
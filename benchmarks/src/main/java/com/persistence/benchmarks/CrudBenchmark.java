@@ -0,0 +1,92 @@
+package com.persistence.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.model.User;
+import com.persistence.query.Operator;
+
+/**
+ * End-to-end CRUD through {@link PersistenceFramework} against an in-memory database. Each
+ * invocation handles {@code rows} entities; the table is preloaded with {@code rows} entities for the
+ * read benchmarks, and rows written by the insert benchmarks are removed after every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrudBenchmark {
+    private static final int WRITE_ID_BASE = 1_000_000;
+
+    @Param({ "1", "100", "1000" })
+    public int rows;
+
+    private PersistenceFramework users;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = InMemoryDatabase.start("crud", 4);
+        users.insertAll(InMemoryDatabase.users(0, rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        InMemoryDatabase.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetWrites() {
+        nextId = WRITE_ID_BASE;
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeWrites() {
+        users.deleteAll(users.query().where("id", Operator.GE, WRITE_ID_BASE).list());
+    }
+
+    @Benchmark
+    public void insertSingle() {
+        for (User user : InMemoryDatabase.users(nextId, rows)) {
+            users.insert(user);
+        }
+        nextId += rows;
+    }
+
+    @Benchmark
+    public int[] insertBatched() {
+        int[] results = users.insertAll(InMemoryDatabase.users(nextId, rows));
+        nextId += rows;
+        return results;
+    }
+
+    @Benchmark
+    public void findById(Blackhole blackhole) {
+        for (int id = 0; id < rows; id++) {
+            blackhole.consume(users.findById(id));
+        }
+    }
+
+    @Benchmark
+    public List<Object> findAll() {
+        return users.findAll();
+    }
+}
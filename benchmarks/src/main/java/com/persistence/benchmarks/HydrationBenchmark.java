@@ -0,0 +1,112 @@
+package com.persistence.benchmarks;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.persistence.mapping.EntityMapper;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.model.User;
+import com.persistence.sql.SqlTemplates;
+import com.persistence.utils.ColumnHelper;
+
+/**
+ * Cost of turning rows of an already-executed, scrollable result set into entities, with the
+ * generated {@link EntityMapper} and with the by-name reflective mapping it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HydrationBenchmark {
+    @Param({ "1", "100", "10000" })
+    public int rows;
+
+    private Connection connection;
+    private ResultSet resultSet;
+    private EntityMapper mapper;
+    private List<Field> fields;
+    private String[] columnNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(InMemoryDatabase.URL_PREFIX + "hydration"
+                + InMemoryDatabase.URL_OPTIONS, "sa", "");
+        EntityMetadata metadata = EntityMetadataRegistry.get(User.class);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE " + metadata.getTableName()
+                    + " (id INTEGER PRIMARY KEY, name VARCHAR(255), email VARCHAR(255))");
+        }
+        SqlTemplates templates = new SqlTemplates(metadata);
+        try (PreparedStatement insert = connection.prepareStatement(templates.insert())) {
+            for (User user : InMemoryDatabase.users(0, rows)) {
+                metadata.getMapper().bindAll(insert, 1, user);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        resultSet = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)
+                .executeQuery(templates.selectAll());
+
+        mapper = metadata.getMapper();
+        ColumnHelper columnHelper = new ColumnHelper();
+        fields = columnHelper.getAnnotatedFields(User.class);
+        columnNames = new String[fields.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = columnHelper.getColumnName(fields.get(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        resultSet.getStatement().close();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public void generatedMapper(Blackhole blackhole) throws Exception {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            blackhole.consume(mapper.map(resultSet));
+        }
+    }
+
+    @Benchmark
+    public void reflectiveByName(Blackhole blackhole) throws Exception {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            Object entity = User.class.getDeclaredConstructor().newInstance();
+            for (int i = 0; i < columnNames.length; i++) {
+                fields.get(i).set(entity, resultSet.getObject(columnNames[i]));
+            }
+            blackhole.consume(entity);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.persistence.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.DbConnection;
+import com.persistence.model.User;
+
+/**
+ * Starts the framework against an in-memory H2 database in PostgreSQL mode, so the end-to-end
+ * benchmarks run offline and measure the framework rather than the network.
+ */
+final class InMemoryDatabase {
+    static final String URL_PREFIX = "jdbc:h2:mem:";
+    static final String URL_OPTIONS = ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private InMemoryDatabase() {
+    }
+
+    static PersistenceFramework start(String name, int poolSize) {
+        Properties properties = new Properties();
+        properties.setProperty("db.url", URL_PREFIX + name + URL_OPTIONS);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+        properties.setProperty("db.driver", "org.h2.Driver");
+        properties.setProperty("db.pool.minSize", String.valueOf(poolSize));
+        properties.setProperty("db.pool.maxSize", String.valueOf(poolSize));
+        DbConnection.initialize(properties);
+
+        PersistenceFramework users = new PersistenceFramework(User.class);
+        users.initializeSchema();
+        return users;
+    }
+
+    static void stop() {
+        DbConnection.closeDbConnection();
+    }
+
+    static List<User> users(int firstId, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = firstId + i;
+            users.add(new User(id, "user-" + id, "user" + id + "@example.com"));
+        }
+        return users;
+    }
+}
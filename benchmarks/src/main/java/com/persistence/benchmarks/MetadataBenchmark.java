@@ -0,0 +1,61 @@
+package com.persistence.benchmarks;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.model.User;
+import com.persistence.utils.ColumnHelper;
+
+/**
+ * Cost of the per-call metadata lookups every CRUD operation used to repeat through reflection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+    private ColumnHelper columnHelper;
+    private Field nameField;
+
+    @Setup
+    public void setUp() throws NoSuchFieldException {
+        columnHelper = new ColumnHelper();
+        nameField = User.class.getDeclaredField("name");
+    }
+
+    @Benchmark
+    public EntityMetadata registryLookup() {
+        return EntityMetadataRegistry.get(User.class);
+    }
+
+    @Benchmark
+    public List<Field> annotatedFields() {
+        return columnHelper.getAnnotatedFields(User.class);
+    }
+
+    @Benchmark
+    public Field primaryKeyField() {
+        return columnHelper.getPrimaryKeyField(User.class);
+    }
+
+    @Benchmark
+    public String columnName() {
+        return columnHelper.getColumnName(nameField);
+    }
+}
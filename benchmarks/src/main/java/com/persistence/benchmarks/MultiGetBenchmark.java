@@ -0,0 +1,74 @@
+package com.persistence.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.persistence.PersistenceFramework;
+
+/**
+ * Resolving a page of random ids: one {@link PersistenceFramework#findById} per id against a single
+ * {@link PersistenceFramework#findAllById} statement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiGetBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({ "10", "500" })
+    public int ids;
+
+    private PersistenceFramework users;
+    private List<Object> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = InMemoryDatabase.start("multiget", 4);
+        users.insertAll(InMemoryDatabase.users(0, ROWS));
+        List<Object> all = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            all.add(i);
+        }
+        Collections.shuffle(all, new Random(42));
+        page = new ArrayList<>(all.subList(0, ids));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        InMemoryDatabase.stop();
+    }
+
+    @Benchmark
+    public void findByIdLoop(Blackhole blackhole) {
+        for (Object id : page) {
+            blackhole.consume(users.findById(id));
+        }
+    }
+
+    @Benchmark
+    public Map<Object, Object> findAllById() {
+        return users.findAllById(page);
+    }
+}
@@ -0,0 +1,65 @@
+package com.persistence.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.persistence.PersistenceFramework;
+
+/**
+ * Full-table processing with {@link PersistenceFramework#parallelScan} as the partition count grows.
+ * Each row costs {@code work} units of CPU so that the scan is bound by row processing, as in an
+ * analytics job; {@code partitions = 1} is the sequential baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int partitions;
+
+    @Param({ "200" })
+    public int work;
+
+    private PersistenceFramework users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = InMemoryDatabase.start("scan", 8);
+        users.insertAll(InMemoryDatabase.users(0, ROWS));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        InMemoryDatabase.stop();
+    }
+
+    @Benchmark
+    public long parallelScan() {
+        LongAdder checksum = new LongAdder();
+        users.parallelScan(partitions, user -> {
+            Blackhole.consumeCPU(work);
+            checksum.add(user.hashCode());
+        });
+        return checksum.sum();
+    }
+}
@@ -0,0 +1,89 @@
+package com.persistence.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.model.User;
+import com.persistence.query.Direction;
+import com.persistence.query.Operator;
+import com.persistence.query.Query;
+import com.persistence.query.QueryPlanCache;
+import com.persistence.sql.SqlTemplates;
+
+/**
+ * Cost of producing SQL text: rendering an entity's templates from scratch, fetching cached
+ * templates, and compiling a query-builder shape with and without the plan cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlGenerationBenchmark {
+    @Param({ "1", "100", "1000" })
+    public int rows;
+
+    private EntityMetadata metadata;
+    private SqlTemplates templates;
+    private QueryPlanCache planCache;
+
+    @Setup
+    public void setUp() {
+        metadata = EntityMetadataRegistry.get(User.class);
+        templates = new SqlTemplates(metadata);
+        planCache = new QueryPlanCache();
+    }
+
+    @Benchmark
+    public SqlTemplates renderTemplates() {
+        return new SqlTemplates(metadata);
+    }
+
+    @Benchmark
+    public String cachedUpdate() {
+        return templates.update();
+    }
+
+    @Benchmark
+    public String renderMultiRowInsert() {
+        return new SqlTemplates(metadata).insertMultiRow(rows);
+    }
+
+    @Benchmark
+    public String cachedMultiRowInsert() {
+        return templates.insertMultiRow(rows);
+    }
+
+    @Benchmark
+    public String compileQuery() {
+        return shape(new QueryPlanCache()).toSql();
+    }
+
+    @Benchmark
+    public String cachedQuery() {
+        return shape(planCache).toSql();
+    }
+
+    private Query shape(QueryPlanCache cache) {
+        // toSql() never touches the database, so no connection is needed
+        return new Query(metadata, null, cache)
+                .where("name", Operator.LIKE, "user-%")
+                .orderBy("id", Direction.ASC)
+                .after(rows)
+                .limit(rows);
+    }
+}
@@ -0,0 +1,245 @@
+package com.persistence.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.ManyToOne;
+import com.persistence.annotation.OneToMany;
+import com.persistence.annotation.Version;
+import com.persistence.mapping.GeneratedEntity;
+
+/**
+ * Generates a {@link GeneratedEntity} for every {@link Entity} class, so that the runtime maps it with
+ * plain field access instead of method handles built by reflection at startup.
+ * <p>
+ * Columns of primitive and {@code String} type get a generated accessor. A non-private field is read
+ * and written directly; a private one through its getter and setter, which must do nothing but get
+ * and set the field. Any other column, and a field with no usable access path, keeps its reflective
+ * accessor. A class that generated code in its package cannot reach is skipped with a note.
+ */
+@SupportedAnnotationTypes("com.persistence.annotation.Entity")
+public class EntityProcessor extends AbstractProcessor {
+    private static final Map<TypeKind, String[]> PRIMITIVES = new HashMap<>();
+
+    static {
+        // JDBC type suffix and conversion from a boxed column value
+        PRIMITIVES.put(TypeKind.INT, new String[] { "Int", "((Number) value).intValue()" });
+        PRIMITIVES.put(TypeKind.LONG, new String[] { "Long", "((Number) value).longValue()" });
+        PRIMITIVES.put(TypeKind.SHORT, new String[] { "Short", "((Number) value).shortValue()" });
+        PRIMITIVES.put(TypeKind.DOUBLE, new String[] { "Double", "((Number) value).doubleValue()" });
+        PRIMITIVES.put(TypeKind.FLOAT, new String[] { "Float", "((Number) value).floatValue()" });
+        PRIMITIVES.put(TypeKind.BOOLEAN, new String[] { "Boolean", "((Boolean) value).booleanValue()" });
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            TypeElement entity = (TypeElement) element;
+            if (!isReachable(entity)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "No mapping generated for " + entity + ": generated code cannot reach the class", entity);
+                continue;
+            }
+            try {
+                generate(entity);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Cannot write mapping of " + entity + ": " + e.getMessage(), entity);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement entity) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + GeneratedEntity.SUFFIX;
+        String entityType = entity.getQualifiedName().toString();
+
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            if (field.getAnnotation(OneToMany.class) == null && (field.getAnnotation(Column.class) != null
+                    || field.getAnnotation(ManyToOne.class) != null || field.getAnnotation(Version.class) != null)) {
+                fields.add(field);
+            }
+        }
+
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Mapping of {@link ").append(entityType).append("}, generated by ")
+                .append(EntityProcessor.class.getName()).append(". Do not edit.\n */\n");
+        src.append("public final class ").append(simpleName)
+                .append(" implements com.persistence.mapping.GeneratedEntity {\n");
+
+        src.append("    @Override\n    public String[] fieldNames() {\n        return new String[] {");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? " " : ", ").append('"').append(fields.get(i).getSimpleName()).append('"');
+        }
+        src.append(" };\n    }\n\n");
+
+        src.append("    @Override\n    public Class<?>[] fieldTypes() {\n        return new Class<?>[] {");
+        for (int i = 0; i < fields.size(); i++) {
+            TypeMirror type = processingEnv.getTypeUtils().erasure(fields.get(i).asType());
+            src.append(i == 0 ? " " : ", ").append(type).append(".class");
+        }
+        src.append(" };\n    }\n\n");
+
+        src.append("    @Override\n    public com.persistence.mapping.ColumnAccessor accessor(String fieldName) {\n")
+                .append("        switch (fieldName) {\n");
+        for (VariableElement field : fields) {
+            if (field.getAnnotation(ManyToOne.class) == null) {
+                appendAccessor(src, entity, entityType, field);
+            }
+        }
+        src.append("        default:\n            return null;\n        }\n    }\n\n");
+
+        src.append("    @Override\n    public java.util.function.Supplier<Object> instantiator() {\n");
+        src.append(hasReachableConstructor(entity) ? "        return " + entityType + "::new;\n"
+                : "        return null;\n");
+        src.append("    }\n}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, entity).openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    private void appendAccessor(StringBuilder src, TypeElement entity, String entityType, VariableElement field) {
+        TypeMirror type = field.asType();
+        String jdbcType;
+        String fromValue;
+        if (PRIMITIVES.containsKey(type.getKind())) {
+            jdbcType = PRIMITIVES.get(type.getKind())[0];
+            fromValue = PRIMITIVES.get(type.getKind())[1];
+        } else if (type.toString().equals("java.lang.String")) {
+            jdbcType = "String";
+            fromValue = "(String) value";
+        } else {
+            return;
+        }
+        String name = field.getSimpleName().toString();
+        String target = "((" + entityType + ") entity)";
+        boolean direct = !field.getModifiers().contains(Modifier.PRIVATE);
+        String getter = direct ? name : accessorMethod(entity, field, true);
+        String setter = direct && !field.getModifiers().contains(Modifier.FINAL) ? name
+                : accessorMethod(entity, field, false);
+        if (getter == null || setter == null) {
+            return;
+        }
+        String read = getter.equals(name) ? target + "." + name : target + "." + getter + "()";
+        String write = setter.equals(name) ? target + "." + name + " = %s;" : target + "." + setter + "(%s);";
+
+        src.append("        case \"").append(name).append("\":\n")
+                .append("            return new com.persistence.mapping.ColumnAccessor() {\n")
+                .append("                @Override\n")
+                .append("                public void read(java.sql.ResultSet resultSet, int index, Object entity)\n")
+                .append("                        throws java.sql.SQLException {\n")
+                .append("                    ").append(String.format(write, "resultSet.get" + jdbcType + "(index)"))
+                .append("\n                }\n\n")
+                .append("                @Override\n")
+                .append("                public void bind(java.sql.PreparedStatement pStmt, int index,")
+                .append(" Object entity)\n")
+                .append("                        throws java.sql.SQLException {\n")
+                .append("                    pStmt.set").append(jdbcType).append("(index, ").append(read).append(");\n")
+                .append("                }\n\n")
+                .append("                @Override\n")
+                .append("                public Object get(Object entity) {\n")
+                .append("                    return ").append(read).append(";\n")
+                .append("                }\n\n")
+                .append("                @Override\n")
+                .append("                public void set(Object entity, Object value) {\n")
+                .append("                    ").append(String.format(write, fromValue)).append('\n')
+                .append("                }\n")
+                .append("            };\n");
+    }
+
+    /**
+     * @return the name of the field's non-private JavaBean getter or setter, or {@code null} if it has none
+     */
+    private String accessorMethod(TypeElement entity, VariableElement field, boolean getter) {
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        TypeMirror type = field.asType();
+        for (ExecutableElement method : ElementFilter.methodsIn(entity.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            if (getter && method.getParameters().isEmpty()
+                    && (methodName.equals("get" + capitalized)
+                            || (type.getKind() == TypeKind.BOOLEAN && methodName.equals("is" + capitalized)))
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) {
+                return methodName;
+            }
+            if (!getter && methodName.equals("set" + capitalized) && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                return methodName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether code in the entity's package can name the class: neither it nor an enclosing class
+     *         is private, and a nested class is static
+     */
+    private static boolean isReachable(TypeElement entity) {
+        for (Element element = entity; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (element.getEnclosingElement() instanceof TypeElement
+                    && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasReachableConstructor(TypeElement entity) {
+        if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return false;
+    }
+}
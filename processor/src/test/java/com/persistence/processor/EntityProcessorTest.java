@@ -0,0 +1,145 @@
+package com.persistence.processor;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.DbConnection;
+import com.persistence.mapping.ColumnAccessor;
+import com.persistence.mapping.GeneratedEntity;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Compiles sample entities with the processor and maps them through the generated classes.
+ */
+public class EntityProcessorTest
+    extends TestCase
+{
+    private static final String PRODUCT = "package shop;\n"
+            + "import com.persistence.annotation.*;\n"
+            + "@Entity\n"
+            + "public class Product {\n"
+            + "    @Column(primaryKey = true, nullable = false) int id;\n"
+            + "    @Column private String name;\n"
+            + "    @Column private double price;\n"
+            + "    @Column java.math.BigDecimal weight;\n"
+            + "    @Version long version;\n"
+            + "    public String getName() { return name; }\n"
+            + "    public void setName(String name) { this.name = name; }\n"
+            + "    @Entity public static class Tag {\n"
+            + "        @Column(primaryKey = true) String code;\n"
+            + "    }\n"
+            + "}\n";
+
+    private Path workDir;
+
+    public EntityProcessorTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( EntityProcessorTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        workDir = Files.createTempDirectory( "entity-processor" );
+        Properties properties = new Properties();
+        properties.setProperty( "db.url", "jdbc:h2:mem:" + getName() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1" );
+        properties.setProperty( "db.user", "sa" );
+        properties.setProperty( "db.password", "" );
+        properties.setProperty( "db.driver", "org.h2.Driver" );
+        DbConnection.initialize( properties );
+    }
+
+    protected void tearDown() throws Exception
+    {
+        DbConnection.closeDbConnection();
+        try ( Stream<Path> files = Files.walk( workDir ) )
+        {
+            files.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+        }
+    }
+
+    public void testGeneratedMappingIsUsedAndRoundTrips() throws Exception
+    {
+        ClassLoader loader = compile( "shop/Product.java", PRODUCT );
+        Class<?> product = loader.loadClass( "shop.Product" );
+        GeneratedEntity generated = (GeneratedEntity) loader.loadClass( "shop.Product_Mapping" ).newInstance();
+        assertEquals( Arrays.asList( "id", "name", "price", "weight", "version" ),
+                Arrays.asList( generated.fieldNames() ) );
+        assertNull( "BigDecimal keeps the reflective accessor", generated.accessor( "weight" ) );
+        assertNotNull( generated.instantiator() );
+        assertNotNull( loader.loadClass( "shop.Product_Tag_Mapping" ) );
+
+        EntityMetadata metadata = EntityMetadataRegistry.get( product );
+        for ( String field : new String[] { "id", "name", "version" } )
+        {
+            ColumnAccessor accessor = metadata.getColumn( field ).getAccessor();
+            assertTrue( field, accessor.getClass().getName().startsWith( "shop.Product_Mapping" ) );
+        }
+        // private, without getter and setter
+        assertFalse( metadata.getColumn( "price" ).getAccessor().getClass().getName().startsWith( "shop." ) );
+
+        PersistenceFramework products = new PersistenceFramework( product );
+        products.initializeSchema();
+        Object entity = metadata.getMapper().newInstance();
+        metadata.getColumn( "id" ).getAccessor().set( entity, 7 );
+        metadata.getColumn( "name" ).getAccessor().set( entity, "lamp" );
+        metadata.getColumn( "price" ).getAccessor().set( entity, 19.5 );
+        metadata.getColumn( "weight" ).getAccessor().set( entity, new java.math.BigDecimal( "1.25" ) );
+        products.insert( entity );
+
+        Object found = products.findById( 7 );
+        assertEquals( "lamp", metadata.getColumn( "name" ).get( found ) );
+        assertEquals( 19.5, metadata.getColumn( "price" ).get( found ) );
+        assertEquals( 0, new java.math.BigDecimal( "1.25" ).compareTo(
+                (java.math.BigDecimal) metadata.getColumn( "weight" ).get( found ) ) );
+    }
+
+    public void testStaleMappingFallsBackToReflection() throws Exception
+    {
+        compile( "shop/Product.java", PRODUCT );
+        // recompile the entity alone, as an IDE might, leaving the old mapping behind
+        String changed = PRODUCT.replace( "@Column private double price;", "@Column private long price;" );
+        Files.write( workDir.resolve( "shop/Product.java" ), changed.getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( 0, ToolProvider.getSystemJavaCompiler().run( null, null, null, "-proc:none", "-d",
+                workDir.toString(), "-cp", System.getProperty( "java.class.path" ),
+                workDir.resolve( "shop/Product.java" ).toString() ) );
+        ClassLoader loader = new URLClassLoader( new URL[] { workDir.toUri().toURL() }, getClass().getClassLoader() );
+
+        EntityMetadata metadata = EntityMetadataRegistry.get( loader.loadClass( "shop.Product" ) );
+        assertFalse( metadata.getColumn( "id" ).getAccessor().getClass().getName().startsWith( "shop." ) );
+    }
+
+    private ClassLoader compile( String path, String source ) throws Exception
+    {
+        Path file = workDir.resolve( path );
+        Files.createDirectories( file.getParent() );
+        Files.write( file, source.getBytes( StandardCharsets.UTF_8 ) );
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int status = compiler.run( null, null, null, "-processor", EntityProcessor.class.getName(),
+                "-d", workDir.toString(), "-s", workDir.toString(),
+                "-cp", System.getProperty( "java.class.path" ) + File.pathSeparator + workDir, file.toString() );
+        assertEquals( 0, status );
+        return new URLClassLoader( new URL[] { workDir.toUri().toURL() }, getClass().getClassLoader() );
+    }
+}
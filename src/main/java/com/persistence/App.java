@@ -1,5 +1,6 @@
 package com.persistence;
 
+import com.persistence.db.DbConnection;
 import com.persistence.model.User;
 
 public class App {
@@ -26,6 +27,7 @@ public class App {
             e.printStackTrace();
         } finally {
             persistenceFramework.close();
+            DbConnection.closeDbConnection();
         }
     }
 }
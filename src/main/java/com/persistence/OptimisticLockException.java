@@ -0,0 +1,24 @@
+package com.persistence;
+
+/**
+ * Thrown when an UPDATE or DELETE of a {@link com.persistence.annotation.Version versioned} entity
+ * matches no row: another writer changed or deleted the row since the entity was read. The entity is
+ * left as it was; re-read it and reapply the change, for example with {@link OptimisticRetry}.
+ */
+public class OptimisticLockException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object entity;
+
+    public OptimisticLockException(String message, Object entity) {
+        super(message);
+        this.entity = entity;
+    }
+
+    /**
+     * @return the stale entity
+     */
+    public Object getEntity() {
+        return entity;
+    }
+}
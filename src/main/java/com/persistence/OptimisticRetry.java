@@ -0,0 +1,64 @@
+package com.persistence;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a read-modify-write unit of work when it loses an optimistic lock race. The work must
+ * re-read the entities it changes on every attempt; attempts are separated by a short randomized,
+ * exponentially growing pause so that competing writers spread out instead of colliding again.
+ *
+ * <pre>
+ * OptimisticRetry.run(5, () -&gt; {
+ *     Account account = (Account) accounts.findById(id);
+ *     account.setBalance(account.getBalance() + amount);
+ *     accounts.update(account);
+ * });
+ * </pre>
+ */
+public final class OptimisticRetry {
+    private static final long BASE_BACKOFF_MICROS = 500;
+    private static final long MAX_BACKOFF_MICROS = 100_000;
+
+    private OptimisticRetry() {
+    }
+
+    /**
+     * @param maxAttempts total number of attempts, at least 1
+     * @return the result of the first attempt that does not throw {@link OptimisticLockException}
+     * @throws OptimisticLockException from the last attempt if every attempt conflicted
+     */
+    public static <T> T call(int maxAttempts, Supplier<T> work) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Attempt count must be positive: " + maxAttempts);
+        }
+        for (int attempt = 1;; attempt++) {
+            try {
+                return work.get();
+            } catch (OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    public static void run(int maxAttempts, Runnable work) {
+        call(maxAttempts, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private static void backOff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MICROS, BASE_BACKOFF_MICROS << Math.min(attempt - 1, 20));
+        try {
+            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", e);
+        }
+    }
+}
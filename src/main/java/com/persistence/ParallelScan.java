@@ -0,0 +1,150 @@
+package com.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+
+/**
+ * Splits a table into disjoint partitions on its primary key so that each can be read on its own
+ * connection. Integer keys are split into contiguous ranges between their minimum and maximum, which
+ * lets each partition use the primary key index; other keys are split by a hash of the key, which
+ * costs every partition a full scan but balances any key distribution.
+ */
+final class ParallelScan {
+    private final EntityMetadata metadata;
+    private final DbConnection dbConnection;
+    private final String selectAll;
+
+    ParallelScan(EntityMetadata metadata, DbConnection dbConnection, String selectAll) {
+        this.metadata = metadata;
+        this.dbConnection = dbConnection;
+        this.selectAll = selectAll;
+    }
+
+    /**
+     * @param partitions requested partition count, capped at the connection pool size
+     */
+    List<Partition> plan(int partitions) throws SQLException {
+        if (!metadata.hasPrimaryKey()) {
+            throw new IllegalArgumentException("Parallel scan of " + metadata.getTableName()
+                    + " requires a primary key");
+        }
+        ColumnMetadata primaryKey = metadata.getPrimaryKey();
+        int count = Math.min(partitions, dbConnection.getPool().getConfig().getMaxSize());
+        if (count <= 1) {
+            return Collections.singletonList(new Partition(null));
+        }
+        Class<?> keyType = primaryKey.getColumnType();
+        if (keyType == Integer.class || keyType == Long.class || keyType == Short.class
+                || keyType == int.class || keyType == long.class || keyType == short.class) {
+            return rangePartitions(primaryKey, count);
+        }
+        return hashPartitions(primaryKey, count);
+    }
+
+    private List<Partition> rangePartitions(ColumnMetadata primaryKey, int count) throws SQLException {
+        String key = primaryKey.getName();
+        long min;
+        long max;
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            PreparedStatement pStmt = conn.getStatementCache()
+                    .prepare("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + metadata.getTableName());
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                resultSet.next();
+                min = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    return Collections.singletonList(new Partition(null));
+                }
+                max = resultSet.getLong(2);
+            }
+        }
+
+        long span = max - min;
+        if (span < 0) {
+            // the key range overflows a long, so ranges cannot be computed
+            return hashPartitions(primaryKey, count);
+        }
+        long step = span / count + 1;
+        List<Partition> partitions = new ArrayList<>(count);
+        for (long lower = min; lower <= max; lower += step) {
+            if (max - lower < step) {
+                partitions.add(new Partition(key + " >= ?", lower));
+                break;
+            }
+            partitions.add(new Partition(key + " >= ? AND " + key + " < ?", lower, lower + step));
+        }
+        return partitions;
+    }
+
+    /**
+     * Uses PostgreSQL's {@code hashtext}, widened before {@code ABS} so that the minimum int cannot overflow.
+     */
+    private static List<Partition> hashPartitions(ColumnMetadata primaryKey, int count) {
+        String condition = "MOD(ABS(CAST(hashtext(CAST(" + primaryKey.getName() + " AS TEXT)) AS BIGINT)), ?) = ?";
+        List<Partition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new Partition(condition, count, i));
+        }
+        return partitions;
+    }
+
+    /**
+     * Streams one partition through a server-side cursor on its own pooled connection, which the
+     * stream holds until it is exhausted or closed.
+     */
+    Stream<Object> stream(Partition partition, int fetchSize) {
+        String sql = partition.condition == null ? selectAll : selectAll + " WHERE " + partition.condition;
+        EntityMapper mapper = metadata.getMapper();
+        PooledConnection conn = null;
+        PreparedStatement pStmt = null;
+        try {
+            conn = dbConnection.acquireRead();
+            // PostgreSQL only honours the fetch size inside a transaction
+            conn.getConnection().setAutoCommit(false);
+            pStmt = conn.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            pStmt.setFetchSize(fetchSize);
+            for (int i = 0; i < partition.values.length; i++) {
+                pStmt.setObject(i + 1, partition.values[i]);
+            }
+
+            ResultSetSpliterator spliterator = new ResultSetSpliterator(conn, pStmt, pStmt.executeQuery(),
+                    mapper::map, metadata.getTableName());
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (SQLException e) {
+            try {
+                if (pStmt != null)
+                    pStmt.close();
+            } catch (SQLException closeError) {
+                System.err.println("Error closing PreparedStatement: " + closeError.getMessage());
+            }
+            if (conn != null)
+                conn.close();
+            throw new RuntimeException("Error scanning partition of " + metadata.getTableName(), e);
+        }
+    }
+
+    /**
+     * WHERE condition and parameters selecting one partition; no condition selects the whole table.
+     */
+    static final class Partition {
+        private final String condition;
+        private final Object[] values;
+
+        Partition(String condition, Object... values) {
+            this.condition = condition;
+            this.values = values;
+        }
+    }
+}
@@ -1,42 +1,115 @@
 package com.persistence;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.persistence.annotation.Entity;
+import com.persistence.annotation.GenerationType;
+import com.persistence.cache.CacheInvalidationBus;
+import com.persistence.cache.EntityCache;
+import com.persistence.copy.BulkCopier;
+import com.persistence.copy.CopyFormat;
+import com.persistence.db.CancellationHandle;
 import com.persistence.db.DbConnection;
-import com.persistence.utils.ColumnHelper;
+import com.persistence.db.PooledConnection;
+import com.persistence.id.SequenceAllocator;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.OperationTimer;
+import com.persistence.query.Query;
+import com.persistence.query.QueryPlanCache;
+import com.persistence.relation.RelationLoader;
+import com.persistence.sql.SqlTemplates;
+import com.persistence.utils.VirtualThreads;
 
+/**
+ * Repository for one entity class.
+ * <p>
+ * An instance is safe to share between threads: entity metadata, SQL templates and mappers are
+ * immutable and shared, while every operation borrows its own pooled connection, so no per-call state
+ * lives in the instance. Configuration setters publish through volatile fields. No JDBC call is made
+ * while holding a monitor, so blocking I/O does not pin virtual threads to their carrier.
+ */
 public class PersistenceFramework {
-    private SchemaGenerator schemaGenerator;
-    private Class<?> entityClass;
-    private String tableName;
-    private ColumnHelper columnHelper;
-    private DbConnection dbConnection;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 1000;
 
-    public PersistenceFramework(Class<?> entityClass) {
-        this.entityClass = entityClass;
-        this.schemaGenerator = new SchemaGenerator();
-        this.columnHelper = new ColumnHelper();
-        this.dbConnection = DbConnection.getDbConnection();
-        initializeEntityMetadata();
-    }
+    private final SchemaGenerator schemaGenerator;
+    private final Class<?> entityClass;
+    private final String tableName;
+    private final EntityMetadata metadata;
+    private final EntityMapper mapper;
+    private final SqlTemplates sqlTemplates;
+    private final DbConnection dbConnection;
+    private final QueryPlanCache queryPlans = new QueryPlanCache();
+    private final BulkCopier bulkCopier;
+    private final RelationLoader relationLoader;
+    private final ParallelScan parallelScan;
+    private final SequenceAllocator sequence;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile boolean multiRowInsert;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+    private volatile EntityCache secondLevelCache;
+    private volatile CacheInvalidationBus invalidationBus;
+    private volatile Object invalidationSubscription;
+    private volatile Executor asyncExecutor;
+    private volatile Semaphore asyncPermits;
+    private volatile long asyncTimeoutMillis;
 
-    private void initializeEntityMetadata() {
+    public PersistenceFramework(Class<?> entityClass) {
         if (!entityClass.isAnnotationPresent(Entity.class)) {
             throw new IllegalArgumentException("Class " + entityClass.getName() + " is not annotated with @Entity");
         }
-        Entity entityAnnotation = entityClass.getAnnotation(Entity.class);
-        this.tableName = entityAnnotation.name();
+        this.entityClass = entityClass;
+        this.schemaGenerator = new SchemaGenerator();
+        this.dbConnection = DbConnection.getDbConnection();
+        this.metadata = EntityMetadataRegistry.get(entityClass);
+        this.tableName = metadata.getTableName();
+        this.mapper = metadata.getMapper();
+        this.sqlTemplates = new SqlTemplates(metadata);
+        this.bulkCopier = new BulkCopier(metadata, dbConnection);
+        this.relationLoader = new RelationLoader(metadata, dbConnection);
+        this.parallelScan = new ParallelScan(metadata, dbConnection, sqlTemplates.selectAll());
+        ColumnMetadata primaryKey = metadata.hasPrimaryKey() ? metadata.getPrimaryKey() : null;
+        this.sequence = primaryKey == null || primaryKey.getGeneration() != GenerationType.SEQUENCE ? null
+                : new SequenceAllocator(dbConnection, primaryKey.getSequenceName(), primaryKey.getAllocationSize());
+        this.asyncPermits = new Semaphore(dbConnection.getPool().getConfig().getMaxSize());
     }
 
     public void initializeSchema() {
@@ -46,213 +119,1108 @@ public class PersistenceFramework {
         schemaGenerator.generateSchema(entityClass);
     }
 
-    public void insert(Object object) {
-        Connection conn = null;
-        PreparedStatement pStmt = null;
-        try {
-            if (!this.entityClass.isInstance(object)) {
-                throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
-                        " does not match configured entity class " + tableName);
-            }
+    public int getBatchSize() {
+        return batchSize;
+    }
 
-            conn = dbConnection.getConnection();
+    /**
+     * Number of rows sent per JDBC batch (and per transaction) by the {@code *All} methods.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
 
-            List<Field> fieldsForInsert = columnHelper.getAnnotatedFields(entityClass);
+    public EntityCache getSecondLevelCache() {
+        return secondLevelCache;
+    }
 
-            String columns = fieldsForInsert.stream()
-                    .map(columnHelper::getColumnName)
-                    .collect(Collectors.joining(", "));
+    /**
+     * Puts a shared cache in front of {@link #findById(Object)}. Entries are invalidated by every
+     * update and delete issued through this framework. Pass {@code null} to disable caching.
+     */
+    public void setSecondLevelCache(EntityCache secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+        Metrics.registerCache(tableName, secondLevelCache == null ? null : secondLevelCache.getStatistics());
+    }
 
-            String placeholders = fieldsForInsert.stream()
-                    .map(f -> "?")
-                    .collect(Collectors.joining(", "));
+    public CacheInvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
 
-            String sql = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ")";
-            pStmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    /**
+     * Publishes the primary key of every row written through this framework on {@code invalidationBus},
+     * and evicts keys that other nodes publish from the second-level cache. Pass {@code null} to stop.
+     */
+    public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        CacheInvalidationBus previous = this.invalidationBus;
+        if (previous != null) {
+            previous.unsubscribe(invalidationSubscription);
+        }
+        this.invalidationSubscription = invalidationBus == null || !metadata.hasPrimaryKey() ? null
+                : invalidationBus.subscribe(tableName, metadata.getPrimaryKey().getField().getType(),
+                        this::getSecondLevelCache);
+        this.invalidationBus = invalidationBus;
+    }
 
-            int paramIndex = 1;
-            for (Field field : fieldsForInsert) {
-                pStmt.setObject(paramIndex++, field.get(object));
-            }
+    /**
+     * Opens a session with its own identity map. Sessions are cheap and not thread-safe.
+     */
+    public Session openSession() {
+        return new Session(this);
+    }
+
+    EntityMapper getMapper() {
+        return mapper;
+    }
+
+    EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    SqlTemplates getSqlTemplates() {
+        return sqlTemplates;
+    }
+
+    DbConnection getDbConnection() {
+        return dbConnection;
+    }
+
+    /**
+     * Executor that runs the {@code *Async} methods. Defaults to one virtual thread per task (platform
+     * threads on JDKs without virtual threads).
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Maximum number of asynchronous operations running at once; further operations wait for a slot.
+     * Defaults to the connection pool's maximum size.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight operations must be positive: " + maxInFlight);
+        }
+        this.asyncPermits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Time after which an asynchronous operation fails with a {@link TimeoutException} and its statement
+     * is cancelled; {@code 0} (the default) disables the timeout.
+     */
+    public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
 
-            pStmt.executeUpdate();
-        } catch (IllegalAccessException | SQLException e) {
+    /**
+     * Number of rows fetched per round trip by {@link #stream()} and {@link #forEach(Consumer)}.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getMultiGetChunkSize() {
+        return multiGetChunkSize;
+    }
+
+    /**
+     * Number of keys bound per statement by {@link #findAllById(Collection)}; larger key sets are read
+     * in several statements on the same connection.
+     */
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        if (multiGetChunkSize < 1) {
+            throw new IllegalArgumentException("Multi-get chunk size must be positive: " + multiGetChunkSize);
+        }
+        this.multiGetChunkSize = multiGetChunkSize;
+    }
+
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * When enabled, {@link #insertAll(Collection)} sends each batch as a single
+     * {@code INSERT ... VALUES (...), (...)} statement instead of a JDBC batch.
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    public void insert(Object object) {
+        if (!this.entityClass.isInstance(object)) {
+            throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
+                    " does not match configured entity class " + tableName);
+        }
+
+        List<Object> rows = Collections.singletonList(object);
+        if (!assignKeys(rows)) {
+            return;
+        }
+        OperationTimer timer = Metrics.start(tableName, "insert");
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            PreparedStatement pStmt = prepareInsert(conn, sqlTemplates.insert());
+
+            mapper.bindInsert(pStmt, 1, object);
+            timer.prepared(sqlTemplates.insert());
+
+            timer.rowsWritten(pStmt.executeUpdate());
+            timer.executed();
+            readGeneratedKeys(pStmt, rows, 0);
+        } catch (SQLException e) {
+            timer.failed(e);
             System.err.println("Error inserting object into " + tableName + ": " + e.getMessage());
             e.printStackTrace();
         } finally {
-            try {
-                if (pStmt != null)
-                    pStmt.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing PreparedStatement: " + e.getMessage());
-            }
+            timer.finish();
         }
     }
 
     public Object findById(Object id) {
-        Connection conn = null;
-        PreparedStatement pStmt = null;
-        ResultSet resultSet = null;
-        try {
-            conn = dbConnection.getConnection();
-
-            Field pkField = columnHelper.getPrimaryKeyField(entityClass);
-            String pkColumn = columnHelper.getColumnName(pkField);
-
-            String sql = "SELECT * FROM " + tableName + " WHERE " + pkColumn + " = ?";
-            pStmt = conn.prepareStatement(sql);
-            pStmt.setObject(1, id);
-
-            resultSet = pStmt.executeQuery();
-            if (resultSet.next()) {
-                Constructor<?> constructor = entityClass.getDeclaredConstructor();
-                constructor.setAccessible(true);
-                Object entityInstance = constructor.newInstance();
-                for (Field field : columnHelper.getAnnotatedFields(entityClass)) {
-                    field.setAccessible(true);
-                    field.set(entityInstance, resultSet.getObject(columnHelper.getColumnName(field)));
+        Object entity = readById(id);
+        if (entity != null) {
+            relationLoader.afterLoad(Collections.singletonList(entity));
+        }
+        return entity;
+    }
+
+    /**
+     * Reads one row without loading relationships, so that no connection is held while they load.
+     */
+    private Object readById(Object id) {
+        EntityCache cache = secondLevelCache;
+        if (cache != null) {
+            Object[] cached = cache.get(id);
+            if (cached != null) {
+                try {
+                    return mapper.fromSnapshot(cached);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Error rebuilding cached object from " + tableName + ": " + e.getMessage());
+                    cache.invalidate(id);
                 }
-                return entityInstance;
+            }
+        }
+
+        long loadToken = cache == null ? 0 : cache.beginLoad();
+        OperationTimer timer = Metrics.start(tableName, "findById");
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.selectById());
+            if (metadata.getPrimaryKey().getCodec() != null) {
+                metadata.getPrimaryKey().getCodec().bind(pStmt, 1, id);
             } else {
-                System.out.println("No record found with id: " + id);
-                return null;
+                pStmt.setObject(1, id);
             }
-        } catch (SQLException | IllegalAccessException | InstantiationException | NoSuchMethodException
-                | SecurityException | IllegalArgumentException | InvocationTargetException e) {
+            timer.prepared(sqlTemplates.selectById());
+
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                timer.executed();
+                if (resultSet.next()) {
+                    Object entity = mapper.map(resultSet);
+                    timer.mapped();
+                    timer.rowsRead(1);
+                    // a replica may not have the latest write yet, so only the primary's rows are cached
+                    if (cache != null && dbConnection.isPrimary(conn)) {
+                        cache.putFromLoad(mapper.getPrimaryKey(entity), mapper.snapshot(entity), loadToken);
+                    }
+                    return entity;
+                } else {
+                    System.out.println("No record found with id: " + id);
+                    return null;
+                }
+            }
+        } catch (SQLException | ReflectiveOperationException | SecurityException | IllegalArgumentException e) {
+            timer.failed(e);
             System.err.println("Error finding object by ID in " + tableName + ": " + e.getMessage());
             e.printStackTrace();
             return null;
         } finally {
+            timer.finish();
+            if (cache != null) {
+                cache.endLoad(loadToken);
+            }
+        }
+    }
+
+    /**
+     * Reads the entities with the given primary keys in one {@code WHERE pk = ANY(?)} statement per
+     * {@link #getMultiGetChunkSize()} keys, instead of one {@link #findById(Object)} round trip per key.
+     * Keys found in the second-level cache are not read again.
+     *
+     * @param ids primary keys of the key field's type; duplicates are read once
+     * @return the entities found, keyed by primary key in the order of {@code ids}; keys with no row are
+     *         left out, and the map is empty if the read failed
+     */
+    public Map<Object, Object> findAllById(Collection<?> ids) {
+        Map<Object, Object> found = readAllById(ids);
+        relationLoader.afterLoad(new ArrayList<>(found.values()));
+        return found;
+    }
+
+    private Map<Object, Object> readAllById(Collection<?> ids) {
+        Map<Object, Object> byKey = new HashMap<>(ids.size() * 2);
+        List<Object> missing = new ArrayList<>(ids.size());
+        EntityCache cache = secondLevelCache;
+        for (Object id : new LinkedHashSet<>(ids)) {
+            Object[] cached = cache == null ? null : cache.get(id);
+            if (cached != null) {
+                try {
+                    byKey.put(id, mapper.fromSnapshot(cached));
+                    continue;
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Error rebuilding cached object from " + tableName + ": " + e.getMessage());
+                    cache.invalidate(id);
+                }
+            }
+            missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            // a replica may not have the latest write yet, so only the primary's rows are cached
+            boolean cacheable = cache != null && !dbConnection.mayReadFromReplica();
+            long loadToken = cacheable ? cache.beginLoad() : 0;
             try {
-                if (resultSet != null)
-                    resultSet.close();
-                if (pStmt != null)
-                    pStmt.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing PreparedStatement or ResultSet: " + e.getMessage());
+                List<Object> loaded = relationLoader.loadByKeys(missing, metadata.getPrimaryKey(),
+                        multiGetChunkSize, "findAllById");
+                if (loaded == null) {
+                    return new LinkedHashMap<>();
+                }
+                for (Object entity : loaded) {
+                    Object key = mapper.getPrimaryKey(entity);
+                    byKey.put(key, entity);
+                    if (cacheable) {
+                        cache.putFromLoad(key, mapper.snapshot(entity), loadToken);
+                    }
+                }
+            } finally {
+                if (cacheable) {
+                    cache.endLoad(loadToken);
+                }
             }
         }
+
+        Map<Object, Object> ordered = new LinkedHashMap<>(byKey.size() * 2);
+        for (Object id : ids) {
+            Object entity = byKey.get(id);
+            if (entity != null) {
+                ordered.put(id, entity);
+            }
+        }
+        return ordered;
     }
 
     public List<Object> findAll() {
-        Connection conn = null;
-        PreparedStatement pStmt = null;
-        ResultSet resultSet = null;
-        try {
-            conn = dbConnection.getConnection();
-
-            String sql = "SELECT * FROM " + tableName;
-            pStmt = conn.prepareStatement(sql);
-
-            resultSet = pStmt.executeQuery();
-            List<Object> entities = new java.util.ArrayList<>();
-            while (resultSet.next()) {
-                Constructor<?> constructor = entityClass.getDeclaredConstructor();
-                constructor.setAccessible(true);
-                Object entityInstance = constructor.newInstance();
-                for (Field field : columnHelper.getAnnotatedFields(entityClass)) {
-                    field.setAccessible(true);
-                    field.set(entityInstance, resultSet.getObject(columnHelper.getColumnName(field)));
+        List<Object> entities = readAll();
+        relationLoader.afterLoad(entities);
+        return entities;
+    }
+
+    private List<Object> readAll() {
+        OperationTimer timer = Metrics.start(tableName, "findAll");
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.selectAll());
+            timer.prepared(sqlTemplates.selectAll());
+
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                timer.executed();
+                List<Object> entities = new java.util.ArrayList<>();
+                while (resultSet.next()) {
+                    entities.add(mapper.map(resultSet));
                 }
-                entities.add(entityInstance);
+                timer.mapped();
+                timer.rowsRead(entities.size());
+                return entities;
             }
-            return entities;
-        } catch (SQLException | IllegalAccessException | InstantiationException | NoSuchMethodException
-                | SecurityException | IllegalArgumentException | InvocationTargetException e) {
+        } catch (SQLException | ReflectiveOperationException | SecurityException | IllegalArgumentException e) {
+            timer.failed(e);
             System.err.println("Error finding all objects in " + tableName + ": " + e.getMessage());
             e.printStackTrace();
             return Collections.emptyList();
         } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Starts a selective read whose filtering, ordering and paging run in the database.
+     */
+    public Query query() {
+        return new Query(metadata, dbConnection, queryPlans, relationLoader);
+    }
+
+    /**
+     * Loads the named {@code @OneToMany} collection, {@code @ManyToOne} reference or lazy column of all
+     * the given entities with one query, replacing lazy collections and references that only hold a key.
+     */
+    public void fetch(Collection<?> entities, String relationship) {
+        relationLoader.fetch(entities, relationship);
+    }
+
+    /**
+     * Streams every row of the table through a server-side cursor, {@link #getFetchSize()} rows per
+     * round trip, mapping each row only when it is consumed. The stream holds a pooled connection
+     * until it is exhausted or closed, so use it in a try-with-resources block.
+     */
+    public Stream<Object> stream() {
+        PooledConnection conn = null;
+        PreparedStatement pStmt = null;
+        try {
+            conn = dbConnection.acquireRead();
+            // PostgreSQL only honours the fetch size inside a transaction
+            conn.getConnection().setAutoCommit(false);
+            pStmt = conn.getConnection().prepareStatement(sqlTemplates.selectAll(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pStmt.setFetchSize(fetchSize);
+
+            ResultSetSpliterator spliterator = new ResultSetSpliterator(conn, pStmt, pStmt.executeQuery(),
+                    resultSet -> withLazyColumns(mapper.map(resultSet)), tableName);
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (SQLException e) {
+            System.err.println("Error streaming objects from " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
             try {
-                if (resultSet != null)
-                    resultSet.close();
                 if (pStmt != null)
                     pStmt.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing PreparedStatement or ResultSet: " + e.getMessage());
+            } catch (SQLException closeError) {
+                System.err.println("Error closing PreparedStatement: " + closeError.getMessage());
             }
+            if (conn != null)
+                conn.close();
+            return Stream.empty();
         }
     }
 
-    public void update(Object object) {
-        Connection conn = null;
-        PreparedStatement pStmt = null;
+    /**
+     * Passes every row of the table to {@code action} without materializing the table in memory.
+     */
+    public void forEach(Consumer<Object> action) {
+        try (Stream<Object> rows = stream()) {
+            rows.forEach(action);
+        }
+    }
+
+    /**
+     * Reads the whole table in {@code partitions} disjoint partitions of the primary key, each on its
+     * own pooled connection and thread, and passes every row to {@code action}, which must therefore be
+     * thread-safe. The partition count is capped at the connection pool size. Relationships are not
+     * loaded.
+     *
+     * @return the number of rows processed, or -1 if the scan failed
+     */
+    public long parallelScan(int partitions, Consumer<Object> action) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + partitions);
+        }
+        OperationTimer timer = Metrics.start(tableName, "parallelScan");
+        ExecutorService executor = null;
+        List<Future<Long>> results = new ArrayList<>();
         try {
-            if (!this.entityClass.isInstance(object)) {
-                throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
-                        " does not match configured entity class " + tableName);
+            List<ParallelScan.Partition> plan = parallelScan.plan(partitions);
+            timer.prepared(sqlTemplates.selectAll());
+            executor = VirtualThreads.newThreadPerTaskExecutor("persistence-scan");
+            int rowsPerFetch = fetchSize;
+            for (ParallelScan.Partition partition : plan) {
+                results.add(executor.submit(() -> {
+                    long rows = 0;
+                    try (Stream<Object> partitionRows = parallelScan.stream(partition, rowsPerFetch)) {
+                        Iterator<Object> iterator = partitionRows.iterator();
+                        while (iterator.hasNext()) {
+                            action.accept(withLazyColumns(iterator.next()));
+                            rows++;
+                        }
+                    }
+                    return rows;
+                }));
             }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            timer.executed();
+            timer.rowsRead(total);
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timer.failed(e);
+            System.err.println("Parallel scan of " + tableName + " interrupted");
+            return -1;
+        } catch (SQLException | ExecutionException | RuntimeException e) {
+            timer.failed(e);
+            System.err.println("Error scanning " + tableName + " in parallel: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            for (Future<Long> result : results) {
+                result.cancel(true);
+            }
+            if (executor != null) {
+                executor.shutdown();
+            }
+            timer.finish();
+        }
+    }
 
-            conn = dbConnection.getConnection();
-
-            List<Field> fieldsForUpdate = columnHelper.getAnnotatedFields(entityClass);
-
-            Field pkField = columnHelper.getPrimaryKeyField(entityClass);
-            String pkColumn = columnHelper.getColumnName(pkField);
+    /**
+     * Parallel stream over the whole table, split like {@link #parallelScan(int, Consumer)}: each
+     * partition is streamed through its own cursor and connection, and the partitions are processed by
+     * the common fork-join pool. Relationships are not loaded.
+     */
+    public Stream<Object> parallelStream(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + partitions);
+        }
+        try {
+            int rowsPerFetch = fetchSize;
+            return parallelScan.plan(partitions).parallelStream()
+                    .flatMap(partition -> parallelScan.stream(partition, rowsPerFetch))
+                    .map(this::withLazyColumns);
+        } catch (SQLException e) {
+            System.err.println("Error planning parallel scan of " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return Stream.empty();
+        }
+    }
 
-            List<Field> nonPkFields = fieldsForUpdate.stream()
-                    .filter(f -> !f.equals(pkField))
-                    .collect(Collectors.toList());
+    public void update(Object object) {
+        if (!this.entityClass.isInstance(object)) {
+            throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
+                    " does not match configured entity class " + tableName);
+        }
 
-            String setClause = nonPkFields.stream()
-                    .map(field -> columnHelper.getColumnName(field) + " = ?")
-                    .collect(Collectors.joining(", "));
+        OperationTimer timer = Metrics.start(tableName, "update");
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.update());
 
-            String sql = "UPDATE " + tableName + " SET " + setClause + " WHERE " + pkColumn + " = ?";
-            pStmt = conn.prepareStatement(sql);
+            mapper.bindUpdate(pStmt, 1, object);
+            timer.prepared(sqlTemplates.update());
 
-            int paramIndex = 1;
-            for (Field field : nonPkFields) {
-                pStmt.setObject(paramIndex++, field.get(object));
+            int rows = pStmt.executeUpdate();
+            timer.rowsWritten(rows);
+            timer.executed();
+            if (mapper.isVersioned()) {
+                if (rows == 0) {
+                    throw staleEntity(object, "update");
+                }
+                mapper.incrementVersion(object);
             }
-            pStmt.setObject(paramIndex, pkField.get(object));
-        } catch (IllegalAccessException | SQLException | SecurityException e) {
+        } catch (OptimisticLockException e) {
+            timer.failed(e);
+            throw e;
+        } catch (SQLException | SecurityException e) {
+            timer.failed(e);
             System.err.println("Error updating object in " + tableName + ": " + e.getMessage());
             e.printStackTrace();
         } finally {
-            try {
-                if (pStmt != null)
-                    pStmt.executeUpdate();
-            } catch (SQLException e) {
-                System.err.println("Error executing update statement: " + e.getMessage());
-                e.printStackTrace();
-            }
+            evictFromCache(object);
+            timer.finish();
         }
     }
 
     public void delete(Object object) {
-        Connection conn = null;
-        PreparedStatement pStmt = null;
+        if (!this.entityClass.isInstance(object)) {
+            throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
+                    " does not match configured entity class " + tableName);
+        }
+
+        OperationTimer timer = Metrics.start(tableName, "delete");
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.delete());
+            mapper.bindVersion(pStmt, mapper.bindPrimaryKey(pStmt, 1, object), object);
+            timer.prepared(sqlTemplates.delete());
+
+            int rows = pStmt.executeUpdate();
+            timer.rowsWritten(rows);
+            timer.executed();
+            if (rows == 0 && mapper.isVersioned()) {
+                throw staleEntity(object, "delete");
+            }
+        } catch (OptimisticLockException e) {
+            timer.failed(e);
+            throw e;
+        } catch (SQLException | SecurityException e) {
+            timer.failed(e);
+            System.err.println("Error deleting object from " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            evictFromCache(object);
+            timer.finish();
+        }
+    }
+
+    /**
+     * Inserts all objects in batches of {@link #getBatchSize()} rows, each batch in its own transaction.
+     *
+     * @return one entry per object, in iteration order: the JDBC update count,
+     *         {@link Statement#SUCCESS_NO_INFO}, or {@link Statement#EXECUTE_FAILED} when its batch was rolled back
+     */
+    public int[] insertAll(Collection<?> objects) {
+        List<Object> rows = checkedRows(objects);
+        if (!assignKeys(rows)) {
+            return failed(rows);
+        }
+        if (multiRowInsert) {
+            return insertMultiRow(rows);
+        }
+        return executeBatches(rows, sqlTemplates.insert(), "insertAll", "inserting",
+                (pStmt, object) -> mapper.bindInsert(pStmt, 1, object), null, metadata.hasIdentityKey());
+    }
+
+    /**
+     * Inserts the object or, if a row with its primary key exists, overwrites that row's columns with
+     * {@code INSERT ... ON CONFLICT (pk) DO UPDATE}. A sequence key is drawn first if it is unset. The
+     * version of a versioned row is advanced without being checked.
+     */
+    public void upsert(Object object) {
+        if (!this.entityClass.isInstance(object)) {
+            throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
+                    " does not match configured entity class " + tableName);
+        }
+        List<Object> rows = Collections.singletonList(object);
+        checkUpsertKeys(rows);
+        if (!assignKeys(rows)) {
+            return;
+        }
+
+        OperationTimer timer = Metrics.start(tableName, "upsert");
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.upsert());
+            mapper.bindUpsert(pStmt, 1, object);
+            timer.prepared(sqlTemplates.upsert());
+
+            timer.rowsWritten(pStmt.executeUpdate());
+            timer.executed();
+        } catch (SQLException e) {
+            timer.failed(e);
+            System.err.println("Error upserting object into " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            evictFromCache(object);
+            timer.finish();
+        }
+    }
+
+    /**
+     * Upserts all objects as in {@link #upsert(Object)}, in batches of {@link #getBatchSize()} rows, each
+     * batch in its own transaction.
+     *
+     * @return per-object results, as for {@link #insertAll(Collection)}
+     */
+    public int[] upsertAll(Collection<?> objects) {
+        List<Object> rows = checkedRows(objects);
+        checkUpsertKeys(rows);
+        if (!assignKeys(rows)) {
+            return failed(rows);
+        }
         try {
+            return executeBatches(rows, sqlTemplates.upsert(), "upsertAll", "upserting",
+                    (pStmt, object) -> mapper.bindUpsert(pStmt, 1, object), null, false);
+        } finally {
+            evictFromCache(rows);
+        }
+    }
+
+    /**
+     * Updates all objects in batches of {@link #getBatchSize()} rows, each batch in its own transaction.
+     *
+     * @return per-object results, as for {@link #insertAll(Collection)}
+     */
+    public int[] updateAll(Collection<?> objects) {
+        List<Object> rows = checkedRows(objects);
+        try {
+            return executeBatches(rows, sqlTemplates.update(), "updateAll", "updating",
+                    (pStmt, object) -> mapper.bindUpdate(pStmt, 1, object),
+                    mapper.isVersioned() ? mapper::incrementVersion : null, false);
+        } finally {
+            evictFromCache(rows);
+        }
+    }
+
+    /**
+     * Deletes all objects in batches of {@link #getBatchSize()} rows, each batch in its own transaction.
+     *
+     * @return per-object results, as for {@link #insertAll(Collection)}
+     */
+    public int[] deleteAll(Collection<?> objects) {
+        List<Object> rows = checkedRows(objects);
+        try {
+            return executeBatches(rows, sqlTemplates.delete(), "deleteAll", "deleting",
+                    (pStmt, object) -> mapper.bindVersion(pStmt, mapper.bindPrimaryKey(pStmt, 1, object), object),
+                    mapper.isVersioned() ? object -> { } : null, false);
+        } finally {
+            evictFromCache(rows);
+        }
+    }
+
+    /**
+     * Loads every entity of {@code entities} with a binary {@code COPY}, encoding rows as the stream is
+     * consumed. Much faster than {@link #insertAll(Collection)} for large loads; requires PostgreSQL.
+     * As with an insert, identity keys are left to the database and unset sequence keys are drawn as the
+     * rows are consumed, on a second pooled connection whenever a new block of keys is needed.
+     *
+     * @return the number of rows loaded, or -1 if the copy failed and nothing was loaded
+     * @throws IllegalArgumentException if a column's type has no COPY encoding
+     */
+    public long copyIn(Stream<?> entities) {
+        return copyIn(entities, CopyFormat.BINARY);
+    }
+
+    /**
+     * As {@link #copyIn(Stream)}, in the given format.
+     */
+    public long copyIn(Stream<?> entities, CopyFormat format) {
+        OperationTimer timer = Metrics.start(tableName, "copyIn");
+        try {
+            long rows = bulkCopier.copyIn(entities, format, this::assignKey);
+            timer.executed();
+            timer.rowsWritten(rows);
+            return rows;
+        } catch (SQLException e) {
+            timer.failed(e);
+            System.err.println("Error copying objects into " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Exports the whole table to {@code out} with {@code COPY ... TO STDOUT}.
+     *
+     * @return the number of rows exported, or -1 if the copy failed
+     */
+    public long copyOut(OutputStream out, CopyFormat format) {
+        OperationTimer timer = Metrics.start(tableName, "copyOut");
+        try {
+            long rows = bulkCopier.copyOut(out, format);
+            timer.executed();
+            timer.rowsRead(rows);
+            return rows;
+        } catch (SQLException | IOException e) {
+            timer.failed(e);
+            System.err.println("Error copying objects out of " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Exports the whole table with a binary {@code COPY}, passing each row to {@code action} as it is
+     * decoded.
+     *
+     * @return the number of rows exported, or -1 if the copy failed
+     * @throws IllegalArgumentException if a column's type has no COPY encoding
+     */
+    public long copyOut(Consumer<Object> action) {
+        OperationTimer timer = Metrics.start(tableName, "copyOut");
+        try {
+            long rows = bulkCopier.copyOut(action);
+            timer.executed();
+            timer.rowsRead(rows);
+            return rows;
+        } catch (SQLException | IOException | ReflectiveOperationException e) {
+            timer.failed(e);
+            System.err.println("Error copying objects out of " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    public CompletableFuture<Void> insertAsync(Object object) {
+        return submitAsync(() -> {
+            insert(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Object> findByIdAsync(Object id) {
+        return submitAsync(() -> findById(id));
+    }
+
+    public CompletableFuture<List<Object>> findAllAsync() {
+        return submitAsync(this::findAll);
+    }
+
+    public CompletableFuture<Void> updateAsync(Object object) {
+        return submitAsync(() -> {
+            update(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteAsync(Object object) {
+        return submitAsync(() -> {
+            delete(object);
+            return null;
+        });
+    }
+
+    /**
+     * Releases resources held by this instance. The shared connection pool stays open for
+     * other users; shut it down once at application exit with {@link DbConnection#closeDbConnection()}.
+     */
+    public void close() {
+    }
+
+    /**
+     * Runs {@code operation} on the async executor once an in-flight slot is free. Cancelling the
+     * returned future, or its timing out, cancels the JDBC statement the operation is executing.
+     */
+    private <T> CompletableFuture<T> submitAsync(Supplier<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CancellationHandle handle = new CancellationHandle();
+        Semaphore permits = asyncPermits;
+        Executor executor = asyncExecutor != null ? asyncExecutor : DefaultAsyncExecutor.INSTANCE;
+
+        try {
+            executor.execute(() -> {
+                boolean acquired = false;
+                try {
+                    permits.acquire();
+                    acquired = true;
+                    if (future.isDone()) {
+                        return;
+                    }
+                    handle.bind();
+                    future.complete(operation.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    CancellationHandle.unbind();
+                    if (acquired) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        long timeout = asyncTimeoutMillis;
+        if (timeout > 0) {
+            ScheduledFuture<?> timer = AsyncTimeouts.INSTANCE.schedule(
+                    () -> future.completeExceptionally(new TimeoutException()), timeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((result, error) -> timer.cancel(false));
+        }
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                handle.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Gives a streamed entity unloaded lazy values, which load for that entity alone.
+     */
+    private Object withLazyColumns(Object entity) {
+        if (!metadata.getLazyColumns().isEmpty()) {
+            relationLoader.attachLazyColumns(Collections.singletonList(entity));
+        }
+        return entity;
+    }
+
+    void evictFromCache(Object object) {
+        evictFromCache(Collections.singletonList(object));
+    }
+
+    /**
+     * Evicts the objects from the second-level cache and publishes their keys on the invalidation bus.
+     */
+    void evictFromCache(List<Object> objects) {
+        EntityCache cache = secondLevelCache;
+        CacheInvalidationBus bus = invalidationBus;
+        if (cache == null && bus == null) {
+            return;
+        }
+        List<Object> keys = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            Object key = mapper.getPrimaryKey(object);
+            if (cache != null) {
+                cache.invalidate(key);
+            }
+            keys.add(key);
+        }
+        if (bus != null) {
+            bus.publish(tableName, keys);
+        }
+    }
+
+    private List<Object> checkedRows(Collection<?> objects) {
+        List<Object> rows = new ArrayList<>(objects.size());
+        for (Object object : objects) {
             if (!this.entityClass.isInstance(object)) {
                 throw new IllegalArgumentException("Object of type " + object.getClass().getName() +
                         " does not match configured entity class " + tableName);
             }
+            rows.add(object);
+        }
+        return rows;
+    }
 
-            conn = dbConnection.getConnection();
-
-            Field pkField = columnHelper.getPrimaryKeyField(entityClass);
-            String pkColumn = columnHelper.getColumnName(pkField);
-            Object pkValue = pkField.get(object);
+    /**
+     * @param versionChecked for versioned updates and deletes, called for each row once its batch has
+     *                       committed; a batch in which any row matched nothing is rolled back and fails
+     *                       with {@link OptimisticLockException}. {@code null} skips the check.
+     * @param returnKeys     whether to write the keys generated by an identity column back into the rows
+     */
+    private int[] executeBatches(List<Object> rows, String sql, String name, String operation,
+            StatementBinder binder, Consumer<Object> versionChecked, boolean returnKeys) {
+        int[] results = new int[rows.size()];
+        Arrays.fill(results, Statement.EXECUTE_FAILED);
+        if (rows.isEmpty()) {
+            return results;
+        }
 
-            String sql = "DELETE FROM " + tableName + " WHERE " + pkColumn + " = ?";
-            pStmt = conn.prepareStatement(sql);
-            pStmt.setObject(1, pkValue);
-        } catch (IllegalAccessException | SQLException | SecurityException e) {
-            System.err.println("Error deleting object from " + tableName + ": " + e.getMessage());
+        OperationTimer timer = Metrics.start(tableName, name);
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            Connection connection = conn.getConnection();
+            PreparedStatement pStmt = returnKeys ? prepareInsert(conn, sql) : conn.getStatementCache().prepare(sql);
+            connection.setAutoCommit(false);
+            try {
+                for (int start = 0; start < rows.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, rows.size());
+                    try {
+                        for (int i = start; i < end; i++) {
+                            binder.bind(pStmt, rows.get(i));
+                            pStmt.addBatch();
+                        }
+                        timer.prepared(sql);
+                        int[] counts = pStmt.executeBatch();
+                        if (versionChecked != null) {
+                            checkVersions(rows, start, counts, operation);
+                        }
+                        connection.commit();
+                        timer.executed();
+                        timer.rowsWritten(end - start);
+                        System.arraycopy(counts, 0, results, start, Math.min(counts.length, end - start));
+                        if (returnKeys) {
+                            readGeneratedKeys(pStmt, rows, start);
+                        }
+                        if (versionChecked != null) {
+                            rows.subList(start, end).forEach(versionChecked);
+                        }
+                    } catch (OptimisticLockException e) {
+                        timer.failed(e);
+                        pStmt.clearBatch();
+                        connection.rollback();
+                        throw e;
+                    } catch (SQLException | RuntimeException e) {
+                        timer.failed(e);
+                        pStmt.clearBatch();
+                        connection.rollback();
+                        System.err.println("Error " + operation + " batch of rows " + start + ".." + (end - 1)
+                                + " in " + tableName + ": " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            System.err.println("Error " + operation + " objects in " + tableName + ": " + e.getMessage());
             e.printStackTrace();
         } finally {
+            timer.finish();
+        }
+        return results;
+    }
+
+    private int[] insertMultiRow(List<Object> rows) {
+        int[] results = new int[rows.size()];
+        Arrays.fill(results, Statement.EXECUTE_FAILED);
+        if (rows.isEmpty()) {
+            return results;
+        }
+
+        int rowsPerStatement = Math.min(batchSize, sqlTemplates.maxRowsPerInsert());
+        OperationTimer timer = Metrics.start(tableName, "insertAll");
+        try (PooledConnection conn = dbConnection.acquire()) {
+            timer.acquired();
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
             try {
-                if (pStmt != null)
-                    pStmt.executeUpdate();
-            } catch (SQLException e) {
-                System.err.println("Error executing delete statement: " + e.getMessage());
-                e.printStackTrace();
+                for (int start = 0; start < rows.size(); start += rowsPerStatement) {
+                    int end = Math.min(start + rowsPerStatement, rows.size());
+                    try {
+                        String sql = sqlTemplates.insertMultiRow(end - start);
+                        PreparedStatement pStmt = prepareInsert(conn, sql);
+                        int paramIndex = 1;
+                        for (int i = start; i < end; i++) {
+                            paramIndex = mapper.bindInsert(pStmt, paramIndex, rows.get(i));
+                        }
+                        timer.prepared(sql);
+                        int inserted = pStmt.executeUpdate();
+                        connection.commit();
+                        readGeneratedKeys(pStmt, rows, start);
+                        timer.executed();
+                        timer.rowsWritten(inserted);
+                        Arrays.fill(results, start, end, inserted == end - start ? 1 : Statement.SUCCESS_NO_INFO);
+                    } catch (SQLException | RuntimeException e) {
+                        timer.failed(e);
+                        connection.rollback();
+                        System.err.println("Error inserting rows " + start + ".." + (end - 1)
+                                + " into " + tableName + ": " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
             }
+        } catch (SQLException e) {
+            timer.failed(e);
+            System.err.println("Error inserting objects into " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            timer.finish();
         }
+        return results;
     }
 
-    public void close() {
-        DbConnection.closeDbConnection();
+    private static final class DefaultAsyncExecutor {
+        private static final Executor INSTANCE = VirtualThreads.newThreadPerTaskExecutor("persistence-async");
+    }
+
+    /** Completes async operations that outlive their timeout; shared by every instance. */
+    private static final class AsyncTimeouts {
+        private static final ScheduledThreadPoolExecutor INSTANCE = newScheduler();
+
+        private static ScheduledThreadPoolExecutor newScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "persistence-async-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    /**
+     * Draws a key for each row of a sequence-keyed entity whose key is unset ({@code null} or zero).
+     * Runs before the insert borrows its connection, since a new block of keys needs one of its own.
+     *
+     * @return {@code false} if the sequence could not be read, after reporting the error
+     */
+    boolean assignKeys(List<Object> rows) {
+        if (sequence == null) {
+            return true;
+        }
+        try {
+            for (Object row : rows) {
+                assignKey(row);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error generating keys for " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Draws a key for the row if its entity is sequence-keyed and its key is unset.
+     */
+    private void assignKey(Object row) throws SQLException {
+        if (sequence != null && isUnsetKey(mapper.getPrimaryKey(row))) {
+            setGeneratedKey(row, sequence.nextValue());
+        }
+    }
+
+    static boolean isUnsetKey(Object key) {
+        return key == null || (key instanceof Number && ((Number) key).longValue() == 0);
+    }
+
+    private void setGeneratedKey(Object row, long key) {
+        Class<?> type = metadata.getPrimaryKey().getJavaType();
+        mapper.setPrimaryKey(row, type == long.class || type == Long.class ? (Object) key : (Object) (int) key);
+    }
+
+    /**
+     * Prepares an INSERT that returns the generated keys when the database assigns the primary key;
+     * otherwise the driver is not asked for keys, which PostgreSQL would answer with {@code RETURNING *}.
+     */
+    PreparedStatement prepareInsert(PooledConnection conn, String sql) throws SQLException {
+        if (metadata.hasIdentityKey()) {
+            return conn.getStatementCache().prepare(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        return conn.getStatementCache().prepare(sql);
+    }
+
+    /**
+     * Writes identity keys generated by the last execution of {@code pStmt} into the rows from
+     * {@code start} on, in insertion order.
+     */
+    void readGeneratedKeys(PreparedStatement pStmt, List<Object> rows, int start) throws SQLException {
+        if (!metadata.hasIdentityKey()) {
+            return;
+        }
+        String key = metadata.getPrimaryKey().getName();
+        try (ResultSet keys = pStmt.getGeneratedKeys()) {
+            for (int i = start; i < rows.size() && keys.next(); i++) {
+                setGeneratedKey(rows.get(i), keys.getLong(key));
+            }
+        }
+    }
+
+    private void checkUpsertKeys(List<Object> rows) {
+        if (!metadata.hasIdentityKey()) {
+            return;
+        }
+        for (Object row : rows) {
+            if (isUnsetKey(mapper.getPrimaryKey(row))) {
+                throw new IllegalArgumentException("Cannot upsert object of " + tableName
+                        + " without a primary key; insert it to have the database assign one");
+            }
+        }
+    }
+
+    private static int[] failed(List<Object> rows) {
+        int[] results = new int[rows.size()];
+        Arrays.fill(results, Statement.EXECUTE_FAILED);
+        return results;
+    }
+
+    private void checkVersions(List<Object> rows, int start, int[] counts, String operation) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new OptimisticLockException("Stale object at row " + (start + i) + " while " + operation
+                        + " batch in " + tableName + "; the batch was rolled back", rows.get(start + i));
+            }
+        }
+    }
+
+    private OptimisticLockException staleEntity(Object object, String operation) {
+        return new OptimisticLockException("Cannot " + operation + " object with id " + mapper.getPrimaryKey(object)
+                + " in " + tableName + ": it was changed or deleted concurrently", object);
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement pStmt, Object object) throws SQLException;
     }
 }
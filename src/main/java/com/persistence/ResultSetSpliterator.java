@@ -0,0 +1,74 @@
+package com.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.persistence.db.PooledConnection;
+
+/**
+ * Walks a forward-only {@link ResultSet} one row at a time, mapping rows only as they are consumed.
+ * Owns the statement and the borrowed connection; {@link #close()} (or exhausting the cursor)
+ * ends the read-only transaction and returns the connection to the pool.
+ */
+final class ResultSetSpliterator extends Spliterators.AbstractSpliterator<Object> implements AutoCloseable {
+    private final PooledConnection conn;
+    private final PreparedStatement pStmt;
+    private final ResultSet resultSet;
+    private final RowMapper rowMapper;
+    private final String tableName;
+    private boolean closed;
+
+    ResultSetSpliterator(PooledConnection conn, PreparedStatement pStmt, ResultSet resultSet, RowMapper rowMapper,
+            String tableName) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.conn = conn;
+        this.pStmt = pStmt;
+        this.resultSet = resultSet;
+        this.rowMapper = rowMapper;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(rowMapper.map(resultSet));
+            return true;
+        } catch (SQLException | ReflectiveOperationException e) {
+            close();
+            throw new RuntimeException("Error streaming objects from " + tableName, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+            pStmt.close();
+            conn.getConnection().commit();
+        } catch (SQLException e) {
+            System.err.println("Error closing stream over " + tableName + ": " + e.getMessage());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @FunctionalInterface
+    interface RowMapper {
+        Object map(ResultSet resultSet) throws SQLException, ReflectiveOperationException;
+    }
+}
@@ -1,26 +1,36 @@
 package com.persistence;
 
-import java.lang.reflect.Field;
+import java.sql.DatabaseMetaData;
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Timestamp;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
-import com.persistence.annotation.Column;
 import com.persistence.annotation.Entity;
+import com.persistence.annotation.GenerationType;
 import com.persistence.db.DbConnection;
-import com.persistence.utils.ColumnHelper;
+import com.persistence.db.PooledConnection;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.metadata.IndexMetadata;
+import com.persistence.type.TypeCodec;
+import com.persistence.type.TypeCodecs;
 
 public class SchemaGenerator {
     private static final Map<Class<?>, String> JAVA_TO_SQL_TYPE_MAP = new HashMap<>();
-    private final ColumnHelper columnHelper;
-    private DbConnection dbConnection;
+    private final DbConnection dbConnection;
+    private volatile boolean concurrentIndexes;
 
     static {
         JAVA_TO_SQL_TYPE_MAP.put(String.class, "VARCHAR(255)");
@@ -28,6 +38,8 @@ public class SchemaGenerator {
         JAVA_TO_SQL_TYPE_MAP.put(long.class, "BIGINT");
         JAVA_TO_SQL_TYPE_MAP.put(Integer.class, "INTEGER");
         JAVA_TO_SQL_TYPE_MAP.put(int.class, "INTEGER");
+        JAVA_TO_SQL_TYPE_MAP.put(Short.class, "SMALLINT");
+        JAVA_TO_SQL_TYPE_MAP.put(short.class, "SMALLINT");
         JAVA_TO_SQL_TYPE_MAP.put(Boolean.class, "BOOLEAN");
         JAVA_TO_SQL_TYPE_MAP.put(boolean.class, "BOOLEAN");
         JAVA_TO_SQL_TYPE_MAP.put(Double.class, "DOUBLE PRECISION");
@@ -37,24 +49,40 @@ public class SchemaGenerator {
         JAVA_TO_SQL_TYPE_MAP.put(java.util.Date.class, "TIMESTAMP");
         JAVA_TO_SQL_TYPE_MAP.put(Date.class, "DATE");
         JAVA_TO_SQL_TYPE_MAP.put(Timestamp.class, "TIMESTAMP");
+        JAVA_TO_SQL_TYPE_MAP.put(byte[].class, "BYTEA");
     }
 
     public SchemaGenerator() {
-        this.columnHelper = new ColumnHelper();
         this.dbConnection = DbConnection.getDbConnection();
     }
 
-    public void generateSchema(Class<?>... entityClasses) {
-        Connection conn = null;
-        Statement stmt = null;
+    public boolean isConcurrentIndexes() {
+        return concurrentIndexes;
+    }
 
-        try {
-            conn = dbConnection.getConnection();
-            stmt = conn.createStatement();
-            for (Class<?> entityClass : entityClasses) {
+    /**
+     * Creates indexes with {@code CREATE INDEX CONCURRENTLY}, which does not block writes to the table
+     * while the index builds but takes longer and cannot run inside a transaction.
+     */
+    public void setConcurrentIndexes(boolean concurrentIndexes) {
+        this.concurrentIndexes = concurrentIndexes;
+    }
+
+    public void generateSchema(Class<?>... entityClasses) {
+        try (PooledConnection conn = dbConnection.acquire();
+                Statement stmt = conn.getConnection().createStatement()) {
+            for (Class<?> entityClass : referencedFirst(entityClasses)) {
                 if (entityClass.isAnnotationPresent(Entity.class)) {
+                    EntityMetadata metadata = EntityMetadataRegistry.get(entityClass);
+                    String sequence = createSequenceSql(metadata);
+                    if (sequence != null) {
+                        stmt.execute(sequence);
+                    }
                     String sql = createTableSql(entityClass);
                     stmt.execute(sql);
+                    for (IndexMetadata index : metadata.getIndexes()) {
+                        stmt.execute(createIndexSql(metadata, index));
+                    }
                     System.out.println("Generating schema for table: " + entityClass.getSimpleName());
                 } else {
                     System.err.println("Warning: Class " + entityClass.getName()
@@ -64,51 +92,186 @@ public class SchemaGenerator {
         } catch (SQLException e) {
             System.err.println("Error generating schema: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing statement: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
         }
     }
 
-    private String createTableSql(Class<?> entityClass) {
-        Entity entityAnnotation = entityClass.getAnnotation(Entity.class);
-        String tableName = entityAnnotation.name();
-
-        StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(tableName).append(" (");
+    /**
+     * Compares the entities with the database schema and returns the statements that would bring it up
+     * to date: {@code CREATE TABLE} for missing tables, {@code ALTER TABLE ... ADD COLUMN} for missing
+     * columns, {@code CREATE SEQUENCE} for missing key sequences and {@code CREATE INDEX} for missing
+     * indexes. Nothing is dropped or altered in place.
+     * Columns declared NOT NULL are added nullable, since existing rows have no value for them.
+     *
+     * @return the statements in execution order, or an empty list if the schema could not be read
+     */
+    public List<String> diffSchema(Class<?>... entityClasses) {
+        try (PooledConnection conn = dbConnection.acquire()) {
+            return diffSchema(conn, entityClasses);
+        } catch (SQLException e) {
+            System.err.println("Error reading schema: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-        List<Field> fields = Arrays.stream(entityClass.getDeclaredFields())
-                .filter(field -> field.isAnnotationPresent(Column.class))
-                .collect(Collectors.toList());
+    /**
+     * Executes the statements of {@link #diffSchema(Class...)} one at a time, stopping at the first
+     * failure.
+     *
+     * @return the statements that were executed
+     */
+    public List<String> migrateSchema(Class<?>... entityClasses) {
+        List<String> executed = new ArrayList<>();
+        try (PooledConnection conn = dbConnection.acquire();
+                Statement stmt = conn.getConnection().createStatement()) {
+            for (String sql : diffSchema(conn, entityClasses)) {
+                stmt.execute(sql);
+                executed.add(sql);
+                System.out.println("Migrated schema: " + sql);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error migrating schema: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return executed;
+    }
 
-        for (Field field : fields) {
-            String columnName = columnHelper.getColumnName(field);
-            String columnType = getSqlType(field.getType());
+    private List<String> diffSchema(PooledConnection conn, Class<?>[] entityClasses) throws SQLException {
+        DatabaseMetaData databaseMetaData = conn.getConnection().getMetaData();
+        String schema = conn.getConnection().getSchema();
+        List<String> statements = new ArrayList<>();
+        for (Class<?> entityClass : referencedFirst(entityClasses)) {
+            if (!entityClass.isAnnotationPresent(Entity.class)) {
+                continue;
+            }
+            EntityMetadata metadata = EntityMetadataRegistry.get(entityClass);
+            String table = identifier(databaseMetaData, metadata.getTableName());
+            String sequence = createSequenceSql(metadata);
+            if (sequence != null) {
+                String sequenceName = identifier(databaseMetaData, metadata.getPrimaryKey().getSequenceName());
+                if (!sequenceExists(conn, schema, sequenceName)) {
+                    statements.add(sequence);
+                }
+            }
 
-            sqlBuilder.append(columnName).append(" ").append(columnType);
+            boolean exists;
+            try (ResultSet tables = databaseMetaData.getTables(null, schema, table, null)) {
+                exists = tables.next();
+            }
+            if (!exists) {
+                statements.add(createTableSql(entityClass));
+                for (IndexMetadata index : metadata.getIndexes()) {
+                    statements.add(createIndexSql(metadata, index));
+                }
+                continue;
+            }
 
-            Column columnAnnotation = field.getAnnotation(Column.class);
-            if (columnAnnotation != null) {
-                if (!columnAnnotation.nullable()) {
-                    sqlBuilder.append(" NOT NULL");
+            Set<String> existingColumns = new HashSet<>();
+            try (ResultSet columns = databaseMetaData.getColumns(null, schema, table, null)) {
+                while (columns.next()) {
+                    existingColumns.add(columns.getString("COLUMN_NAME").toLowerCase());
+                }
+            }
+            for (ColumnMetadata column : metadata.getColumns()) {
+                if (!existingColumns.contains(column.getName().toLowerCase())) {
+                    statements.add("ALTER TABLE " + metadata.getTableName() + " ADD COLUMN "
+                            + columnDefinition(column, false));
                 }
-                if (columnAnnotation.unique()) {
-                    sqlBuilder.append(" UNIQUE");
+            }
+
+            Set<String> existingIndexes = new HashSet<>();
+            try (ResultSet indexes = databaseMetaData.getIndexInfo(null, schema, table, false, false)) {
+                while (indexes.next()) {
+                    String name = indexes.getString("INDEX_NAME");
+                    if (name != null) {
+                        existingIndexes.add(name.toLowerCase());
+                    }
                 }
-                if (columnAnnotation.primaryKey()) {
-                    sqlBuilder.append(" PRIMARY KEY");
+            }
+            for (IndexMetadata index : metadata.getIndexes()) {
+                if (!existingIndexes.contains(index.getName().toLowerCase())) {
+                    statements.add(createIndexSql(metadata, index));
                 }
             }
-            sqlBuilder.append(", ");
         }
+        return statements;
+    }
+
+    /**
+     * Looks the sequence up in {@code information_schema}, since not every driver lists sequences among
+     * the tables of {@link DatabaseMetaData}.
+     */
+    private static boolean sequenceExists(PooledConnection conn, String schema, String name) throws SQLException {
+        PreparedStatement pStmt = conn.getStatementCache().prepare(
+                "SELECT 1 FROM information_schema.sequences WHERE sequence_schema = ? AND sequence_name = ?");
+        pStmt.setString(1, schema);
+        pStmt.setString(2, name);
+        try (ResultSet resultSet = pStmt.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * @return the name as the database stores unquoted identifiers
+     */
+    private static String identifier(DatabaseMetaData databaseMetaData, String name) throws SQLException {
+        if (databaseMetaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase();
+        } else if (databaseMetaData.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase();
+        }
+        return name;
+    }
+
+    private String createIndexSql(EntityMetadata metadata, IndexMetadata index) {
+        StringBuilder sql = new StringBuilder("CREATE ");
+        if (index.isUnique()) {
+            sql.append("UNIQUE ");
+        }
+        sql.append("INDEX ");
+        if (concurrentIndexes) {
+            sql.append("CONCURRENTLY ");
+        }
+        sql.append("IF NOT EXISTS ").append(index.getName()).append(" ON ").append(metadata.getTableName())
+                .append(" (");
+        for (int i = 0; i < index.getColumns().size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(index.getColumns().get(i).getName());
+        }
+        sql.append(')');
+        if (index.getWhere() != null) {
+            sql.append(" WHERE ").append(index.getWhere());
+        }
+        return sql.toString();
+    }
+
+    /**
+     * @return the {@code CREATE SEQUENCE} of a sequence-generated key, incrementing by its allocation size
+     *         so that each {@code nextval} reserves one block, or {@code null} if the entity has none
+     */
+    private static String createSequenceSql(EntityMetadata metadata) {
+        if (!metadata.hasPrimaryKey() || metadata.getPrimaryKey().getGeneration() != GenerationType.SEQUENCE) {
+            return null;
+        }
+        ColumnMetadata primaryKey = metadata.getPrimaryKey();
+        return "CREATE SEQUENCE IF NOT EXISTS " + primaryKey.getSequenceName() + " START WITH 1 INCREMENT BY "
+                + primaryKey.getAllocationSize();
+    }
 
-        if (fields.isEmpty()) {
+    private String createTableSql(Class<?> entityClass) {
+        EntityMetadata metadata = EntityMetadataRegistry.get(entityClass);
+
+        StringBuilder sqlBuilder = new StringBuilder();
+        sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(metadata.getTableName()).append(" (");
+
+        List<ColumnMetadata> columns = metadata.getColumns();
+        for (ColumnMetadata column : columns) {
+            sqlBuilder.append(columnDefinition(column, true)).append(", ");
+        }
+
+        if (columns.isEmpty()) {
             sqlBuilder.append("dummy_id BIGSERIAL PRIMARY KEY");
         } else {
             sqlBuilder.setLength(sqlBuilder.length() - 2);
@@ -118,7 +281,79 @@ public class SchemaGenerator {
         return sqlBuilder.toString();
     }
 
-    private String getSqlType(Class<?> javaType) {
-        return JAVA_TO_SQL_TYPE_MAP.getOrDefault(javaType, "TEXT");
+    private static String columnDefinition(ColumnMetadata column, boolean notNull) {
+        StringBuilder definition = new StringBuilder(column.getName()).append(" ").append(getSqlType(column));
+        if (column.getGeneration() == GenerationType.IDENTITY) {
+            definition.append(" GENERATED BY DEFAULT AS IDENTITY");
+        }
+        if (notNull && !column.isNullable()) {
+            definition.append(" NOT NULL");
+        }
+        if (column.isUnique()) {
+            definition.append(" UNIQUE");
+        }
+        if (column.isPrimaryKey()) {
+            definition.append(" PRIMARY KEY");
+        }
+        if (column.isReference()) {
+            EntityMetadata target = EntityMetadataRegistry.get(column.getReferencedEntity());
+            definition.append(" REFERENCES ").append(target.getTableName())
+                    .append(" (").append(target.getPrimaryKey().getName()).append(")");
+        }
+        return definition.toString();
+    }
+
+    /**
+     * Orders the classes so that every table is created after the tables its foreign keys refer to.
+     */
+    private static Set<Class<?>> referencedFirst(Class<?>[] entityClasses) {
+        Set<Class<?>> requested = new LinkedHashSet<>(Arrays.asList(entityClasses));
+        Set<Class<?>> ordered = new LinkedHashSet<>();
+        for (Class<?> entityClass : entityClasses) {
+            visit(entityClass, requested, ordered, new LinkedHashSet<>());
+        }
+        return ordered;
+    }
+
+    private static void visit(Class<?> entityClass, Set<Class<?>> requested, Set<Class<?>> ordered,
+            Set<Class<?>> visiting) {
+        if (ordered.contains(entityClass) || !visiting.add(entityClass)) {
+            return;
+        }
+        if (entityClass.isAnnotationPresent(Entity.class)) {
+            for (ColumnMetadata reference : EntityMetadataRegistry.get(entityClass).getReferences()) {
+                if (requested.contains(reference.getReferencedEntity())) {
+                    visit(reference.getReferencedEntity(), requested, ordered, visiting);
+                }
+            }
+        }
+        ordered.add(entityClass);
+    }
+
+    /**
+     * @return the column type used for {@code javaType} in generated DDL, that of its registered
+     *         {@link TypeCodec} if it has one, {@code TEXT} for unmapped types
+     */
+    public static String getSqlType(Class<?> javaType) {
+        String sqlType = JAVA_TO_SQL_TYPE_MAP.get(javaType);
+        if (sqlType == null) {
+            TypeCodec<?> codec = TypeCodecs.forType(javaType);
+            sqlType = codec == null ? "TEXT" : codec.sqlType();
+        }
+        return sqlType;
+    }
+
+    /**
+     * @return the column type of {@code column} in generated DDL, which honours a codec named on the column
+     */
+    public static String getSqlType(ColumnMetadata column) {
+        if (column.getCodec() != null) {
+            return column.getCodec().sqlType();
+        }
+        // a lazy column is meant for large values, which VARCHAR(255) cannot hold
+        if (column.isLazy() && column.getColumnType() == String.class) {
+            return "TEXT";
+        }
+        return getSqlType(column.getColumnType());
     }
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package com.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.persistence.cache.CacheStatistics;
+import com.persistence.cache.IdentityMap;
+import com.persistence.db.PooledConnection;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.mapping.LazyValueAccessor;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.OperationTimer;
+import com.persistence.sql.SqlTemplates;
+
+/**
+ * A short-lived unit of work over one {@link PersistenceFramework}.
+ * <p>
+ * The session keeps an identity map, so every primary key resolves to a single instance for the
+ * session's lifetime: repeated {@link #findById(Object)} calls for the same key return the same object
+ * without touching the database.
+ * <p>
+ * Writes are deferred. {@link #persist(Object)} and {@link #remove(Object)} queue work, and changes to
+ * loaded entities are detected by comparing them with the snapshot taken when they were loaded.
+ * {@link #flush()} sends everything in one transaction: inserts, then updates of only the columns that
+ * changed, then deletes, each group as JDBC batches of identical statements. Sessions are not
+ * thread-safe and do not flush on close.
+ * <p>
+ * A session reads from the primary even when read replicas are configured, so that it sees its own
+ * flushed writes.
+ */
+public class Session implements AutoCloseable {
+    private final PersistenceFramework framework;
+    private final EntityMapper mapper;
+    private final IdentityMap identityMap = new IdentityMap();
+    private final Map<Object, Object[]> snapshots = new HashMap<>();
+    private final Map<Object, Object> pendingInserts = new LinkedHashMap<>();
+    private final Map<Object, Object> pendingDeletes = new LinkedHashMap<>();
+
+    Session(PersistenceFramework framework) {
+        this.framework = framework;
+        this.mapper = framework.getMapper();
+    }
+
+    public Object findById(Object id) {
+        Object entity = identityMap.get(id);
+        if (entity != null) {
+            return pendingDeletes.containsKey(id) ? null : entity;
+        }
+        entity = framework.getDbConnection().withPrimary(() -> framework.findById(id));
+        if (entity == null) {
+            return null;
+        }
+        return manage(entity);
+    }
+
+    public List<Object> findAll() {
+        List<Object> entities = framework.getDbConnection().withPrimary(framework::findAll);
+        List<Object> managed = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            Object instance = manage(entity);
+            if (!pendingDeletes.containsKey(mapper.getPrimaryKey(instance))) {
+                managed.add(instance);
+            }
+        }
+        return managed;
+    }
+
+    /**
+     * Schedules {@code object} for insertion at the next flush and makes it managed. An unset sequence
+     * key is drawn now; an identity key is assigned by the database, so the object becomes managed
+     * under it only once the flush has read it back.
+     */
+    public void persist(Object object) {
+        if (!framework.assignKeys(Collections.singletonList(object))) {
+            throw new RuntimeException("Error generating key for " + framework.getMetadata().getTableName());
+        }
+        Object key = mapper.getPrimaryKey(object);
+        if (framework.getMetadata().hasIdentityKey()) {
+            if (!PersistenceFramework.isUnsetKey(key)) {
+                throw new IllegalArgumentException("Object of " + framework.getMetadata().getTableName()
+                        + " already has key " + key + "; identity keys are assigned by the database");
+            }
+            pendingInserts.put(new Object(), object);
+            return;
+        }
+        pendingDeletes.remove(key);
+        pendingInserts.put(key, object);
+        identityMap.put(key, object);
+    }
+
+    /**
+     * Attaches an object loaded elsewhere. Without a snapshot to compare against, all of its columns are
+     * written at the next flush.
+     */
+    public void merge(Object object) {
+        Object key = mapper.getPrimaryKey(object);
+        if (identityMap.contains(key) && identityMap.get(key) != object) {
+            snapshots.remove(key);
+        }
+        identityMap.put(key, object);
+    }
+
+    /**
+     * Schedules {@code object} for deletion at the next flush.
+     */
+    public void remove(Object object) {
+        Object key = mapper.getPrimaryKey(object);
+        if (framework.getMetadata().hasIdentityKey() && PersistenceFramework.isUnsetKey(key)) {
+            pendingInserts.values().remove(object);
+            return;
+        }
+        if (pendingInserts.remove(key) != null) {
+            identityMap.remove(key);
+            return;
+        }
+        pendingDeletes.put(key, object);
+    }
+
+    /**
+     * Writes all pending inserts, changed columns and deletes in a single transaction. On failure the
+     * transaction is rolled back and the pending work is kept, so the flush can be retried.
+     *
+     * @throws OptimisticLockException if a versioned entity was changed or deleted concurrently; nothing is
+     *                                 written
+     * @throws RuntimeException        if the flush failed
+     */
+    public void flush() {
+        List<Object> inserts = new ArrayList<>(pendingInserts.values());
+        Map<String, List<Object>> updatesBySql = new LinkedHashMap<>();
+        Map<String, List<ColumnMetadata>> updateColumnsBySql = new HashMap<>();
+        List<Object> updated = new ArrayList<>();
+        collectUpdates(updatesBySql, updateColumnsBySql, updated);
+        List<Object> deletes = new ArrayList<>(pendingDeletes.values());
+
+        if (inserts.isEmpty() && updatesBySql.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+
+        SqlTemplates sqlTemplates = framework.getSqlTemplates();
+        OperationTimer timer = Metrics.start(framework.getMetadata().getTableName(), "flush");
+        try (PooledConnection conn = framework.getDbConnection().acquire()) {
+            timer.acquired();
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                if (!inserts.isEmpty()) {
+                    PreparedStatement pStmt = framework.prepareInsert(conn, sqlTemplates.insert());
+                    for (Object entity : inserts) {
+                        mapper.bindInsert(pStmt, 1, entity);
+                        pStmt.addBatch();
+                    }
+                    timer.prepared(sqlTemplates.insert());
+                    pStmt.executeBatch();
+                    framework.readGeneratedKeys(pStmt, inserts, 0);
+                    timer.executed();
+                }
+                for (Map.Entry<String, List<Object>> group : updatesBySql.entrySet()) {
+                    List<ColumnMetadata> columns = updateColumnsBySql.get(group.getKey());
+                    PreparedStatement pStmt = conn.getStatementCache().prepare(group.getKey());
+                    for (Object entity : group.getValue()) {
+                        int paramIndex = 1;
+                        for (ColumnMetadata column : columns) {
+                            column.getAccessor().bind(pStmt, paramIndex++, entity);
+                        }
+                        mapper.bindVersion(pStmt, mapper.bindPrimaryKey(pStmt, paramIndex, entity), entity);
+                        pStmt.addBatch();
+                    }
+                    timer.prepared(group.getKey());
+                    checkVersions(group.getValue(), pStmt.executeBatch(), "update");
+                    timer.executed();
+                }
+                if (!deletes.isEmpty()) {
+                    PreparedStatement pStmt = conn.getStatementCache().prepare(sqlTemplates.delete());
+                    for (Object entity : deletes) {
+                        mapper.bindVersion(pStmt, mapper.bindPrimaryKey(pStmt, 1, entity), entity);
+                        pStmt.addBatch();
+                    }
+                    timer.prepared(sqlTemplates.delete());
+                    checkVersions(deletes, pStmt.executeBatch(), "delete");
+                    timer.executed();
+                }
+                connection.commit();
+                timer.executed();
+                timer.rowsWritten(inserts.size() + updated.size() + deletes.size());
+            } catch (SQLException | RuntimeException e) {
+                timer.failed(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            throw new RuntimeException("Error flushing session for " + framework.getMetadata().getTableName(), e);
+        } finally {
+            timer.finish();
+            List<Object> written = new ArrayList<>(updated);
+            written.addAll(deletes);
+            framework.evictFromCache(written);
+        }
+
+        for (Object entity : inserts) {
+            identityMap.put(mapper.getPrimaryKey(entity), entity);
+            snapshots.put(mapper.getPrimaryKey(entity), mapper.snapshot(entity));
+        }
+        for (Object entity : updated) {
+            mapper.incrementVersion(entity);
+            snapshots.put(mapper.getPrimaryKey(entity), mapper.snapshot(entity));
+        }
+        for (Object key : pendingDeletes.keySet()) {
+            snapshots.remove(key);
+            identityMap.remove(key);
+        }
+        pendingInserts.clear();
+        pendingDeletes.clear();
+    }
+
+    public boolean contains(Object id) {
+        return identityMap.contains(id) && !pendingDeletes.containsKey(id);
+    }
+
+    /**
+     * Detaches every instance and discards unflushed work; subsequent lookups go back to the cache or
+     * database.
+     */
+    public void clear() {
+        identityMap.clear();
+        snapshots.clear();
+        pendingInserts.clear();
+        pendingDeletes.clear();
+    }
+
+    public CacheStatistics getStatistics() {
+        return identityMap.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * @throws OptimisticLockException if the entity is versioned and a statement of the batch matched no row
+     */
+    private void checkVersions(List<Object> entities, int[] counts, String operation) {
+        if (!mapper.isVersioned()) {
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new OptimisticLockException("Cannot " + operation + " object with id "
+                        + mapper.getPrimaryKey(entities.get(i)) + " in " + framework.getMetadata().getTableName()
+                        + ": it was changed or deleted concurrently", entities.get(i));
+            }
+        }
+    }
+
+    private Object manage(Object entity) {
+        Object key = mapper.getPrimaryKey(entity);
+        Object managed = identityMap.putIfAbsent(key, entity);
+        if (managed == entity) {
+            snapshots.put(key, mapper.snapshot(entity));
+        }
+        return managed;
+    }
+
+    /**
+     * Groups managed entities whose state differs from their snapshot by the set of changed columns,
+     * so that each group shares one UPDATE statement.
+     */
+    private void collectUpdates(Map<String, List<Object>> updatesBySql,
+            Map<String, List<ColumnMetadata>> updateColumnsBySql, List<Object> updated) {
+        List<ColumnMetadata> columns = framework.getMetadata().getColumns();
+        List<ColumnMetadata> updatableColumns = framework.getMetadata().getUpdatableColumns();
+        if (updatableColumns.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Object, Object> managed : identityMap.entries()) {
+            Object key = managed.getKey();
+            if (pendingInserts.containsKey(key) || pendingDeletes.containsKey(key)) {
+                continue;
+            }
+            Object entity = managed.getValue();
+            Object[] snapshot = snapshots.get(key);
+            Object[] current = mapper.snapshot(entity);
+            List<ColumnMetadata> changed = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnMetadata column = columns.get(i);
+                // a lazy value that is not loaded cannot have changed, and must not be written
+                if (!column.isPrimaryKey() && !column.isVersion() && current[i] != LazyValueAccessor.NOT_LOADED
+                        && (snapshot == null || !Objects.deepEquals(snapshot[i], current[i]))) {
+                    changed.add(column);
+                }
+            }
+            if (changed.isEmpty()) {
+                continue;
+            }
+            String sql = framework.getSqlTemplates().update(changed);
+            updatesBySql.computeIfAbsent(sql, statement -> new ArrayList<>()).add(entity);
+            updateColumnsBySql.put(sql, changed);
+            updated.add(entity);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe registry of {@link PersistenceFramework} repositories, one per entity class, shared by
+ * every thread of the application. Per-unit-of-work state lives in the {@link Session}s it opens, which
+ * are confined to the thread that uses them.
+ */
+public class SessionFactory {
+    private final ConcurrentMap<Class<?>, PersistenceFramework> repositories = new ConcurrentHashMap<>();
+
+    public PersistenceFramework getRepository(Class<?> entityClass) {
+        PersistenceFramework repository = repositories.get(entityClass);
+        if (repository == null) {
+            repository = repositories.computeIfAbsent(entityClass, PersistenceFramework::new);
+        }
+        return repository;
+    }
+
+    public Session openSession(Class<?> entityClass) {
+        return getRepository(entityClass).openSession();
+    }
+}
@@ -5,6 +5,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.annotation.ElementType;
 
+import com.persistence.type.TypeCodec;
+
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
 public @interface Column {
@@ -15,4 +17,26 @@ public @interface Column {
     boolean unique() default false;
 
     boolean nullable() default true;
+
+    /** Key generation for an integer primary key. */
+    GenerationType generation() default GenerationType.NONE;
+
+    /** Sequence of {@link GenerationType#SEQUENCE}; defaults to {@code <table>_<column>_seq}. */
+    String sequence() default "";
+
+    /** Keys reserved per sequence call; the sequence is created with this increment. */
+    int allocationSize() default 50;
+
+    /**
+     * {@code LAZY} leaves the column out of the SELECT lists of reads and loads it on first access. The
+     * field must be a {@link com.persistence.mapping.LazyValue}.
+     */
+    FetchType fetch() default FetchType.EAGER;
+
+    /**
+     * Codec that maps the field, such as {@link com.persistence.type.JsonbCodec}. By default the codec
+     * registered in {@link com.persistence.type.TypeCodecs} for the field's type is used, if any.
+     */
+    @SuppressWarnings("rawtypes")
+    Class<? extends TypeCodec> codec() default TypeCodec.class;
 }
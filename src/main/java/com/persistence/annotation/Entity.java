@@ -8,5 +8,8 @@ import java.lang.annotation.ElementType;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface Entity {
+    /**
+     * Table name; when empty, the entity's simple class name in lower case.
+     */
     String name() default "";
 }
\ No newline at end of file
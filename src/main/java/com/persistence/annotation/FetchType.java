@@ -0,0 +1,18 @@
+package com.persistence.annotation;
+
+/**
+ * When a relationship or a column is loaded.
+ */
+public enum FetchType {
+    /**
+     * Loaded on demand. Collections are filled on first access, for every entity loaded by the same
+     * call at once; references hold an instance with only its primary key set. Columns are loaded the
+     * same way as collections.
+     */
+    LAZY,
+    /**
+     * Loaded right after the owning entities, with one batched query per relationship. Columns are read
+     * with the row.
+     */
+    EAGER
+}
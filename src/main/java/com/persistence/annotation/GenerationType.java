@@ -0,0 +1,19 @@
+package com.persistence.annotation;
+
+/**
+ * How the value of a primary key column is generated.
+ */
+public enum GenerationType {
+    /** The application assigns the key. */
+    NONE,
+    /**
+     * The database assigns the key on insert ({@code GENERATED BY DEFAULT AS IDENTITY}); it is read
+     * back into the entity after the insert.
+     */
+    IDENTITY,
+    /**
+     * The key is drawn from a sequence before the insert, reserving {@link Column#allocationSize()}
+     * values per round trip.
+     */
+    SEQUENCE
+}
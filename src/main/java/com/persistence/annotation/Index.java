@@ -0,0 +1,34 @@
+package com.persistence.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index for schema generation. On an entity class, {@link #columns()} lists the indexed
+ * columns in order; on a field, it defaults to the field's column.
+ *
+ * <pre>
+ * &#64;Entity
+ * &#64;Index(columns = { "status", "created_at" })
+ * &#64;Index(columns = "email", unique = true, where = "deleted = false")
+ * public class Account { ... }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.FIELD })
+@Repeatable(Indexes.class)
+public @interface Index {
+    /** Index name; defaults to the table name, the column names and {@code idx}, joined by underscores. */
+    String name() default "";
+
+    /** Column or field names, in index order. */
+    String[] columns() default {};
+
+    boolean unique() default false;
+
+    /** SQL condition of a partial index; empty indexes every row. */
+    String where() default "";
+}
@@ -0,0 +1,21 @@
+package com.persistence.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a field whose type is another {@link Entity} to a foreign key column holding that entity's
+ * primary key.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ManyToOne {
+    /** Foreign key column; defaults to the lowercased field name followed by {@code _id}. */
+    String joinColumn() default "";
+
+    boolean nullable() default true;
+
+    FetchType fetch() default FetchType.LAZY;
+}
@@ -0,0 +1,20 @@
+package com.persistence.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a {@code List<Child>} field to the child entities whose {@link ManyToOne} field named
+ * {@link #mappedBy()} refers to this entity. The collection is read-only with respect to the database:
+ * relationships are written through the child's reference.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface OneToMany {
+    /** Name of the {@link ManyToOne} field on the child entity. */
+    String mappedBy();
+
+    FetchType fetch() default FetchType.LAZY;
+}
@@ -0,0 +1,18 @@
+package com.persistence.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity's optimistic lock counter, an {@code int}, {@code long} or {@code short} field mapped
+ * to a NOT NULL column (named by {@link Column#name()} when present). Updates and deletes only match
+ * the row if its counter still holds the value the entity was read with, and every update increments
+ * it, so a write based on stale state fails with {@code OptimisticLockException} instead of
+ * overwriting a concurrent change.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Version {
+}
@@ -0,0 +1,275 @@
+package com.persistence.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link EntityCache}s of several nodes consistent by broadcasting the primary keys each
+ * node writes.
+ * <p>
+ * Keys published within {@code coalesceMillis} of each other are sent together, one message per
+ * table listing every distinct key, split so that no message exceeds {@link #MAX_MESSAGE_LENGTH}
+ * characters. A table with more than {@code maxKeysPerTable} pending keys is invalidated as a whole
+ * instead. On receipt, each node evicts the listed keys from the caches subscribed to the table, and
+ * clears every cache when the {@link InvalidationTransport} reports that messages may have been lost.
+ * Messages a node sent itself are ignored, since its writes already evicted its own entries.
+ * <p>
+ * A message reads {@code <node> <table> <key>,<key>...}, with {@code *} as the key list for a whole
+ * table. Keys are URL-encoded and parsed back according to the subscriber's key type; a key of any
+ * type other than {@code int}, {@code long}, {@code short}, {@code String} or {@link UUID} evicts the
+ * whole table.
+ */
+public class CacheInvalidationBus implements AutoCloseable {
+    /** Longest message sent, below the 8000-byte limit of a PostgreSQL notification payload. */
+    public static final int MAX_MESSAGE_LENGTH = 7900;
+    private static final String ALL_KEYS = "*";
+
+    private final InvalidationTransport transport;
+    private final long coalesceMillis;
+    private final int maxKeysPerTable;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private Map<String, Set<Object>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    /**
+     * Sends every publication immediately.
+     */
+    public CacheInvalidationBus(InvalidationTransport transport) {
+        this(transport, 0, 1000);
+    }
+
+    /**
+     * @param coalesceMillis  how long keys are collected before being sent, or {@code 0} to send them on
+     *                        the publishing thread
+     * @param maxKeysPerTable pending keys of one table above which the whole table is invalidated
+     */
+    public CacheInvalidationBus(InvalidationTransport transport, long coalesceMillis, int maxKeysPerTable) {
+        if (maxKeysPerTable < 1) {
+            throw new IllegalArgumentException("Max keys per table must be positive: " + maxKeysPerTable);
+        }
+        this.transport = transport;
+        this.coalesceMillis = coalesceMillis;
+        this.maxKeysPerTable = maxKeysPerTable;
+        this.flusher = coalesceMillis <= 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "persistence-cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.start(this::receive, this::clearAll);
+    }
+
+    /**
+     * Evicts entries of {@code table} from {@code cache} when other nodes write them. The supplier is
+     * asked for the current cache on every message, so that the cache may be replaced or removed.
+     *
+     * @param keyType type of the table's primary key
+     * @return the subscription, to pass to {@link #unsubscribe(Object)}
+     */
+    public Object subscribe(String table, Class<?> keyType, Supplier<EntityCache> cache) {
+        Subscription subscription = new Subscription(keyType, cache);
+        subscriptions.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Object subscription) {
+        for (List<Subscription> list : subscriptions.values()) {
+            list.remove(subscription);
+        }
+    }
+
+    /**
+     * Announces that rows of {@code table} with the given primary keys were written.
+     */
+    public void publish(String table, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        boolean sendNow;
+        lock.lock();
+        try {
+            pending.computeIfAbsent(table, t -> new LinkedHashSet<>()).addAll(keys);
+            sendNow = flusher == null;
+            if (!sendNow && !flushScheduled) {
+                flushScheduled = true;
+                flusher.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (sendNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends every pending key now.
+     */
+    public void flush() {
+        Map<String, Set<Object>> batch;
+        lock.lock();
+        try {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        } finally {
+            lock.unlock();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> messages = new ArrayList<>();
+        for (Map.Entry<String, Set<Object>> entry : batch.entrySet()) {
+            encode(entry.getKey(), entry.getValue(), messages);
+        }
+        try {
+            transport.send(messages);
+        } catch (Exception e) {
+            System.err.println("Error sending cache invalidations for " + batch.keySet() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void encode(String table, Set<Object> keys, List<String> messages) {
+        String header = nodeId + " " + table + " ";
+        if (keys.size() > maxKeysPerTable) {
+            messages.add(header + ALL_KEYS);
+            return;
+        }
+        StringBuilder message = new StringBuilder(header);
+        for (Object key : keys) {
+            String encoded = encodeKey(key);
+            if (header.length() + encoded.length() > MAX_MESSAGE_LENGTH) {
+                messages.add(header + ALL_KEYS);
+                return;
+            }
+            if (message.length() + 1 + encoded.length() > MAX_MESSAGE_LENGTH) {
+                messages.add(message.toString());
+                message.setLength(header.length());
+            }
+            if (message.length() > header.length()) {
+                message.append(',');
+            }
+            message.append(encoded);
+        }
+        messages.add(message.toString());
+    }
+
+    void receive(String message) {
+        String[] parts = message.split(" ", 3);
+        if (parts.length < 3) {
+            System.err.println("Ignoring malformed cache invalidation: " + message);
+            return;
+        }
+        if (parts[0].equals(nodeId)) {
+            return;
+        }
+        List<Subscription> subscribers = subscriptions.get(parts[1]);
+        if (subscribers == null) {
+            return;
+        }
+        String[] keys = parts[2].equals(ALL_KEYS) ? null : parts[2].split(",");
+        for (Subscription subscription : subscribers) {
+            EntityCache cache = subscription.cache.get();
+            if (cache != null) {
+                subscription.invalidate(cache, keys);
+            }
+        }
+    }
+
+    private void clearAll() {
+        for (List<Subscription> list : subscriptions.values()) {
+            for (Subscription subscription : list) {
+                EntityCache cache = subscription.cache.get();
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+        transport.close();
+    }
+
+    private static String encodeKey(Object key) {
+        try {
+            // '*' is left as is by URL encoding but stands for every key
+            return URLEncoder.encode(String.valueOf(key), "UTF-8").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the key, or {@code null} if keys of this type cannot be parsed
+     */
+    static Object decodeKey(String encoded, Class<?> keyType) throws UnsupportedEncodingException {
+        String key = URLDecoder.decode(encoded, "UTF-8");
+        if (keyType == int.class || keyType == Integer.class) {
+            return Integer.valueOf(key);
+        } else if (keyType == long.class || keyType == Long.class) {
+            return Long.valueOf(key);
+        } else if (keyType == short.class || keyType == Short.class) {
+            return Short.valueOf(key);
+        } else if (keyType == String.class) {
+            return key;
+        } else if (keyType == UUID.class) {
+            return UUID.fromString(key);
+        }
+        return null;
+    }
+
+    private static final class Subscription {
+        private final Class<?> keyType;
+        private final Supplier<EntityCache> cache;
+
+        Subscription(Class<?> keyType, Supplier<EntityCache> cache) {
+            this.keyType = keyType;
+            this.cache = cache;
+        }
+
+        void invalidate(EntityCache target, String[] keys) {
+            if (keys == null) {
+                target.clear();
+                return;
+            }
+            try {
+                for (String encoded : keys) {
+                    Object key = decodeKey(encoded, keyType);
+                    if (key == null) {
+                        target.clear();
+                        return;
+                    }
+                    target.invalidate(key);
+                }
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                System.err.println("Error decoding cache invalidation key: " + e.getMessage());
+                target.clear();
+            }
+        }
+    }
+}
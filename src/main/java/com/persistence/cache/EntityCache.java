@@ -0,0 +1,256 @@
+package com.persistence.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded second-level cache of entity state, shared by every session of an entity type.
+ * <p>
+ * Entries are keyed by primary key and hold a copy of the column values, never the entity instance
+ * itself, so callers always receive a fresh object they are free to modify. The cache is bounded either
+ * by entry count or, with a {@link Weigher}, by total weight, evicts by {@link EvictionPolicy}, and
+ * drops entries older than the configured time-to-live.
+ * <p>
+ * A value read from the database must be cached with {@link #putFromLoad}, which drops it if its key was
+ * invalidated after the read began: otherwise a read racing with an update could cache the row as it
+ * was before the update, after the update's invalidation, and serve it until it expires.
+ */
+public class EntityCache {
+    /** Number of oldest entries examined when choosing an LFU victim. */
+    private static final int LFU_SAMPLE_SIZE = 8;
+
+    private final long maxWeight;
+    private final EvictionPolicy evictionPolicy;
+    private final long ttlNanos;
+    private final Weigher weigher;
+    private final CacheStatistics statistics = new CacheStatistics();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    /** Incremented by every invalidation; a load's token is its value when the load began. */
+    private long generation;
+    private long clearedAt;
+    private int loadsInFlight;
+    /** Generation of the latest invalidation of each key, kept only while loads are in flight. */
+    private final Map<Object, Long> invalidatedAt = new HashMap<>();
+
+    /**
+     * @param maxEntries     maximum number of cached entities
+     * @param evictionPolicy victim selection when full
+     * @param ttlMillis      time-to-live of an entry, or {@code 0} for no expiry
+     */
+    public EntityCache(long maxEntries, EvictionPolicy evictionPolicy, long ttlMillis) {
+        this(maxEntries, evictionPolicy, ttlMillis, null);
+    }
+
+    /**
+     * @param maxWeight      maximum total weight, or entry count when {@code weigher} is {@code null}
+     * @param evictionPolicy victim selection when full
+     * @param ttlMillis      time-to-live of an entry, or {@code 0} for no expiry
+     * @param weigher        weight of each entry, or {@code null} to count every entry as 1
+     */
+    public EntityCache(long maxWeight, EvictionPolicy evictionPolicy, long ttlMillis, Weigher weigher) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.evictionPolicy = evictionPolicy;
+        this.ttlNanos = ttlMillis <= 0 ? 0 : ttlMillis * 1_000_000L;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return a copy of the cached column values, or {@code null} when absent or expired
+     */
+    public Object[] get(Object key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                remove(key, entry);
+                statistics.recordExpiration();
+                entry = null;
+            }
+            if (entry == null) {
+                statistics.recordMiss();
+                return null;
+            }
+            entry.frequency++;
+            statistics.recordHit();
+            return entry.values.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches values known to be current, such as those just written.
+     */
+    public void put(Object key, Object[] values) {
+        Object[] copy = values.clone();
+        long weight = weigher == null ? 1 : Math.max(1, weigher.weigh(key, copy));
+        if (weight > maxWeight) {
+            return;
+        }
+        lock.lock();
+        try {
+            store(key, copy, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a database read whose results will be cached with {@link #putFromLoad}. Every call must
+     * be matched by a call to {@link #endLoad(long)}, normally in a {@code finally} block.
+     *
+     * @return the token to pass to {@link #putFromLoad} and {@link #endLoad(long)}
+     */
+    public long beginLoad() {
+        lock.lock();
+        try {
+            loadsInFlight++;
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches values read by the load {@code token} began, unless the key was invalidated or the cache
+     * cleared since then.
+     *
+     * @return whether the values were cached
+     */
+    public boolean putFromLoad(Object key, Object[] values, long token) {
+        Object[] copy = values.clone();
+        long weight = weigher == null ? 1 : Math.max(1, weigher.weigh(key, copy));
+        if (weight > maxWeight) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Long invalidated = invalidatedAt.get(key);
+            if (clearedAt > token || (invalidated != null && invalidated > token)) {
+                return false;
+            }
+            store(key, copy, weight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a load started by {@link #beginLoad()}.
+     */
+    public void endLoad(long token) {
+        lock.lock();
+        try {
+            if (--loadsInFlight == 0) {
+                invalidatedAt.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds the lock. */
+    private void store(Object key, Object[] copy, long weight) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        entries.put(key, new Entry(copy, weight, System.nanoTime()));
+        totalWeight += weight;
+        statistics.recordPut();
+        while (totalWeight > maxWeight && entries.size() > 1) {
+            evictOne(key);
+        }
+    }
+
+    public void invalidate(Object key) {
+        lock.lock();
+        try {
+            generation++;
+            if (loadsInFlight > 0) {
+                invalidatedAt.put(key, generation);
+            }
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                remove(key, entry);
+                statistics.recordInvalidation();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            clearedAt = ++generation;
+            entries.clear();
+            totalWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ttlNanos > 0 && System.nanoTime() - entry.createdNanos >= ttlNanos;
+    }
+
+    private void remove(Object key, Entry entry) {
+        entries.remove(key);
+        totalWeight -= entry.weight;
+    }
+
+    /**
+     * Evicts one entry other than {@code stored}, which has just been put and so has not been used yet.
+     */
+    private void evictOne(Object stored) {
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        Map.Entry<Object, Entry> victim = iterator.next();
+        if (evictionPolicy == EvictionPolicy.LFU) {
+            for (int examined = 1; examined < LFU_SAMPLE_SIZE && iterator.hasNext(); examined++) {
+                Map.Entry<Object, Entry> candidate = iterator.next();
+                if (!candidate.getKey().equals(stored)
+                        && candidate.getValue().frequency < victim.getValue().frequency) {
+                    victim = candidate;
+                }
+            }
+        }
+        remove(victim.getKey(), victim.getValue());
+        statistics.recordEviction();
+    }
+
+    private static final class Entry {
+        private final Object[] values;
+        private final long weight;
+        private final long createdNanos;
+        private long frequency;
+
+        Entry(Object[] values, long weight, long createdNanos) {
+            this.values = values;
+            this.weight = weight;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.persistence.cache;
+
+/**
+ * Which entry an {@link EntityCache} gives up when it is over capacity.
+ */
+public enum EvictionPolicy {
+    /** Least recently used. */
+    LRU,
+    /** Least frequently used, approximated over the oldest entries by access order. */
+    LFU
+}
@@ -0,0 +1,73 @@
+package com.persistence.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * First-level cache of a single session: maps each primary key to the one entity instance the
+ * session has handed out for it. Not thread-safe; a session belongs to one thread at a time.
+ */
+public class IdentityMap {
+    private final Map<Object, Object> entities = new LinkedHashMap<>();
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    public Object get(Object key) {
+        Object entity = entities.get(key);
+        if (entity == null) {
+            statistics.recordMiss();
+        } else {
+            statistics.recordHit();
+        }
+        return entity;
+    }
+
+    public void put(Object key, Object entity) {
+        entities.put(key, entity);
+        statistics.recordPut();
+    }
+
+    /**
+     * Registers {@code entity} unless the key is already mapped.
+     *
+     * @return the instance now mapped to {@code key}
+     */
+    public Object putIfAbsent(Object key, Object entity) {
+        Object existing = entities.putIfAbsent(key, entity);
+        if (existing != null) {
+            return existing;
+        }
+        statistics.recordPut();
+        return entity;
+    }
+
+    public void remove(Object key) {
+        if (entities.remove(key) != null) {
+            statistics.recordInvalidation();
+        }
+    }
+
+    public boolean contains(Object key) {
+        return entities.containsKey(key);
+    }
+
+    /**
+     * @return a read-only view of the managed entities, in registration order
+     */
+    public Set<Map.Entry<Object, Object>> entries() {
+        return Collections.unmodifiableMap(entities).entrySet();
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public void clear() {
+        entities.clear();
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+}
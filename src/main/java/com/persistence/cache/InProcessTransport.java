@@ -0,0 +1,45 @@
+package com.persistence.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport that delivers messages to the listeners started on the same instance, synchronously on
+ * the sending thread. Buses sharing one instance behave like nodes of a cluster, without a database;
+ * closing the instance stops delivery to all of them.
+ */
+public class InProcessTransport implements InvalidationTransport {
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> gapHandlers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(List<String> messages) {
+        for (String message : messages) {
+            for (Consumer<String> listener : listeners) {
+                listener.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void start(Consumer<String> listener, Runnable onGap) {
+        listeners.add(listener);
+        gapHandlers.add(onGap);
+    }
+
+    /**
+     * Reports a gap to every listener, as a transport does after losing its connection.
+     */
+    public void simulateGap() {
+        for (Runnable onGap : gapHandlers) {
+            onGap.run();
+        }
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+        gapHandlers.clear();
+    }
+}
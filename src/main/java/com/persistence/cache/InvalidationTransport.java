@@ -0,0 +1,28 @@
+package com.persistence.cache;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link CacheInvalidationBus} messages between nodes.
+ * <p>
+ * A transport delivers every message sent by any node to every started listener, including the
+ * sender's own. Delivery may be lost while a listener is disconnected; the transport then reports a
+ * gap so that the bus can drop everything it may have missed.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+    /**
+     * Sends the messages, each no longer than {@link CacheInvalidationBus#MAX_MESSAGE_LENGTH} characters.
+     */
+    void send(List<String> messages) throws Exception;
+
+    /**
+     * Starts delivering messages to {@code listener}.
+     *
+     * @param onGap run when messages may have been lost, e.g. after the listener reconnected
+     */
+    void start(Consumer<String> listener, Runnable onGap);
+
+    @Override
+    void close();
+}
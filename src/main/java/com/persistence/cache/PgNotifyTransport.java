@@ -0,0 +1,120 @@
+package com.persistence.cache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import com.persistence.db.DbConnection;
+import com.persistence.db.PoolConfig;
+import com.persistence.db.PooledConnection;
+
+/**
+ * Transport over PostgreSQL {@code LISTEN}/{@code NOTIFY}.
+ * <p>
+ * Messages are sent with {@code pg_notify} on a pooled connection in auto-commit mode, so they are
+ * delivered as soon as they are sent. Each node listens on a dedicated connection opened outside the
+ * pool, polled by a daemon thread. If that connection fails, the thread reconnects every
+ * {@code reconnectDelayMillis} and reports a gap once it listens again, since notifications sent in
+ * between are lost.
+ */
+public class PgNotifyTransport implements InvalidationTransport {
+    private static final int POLL_MILLIS = 500;
+
+    private final DbConnection dbConnection;
+    private final String channel;
+    private final long reconnectDelayMillis;
+    private volatile boolean closed;
+    private volatile Thread listenerThread;
+    private volatile Connection listenerConnection;
+
+    public PgNotifyTransport(DbConnection dbConnection, String channel) {
+        this(dbConnection, channel, 1000);
+    }
+
+    public PgNotifyTransport(DbConnection dbConnection, String channel, long reconnectDelayMillis) {
+        this.dbConnection = dbConnection;
+        this.channel = channel;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+    }
+
+    @Override
+    public void send(List<String> messages) throws SQLException {
+        try (PooledConnection conn = dbConnection.acquire()) {
+            PreparedStatement pStmt = conn.getStatementCache().prepare("SELECT pg_notify(?, ?)");
+            for (String message : messages) {
+                pStmt.setString(1, channel);
+                pStmt.setString(2, message);
+                pStmt.execute();
+            }
+        }
+    }
+
+    @Override
+    public void start(Consumer<String> listener, Runnable onGap) {
+        Thread thread = new Thread(() -> listen(listener, onGap), "persistence-cache-listener");
+        thread.setDaemon(true);
+        listenerThread = thread;
+        thread.start();
+    }
+
+    private void listen(Consumer<String> listener, Runnable onGap) {
+        boolean reconnecting = false;
+        while (!closed) {
+            PoolConfig config = dbConnection.getPool().getConfig();
+            try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(),
+                    config.getPassword())) {
+                listenerConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+                }
+                if (reconnecting) {
+                    onGap.run();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            listener.accept(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                System.err.println("Cache invalidation listener on " + channel + " failed: " + e.getMessage());
+            }
+            reconnecting = true;
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = listenerThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        Connection connection = listenerConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cache invalidation listener: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.persistence.cache;
+
+/**
+ * Computes the weight of a cached entry for caches bounded by total weight rather than entry count.
+ */
+@FunctionalInterface
+public interface Weigher {
+    long weigh(Object key, Object[] values);
+}
@@ -0,0 +1,163 @@
+package com.persistence.copy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.metadata.EntityMetadata;
+
+/**
+ * Bulk loads and exports one entity's table with PostgreSQL's {@code COPY}, through the pgjdbc
+ * {@link org.postgresql.copy.CopyManager} of a pooled connection.
+ * <p>
+ * Rows are encoded and sent as the source stream is consumed, and decoded as they arrive, so the
+ * dataset is never held in memory. A copy in is a single statement: it loads every row or none.
+ */
+public final class BulkCopier {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final EntityMetadata metadata;
+    private final DbConnection dbConnection;
+    private volatile CopyCodec codec;
+
+    public BulkCopier(EntityMetadata metadata, DbConnection dbConnection) {
+        this.metadata = metadata;
+        this.dbConnection = dbConnection;
+    }
+
+    /**
+     * Builds the codec on first use, so that an entity with columns COPY cannot encode is rejected only
+     * when it is copied.
+     *
+     * @throws IllegalArgumentException if a column's type has no COPY encoding
+     */
+    private CopyCodec codec() {
+        CopyCodec current = codec;
+        if (current == null) {
+            current = new CopyCodec(metadata);
+            codec = current;
+        }
+        return current;
+    }
+
+    /**
+     * @param keys gives each entity its primary key as it is consumed, before it is encoded
+     * @return the number of rows loaded
+     * @throws SQLException if the copy failed, in which case nothing was loaded
+     */
+    public long copyIn(Stream<?> entities, CopyFormat format, KeyAssigner keys) throws SQLException {
+        CopyCodec codec = codec();
+        try (PooledConnection conn = dbConnection.acquire()) {
+            PGCopyOutputStream copy = new PGCopyOutputStream(pgConnection(conn), codec.copyInSql(format),
+                    BUFFER_SIZE);
+            try {
+                Iterator<?> rows = entities.iterator();
+                if (format == CopyFormat.BINARY) {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(copy, BUFFER_SIZE));
+                    codec.writeBinaryHeader(out);
+                    while (rows.hasNext()) {
+                        codec.writeBinaryRow(out, keyed(rows.next(), keys));
+                    }
+                    codec.writeBinaryTrailer(out);
+                    out.flush();
+                } else {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8),
+                            BUFFER_SIZE);
+                    while (rows.hasNext()) {
+                        codec.writeCsvRow(out, keyed(rows.next(), keys));
+                    }
+                    out.flush();
+                }
+                return copy.endCopy();
+            } catch (IOException e) {
+                cancel(copy);
+                throw new SQLException("Error copying into " + metadata.getTableName(), e);
+            } catch (SQLException | RuntimeException e) {
+                cancel(copy);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the whole table to {@code out} in the given format.
+     *
+     * @return the number of rows exported
+     */
+    public long copyOut(OutputStream out, CopyFormat format) throws SQLException, IOException {
+        CopyCodec codec = codec();
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            return pgConnection(conn).getCopyAPI().copyOut(codec.copyOutSql(format), out);
+        }
+    }
+
+    /**
+     * Streams the whole table in binary format, passing each row to {@code action} as a new entity.
+     *
+     * @return the number of rows exported
+     */
+    public long copyOut(Consumer<Object> action) throws SQLException, IOException, ReflectiveOperationException {
+        CopyCodec codec = codec();
+        try (PooledConnection conn = dbConnection.acquireRead();
+                PGCopyInputStream copy = new PGCopyInputStream(pgConnection(conn),
+                        codec.copyOutSql(CopyFormat.BINARY))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(copy, BUFFER_SIZE));
+            long rows = codec.readBinary(in, action);
+            while (in.read() != -1) {
+                // drain to the end of the COPY so the connection is left idle
+            }
+            return rows;
+        }
+    }
+
+    private Object keyed(Object entity, KeyAssigner keys) throws SQLException {
+        if (!metadata.getEntityClass().isInstance(entity)) {
+            throw new IllegalArgumentException("Object of type " + entity.getClass().getName()
+                    + " does not match configured entity class " + metadata.getTableName());
+        }
+        keys.assign(entity);
+        return entity;
+    }
+
+    /**
+     * Gives an entity about to be copied in its primary key, if the framework generates it.
+     */
+    @FunctionalInterface
+    public interface KeyAssigner {
+        void assign(Object entity) throws SQLException;
+    }
+
+    private static void cancel(PGCopyOutputStream copy) {
+        try {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error cancelling COPY: " + e.getMessage());
+        }
+    }
+
+    private static PGConnection pgConnection(PooledConnection conn) throws SQLException {
+        if (!conn.getConnection().isWrapperFor(PGConnection.class)) {
+            throw new SQLException("COPY requires a PostgreSQL connection");
+        }
+        return conn.getConnection().unwrap(PGConnection.class);
+    }
+}
@@ -0,0 +1,310 @@
+package com.persistence.copy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * How one column's values travel through {@code COPY}, chosen from the SQL type
+ * {@link com.persistence.SchemaGenerator#getSqlType(com.persistence.metadata.ColumnMetadata)} assigns to
+ * the column, so that the encoding always agrees with the DDL the framework generated. Columns with a
+ * {@link com.persistence.type.TypeCodec} arrive here already encoded to their standard JDBC type.
+ */
+enum ColumnEncoding {
+    SMALLINT {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(2);
+            out.writeShort(((Number) value).shortValue());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readShort();
+        }
+    },
+    INTEGER {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(4);
+            out.writeInt(((Number) value).intValue());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readInt();
+        }
+    },
+    BIGINT {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(8);
+            out.writeLong(((Number) value).longValue());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readLong();
+        }
+    },
+    REAL {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(4);
+            out.writeFloat(((Number) value).floatValue());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readFloat();
+        }
+    },
+    DOUBLE_PRECISION {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(8);
+            out.writeDouble(((Number) value).doubleValue());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readDouble();
+        }
+    },
+    BOOLEAN {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(1);
+            out.writeByte((Boolean) value ? 1 : 0);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return in.readByte() != 0;
+        }
+
+        @Override
+        void appendCsv(StringBuilder row, Object value) {
+            row.append((Boolean) value ? 't' : 'f');
+        }
+    },
+    /** {@code date}: days since 2000-01-01. */
+    DATE {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            out.writeInt(4);
+            out.writeInt((int) (((Date) value).toLocalDate().toEpochDay() - POSTGRES_EPOCH_DAYS));
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return Date.valueOf(LocalDate.ofEpochDay(in.readInt() + POSTGRES_EPOCH_DAYS));
+        }
+    },
+    /** {@code timestamp} without time zone: microseconds since 2000-01-01 00:00, wall-clock time. */
+    TIMESTAMP {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            LocalDateTime dateTime = value instanceof LocalDateTime ? (LocalDateTime) value
+                    : toTimestamp(value).toLocalDateTime();
+            long seconds = dateTime.toEpochSecond(ZoneOffset.UTC) - POSTGRES_EPOCH_SECONDS;
+            out.writeInt(8);
+            out.writeLong(seconds * 1_000_000L + dateTime.getNano() / 1_000);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            long micros = in.readLong();
+            long seconds = Math.floorDiv(micros, 1_000_000L) + POSTGRES_EPOCH_SECONDS;
+            int nanos = (int) Math.floorMod(micros, 1_000_000L) * 1_000;
+            return Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+        }
+
+        @Override
+        void appendCsv(StringBuilder row, Object value) {
+            row.append(value instanceof LocalDateTime ? value : toTimestamp(value));
+        }
+    },
+    /** {@code timestamp with time zone}: microseconds since 2000-01-01 00:00 UTC, as a UTC {@link OffsetDateTime}. */
+    TIMESTAMPTZ {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            Instant instant = ((OffsetDateTime) value).toInstant();
+            out.writeInt(8);
+            out.writeLong((instant.getEpochSecond() - POSTGRES_EPOCH_SECONDS) * 1_000_000L + instant.getNano() / 1_000);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            long micros = in.readLong();
+            long seconds = Math.floorDiv(micros, 1_000_000L) + POSTGRES_EPOCH_SECONDS;
+            int nanos = (int) Math.floorMod(micros, 1_000_000L) * 1_000;
+            return Instant.ofEpochSecond(seconds, nanos).atOffset(ZoneOffset.UTC);
+        }
+    },
+    /** {@code uuid}: the 16 bytes, most significant first. */
+    UUID {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            java.util.UUID uuid = (java.util.UUID) value;
+            out.writeInt(16);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            return new java.util.UUID(in.readLong(), in.readLong());
+        }
+    },
+    /** {@code bytea}: the raw bytes in binary, {@code \x} and two hex digits per byte in CSV. */
+    BYTEA {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            byte[] bytes = (byte[]) value;
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        void appendCsv(StringBuilder row, Object value) {
+            byte[] bytes = (byte[]) value;
+            row.append("\\x");
+            for (byte b : bytes) {
+                row.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+        }
+    },
+    /** {@code jsonb}: a version byte of 1 followed by the document as text. */
+    JSONB {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length + 1);
+            out.writeByte(1);
+            out.write(bytes);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            int version = in.readByte();
+            if (version != 1) {
+                throw new IOException("Unsupported jsonb format version " + version);
+            }
+            return TEXT.readBinary(in, length - 1);
+        }
+
+        @Override
+        void appendCsv(StringBuilder row, Object value) {
+            TEXT.appendCsv(row, value);
+        }
+    },
+    /** {@code varchar} and {@code text}, and the {@code toString()} of any type without a mapping. */
+    TEXT {
+        @Override
+        void writeBinary(DataOutputStream out, Object value) throws IOException {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        Object readBinary(DataInputStream in, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void appendCsv(StringBuilder row, Object value) {
+            // always quoted, so that an empty string is not read back as NULL
+            String text = value.toString();
+            row.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    row.append('"');
+                }
+                row.append(c);
+            }
+            row.append('"');
+        }
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long POSTGRES_EPOCH_DAYS = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_DAYS * 86_400L;
+
+    /**
+     * Writes the length-prefixed binary form of a non-null value.
+     */
+    abstract void writeBinary(DataOutputStream out, Object value) throws IOException;
+
+    /**
+     * Reads a non-null value of {@code length} bytes, boxed as the wrapper of the column's Java type.
+     */
+    abstract Object readBinary(DataInputStream in, int length) throws IOException;
+
+    /**
+     * Appends the CSV form of a non-null value.
+     */
+    void appendCsv(StringBuilder row, Object value) {
+        row.append(value);
+    }
+
+    static ColumnEncoding forSqlType(String sqlType) {
+        int parenthesis = sqlType.indexOf('(');
+        String baseType = parenthesis < 0 ? sqlType : sqlType.substring(0, parenthesis);
+        switch (baseType.trim()) {
+            case "SMALLINT":
+                return SMALLINT;
+            case "INTEGER":
+                return INTEGER;
+            case "BIGINT":
+                return BIGINT;
+            case "REAL":
+                return REAL;
+            case "DOUBLE PRECISION":
+                return DOUBLE_PRECISION;
+            case "BOOLEAN":
+                return BOOLEAN;
+            case "DATE":
+                return DATE;
+            case "TIMESTAMP":
+                return TIMESTAMP;
+            case "TIMESTAMP WITH TIME ZONE":
+            case "TIMESTAMPTZ":
+                return TIMESTAMPTZ;
+            case "UUID":
+                return UUID;
+            case "JSONB":
+                return JSONB;
+            case "BYTEA":
+                return BYTEA;
+            default:
+                return TEXT;
+        }
+    }
+
+    private static Timestamp toTimestamp(Object value) {
+        if (value instanceof Timestamp) {
+            return (Timestamp) value;
+        }
+        return new Timestamp(((java.util.Date) value).getTime());
+    }
+}
@@ -0,0 +1,164 @@
+package com.persistence.copy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.persistence.SchemaGenerator;
+import com.persistence.mapping.ColumnAccessor;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.mapping.LazyValueAccessor;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.type.TypeCodec;
+
+/**
+ * Encodes entities as {@code COPY} rows and decodes them back, for one entity class. Columns travel in
+ * declaration order, each encoded according to the SQL type the schema generator gives its field; a
+ * column with a {@link TypeCodec} travels as the value its codec encodes. As with an INSERT, a copy in
+ * leaves out an identity primary key, which the database assigns.
+ * Rows are written and read one at a time, so neither direction holds more than one row in memory.
+ */
+public final class CopyCodec {
+    private static final byte[] BINARY_SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+
+    private final EntityMetadata metadata;
+    private final EntityMapper mapper;
+    private final ColumnAccessor[] accessors;
+    private final ColumnEncoding[] encodings;
+    private final TypeCodec<Object>[] codecs;
+    /** Indexes of the columns a copy in writes: every column but an identity primary key. */
+    private final int[] insertColumns;
+    private final String columnList;
+    private final String insertColumnList;
+
+    /**
+     * @throws IllegalArgumentException if a column's type has no COPY encoding other than its
+     *                                  {@code toString()}, which could neither be loaded nor read back
+     */
+    @SuppressWarnings("unchecked")
+    public CopyCodec(EntityMetadata metadata) {
+        List<ColumnMetadata> columns = metadata.getColumns();
+        this.metadata = metadata;
+        this.mapper = metadata.getMapper();
+        this.accessors = new ColumnAccessor[columns.size()];
+        this.encodings = new ColumnEncoding[columns.size()];
+        this.codecs = (TypeCodec<Object>[]) new TypeCodec<?>[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            accessors[i] = columns.get(i).getAccessor();
+            encodings[i] = ColumnEncoding.forSqlType(SchemaGenerator.getSqlType(columns.get(i)));
+            codecs[i] = columns.get(i).getCodec();
+            if (encodings[i] == ColumnEncoding.TEXT && columns.get(i).getColumnType() != String.class
+                    && codecs[i] == null) {
+                throw new IllegalArgumentException("Column " + columns.get(i).getName() + " of "
+                        + metadata.getTableName() + " has type " + columns.get(i).getColumnType().getName()
+                        + ", which COPY cannot encode");
+            }
+        }
+        this.insertColumns = metadata.getInsertColumns().stream().mapToInt(columns::indexOf).toArray();
+        this.columnList = columns.stream().map(ColumnMetadata::getName).collect(Collectors.joining(", "));
+        this.insertColumnList = metadata.getInsertColumns().stream().map(ColumnMetadata::getName)
+                .collect(Collectors.joining(", "));
+    }
+
+    public String copyInSql(CopyFormat format) {
+        return "COPY " + metadata.getTableName() + " (" + insertColumnList + ") FROM STDIN WITH (FORMAT "
+                + format.getOption() + ")";
+    }
+
+    public String copyOutSql(CopyFormat format) {
+        return "COPY " + metadata.getTableName() + " (" + columnList + ") TO STDOUT WITH (FORMAT "
+                + format.getOption() + ")";
+    }
+
+    public void writeBinaryHeader(DataOutputStream out) throws IOException {
+        out.write(BINARY_SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    public void writeBinaryRow(DataOutputStream out, Object entity) throws IOException {
+        out.writeShort(insertColumns.length);
+        for (int i : insertColumns) {
+            Object value = value(i, entity);
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                encodings[i].writeBinary(out, value);
+            }
+        }
+    }
+
+    private Object value(int column, Object entity) throws IOException {
+        Object value = accessors[column].get(entity);
+        if (value == LazyValueAccessor.NOT_LOADED) {
+            throw new IOException("Lazy column " + metadata.getColumns().get(column).getName() + " of "
+                    + metadata.getTableName() + " is not loaded");
+        }
+        return value != null && codecs[column] != null ? codecs[column].encode(value) : value;
+    }
+
+    public void writeBinaryTrailer(DataOutputStream out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    public void writeCsvRow(Writer out, Object entity) throws IOException {
+        StringBuilder row = new StringBuilder(16 * insertColumns.length);
+        for (int n = 0; n < insertColumns.length; n++) {
+            if (n > 0) {
+                row.append(',');
+            }
+            int i = insertColumns[n];
+            Object value = value(i, entity);
+            if (value != null) {
+                encodings[i].appendCsv(row, value);
+            }
+        }
+        row.append('\n');
+        out.write(row.toString());
+    }
+
+    /**
+     * Decodes a complete binary {@code COPY} stream, passing each row to {@code action} as a new entity.
+     * NULLs leave the field at its default value.
+     *
+     * @return the number of rows decoded
+     * @throws IOException if the stream is not a binary COPY of this entity's columns
+     */
+    public long readBinary(DataInputStream in, Consumer<Object> action) throws IOException,
+            ReflectiveOperationException {
+        byte[] signature = new byte[BINARY_SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, BINARY_SIGNATURE)) {
+            throw new IOException("Not a binary COPY stream");
+        }
+        in.readInt();
+        int extensionLength = in.readInt();
+        in.skipBytes(extensionLength);
+
+        long rows = 0;
+        short fieldCount;
+        while ((fieldCount = in.readShort()) != -1) {
+            if (fieldCount != accessors.length) {
+                throw new IOException("COPY row has " + fieldCount + " fields, expected " + accessors.length
+                        + " for " + metadata.getTableName());
+            }
+            Object entity = mapper.newInstance();
+            for (int i = 0; i < accessors.length; i++) {
+                int length = in.readInt();
+                if (length >= 0) {
+                    Object value = encodings[i].readBinary(in, length);
+                    accessors[i].set(entity, codecs[i] == null ? value : codecs[i].decode(value));
+                }
+            }
+            action.accept(entity);
+            rows++;
+        }
+        return rows;
+    }
+}
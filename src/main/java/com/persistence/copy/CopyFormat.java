@@ -0,0 +1,21 @@
+package com.persistence.copy;
+
+/**
+ * Wire format of a PostgreSQL {@code COPY}.
+ */
+public enum CopyFormat {
+    /** Comma-separated text; portable and readable by other tools. */
+    CSV("csv"),
+    /** PostgreSQL's binary tuple format; avoids parsing values as text on the server. */
+    BINARY("binary");
+
+    private final String option;
+
+    CopyFormat(String option) {
+        this.option = option;
+    }
+
+    String getOption() {
+        return option;
+    }
+}
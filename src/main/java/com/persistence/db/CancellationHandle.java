@@ -0,0 +1,90 @@
+package com.persistence.db;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets another thread cancel the statement the current operation is executing.
+ * <p>
+ * While a handle is bound to a thread, every statement that thread prepares through a
+ * {@link StatementCache} is attached to it, and detached again when the {@link PooledConnection} is
+ * returned. {@link #cancel()} calls {@link Statement#cancel()} on the attached statement; because
+ * detaching waits for an in-progress cancel, a cancel can never reach a statement that has already
+ * gone back to the pool with its connection.
+ */
+public final class CancellationHandle {
+    private static final ThreadLocal<CancellationHandle> CURRENT = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Statement statement;
+    private boolean cancelled;
+
+    /** Binds this handle to the calling thread. */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    /** Unbinds whatever handle is bound to the calling thread. */
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isCancelled() {
+        lock.lock();
+        try {
+            return cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            if (statement != null) {
+                statement.cancel();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error cancelling statement: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static void attach(Statement statement) throws SQLException {
+        CancellationHandle handle = CURRENT.get();
+        if (handle == null) {
+            return;
+        }
+        handle.lock.lock();
+        try {
+            if (handle.cancelled) {
+                throw new SQLException("Operation was cancelled");
+            }
+            handle.statement = statement;
+        } finally {
+            handle.lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether a statement was attached when the operation was cancelled, in which case the
+     *         connection may still receive the server's late cancel request and should not be reused
+     */
+    static boolean detach() {
+        CancellationHandle handle = CURRENT.get();
+        if (handle == null) {
+            return false;
+        }
+        handle.lock.lock();
+        try {
+            boolean interrupted = handle.cancelled && handle.statement != null;
+            handle.statement = null;
+            return interrupted;
+        } finally {
+            handle.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.persistence.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JDBC connections.
+ * <p>
+ * At most {@code maxSize} connections are on loan at any time; callers beyond that wait up to
+ * {@code acquireTimeoutMillis}. Idle connections are reused most-recently-returned first, validated
+ * on borrow when they have been idle longer than {@code validationIntervalMillis}, and evicted by a
+ * background task once idle for {@code idleTimeoutMillis}, never dropping below {@code minSize}.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final PoolConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(PoolConfig config) throws SQLException {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        try {
+            for (int i = 0; i < config.getMinSize(); i++) {
+                idleConnections.offerLast(create());
+            }
+        } catch (SQLException | RuntimeException e) {
+            PooledConnection pooled;
+            while ((pooled = idleConnections.pollFirst()) != null) {
+                destroy(pooled);
+            }
+            throw e;
+        }
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "persistence-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getEvictionIntervalMillis();
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                        + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idleConnections.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    pooled.markBorrowed();
+                    return pooled;
+                }
+                destroy(pooled);
+            }
+            pooled = create();
+            pooled.markBorrowed();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled, boolean discard) {
+        try {
+            if (closed || discard || !reset(pooled)) {
+                destroy(pooled);
+            } else {
+                pooled.markReturned();
+                idleConnections.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public int getActiveConnections() {
+        return config.getMaxSize() - permits.availablePermits();
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        totalConnections.incrementAndGet();
+        return new PooledConnection(this, connection, config.getStatementCacheSize());
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long idleMillis = System.currentTimeMillis() - pooled.getLastUsedMillis();
+        if (idleMillis < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooled.getConnection().isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean reset(PooledConnection pooled) {
+        try {
+            Connection connection = pooled.getConnection();
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Discarding pooled connection that failed to reset: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledConnection pooled = iterator.next();
+            if (totalConnections.get() <= config.getMinSize()) {
+                break;
+            }
+            if (now - pooled.getLastUsedMillis() >= config.getIdleTimeoutMillis()
+                    && idleConnections.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        try {
+            while (!closed && totalConnections.get() < config.getMinSize()) {
+                idleConnections.offerLast(create());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error replenishing connection pool: " + e.getMessage());
+        }
+    }
+}
@@ -2,61 +2,187 @@ package com.persistence.db;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Properties;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.sql.SQLException;
 
+/**
+ * Process-wide entry point to the connection pool.
+ * <p>
+ * Writes always use the primary's pool through {@link #acquire()}. Reads use {@link #acquireRead()},
+ * which goes to a {@link ReplicaSet} when read replicas are configured, unless the current thread has
+ * pinned its reads to the primary with {@link #withPrimary(Supplier)}.
+ * <p>
+ * Initialization and shutdown are guarded by a {@link ReentrantLock} rather than {@code synchronized},
+ * so virtual threads blocked on the pool's first connections do not pin their carrier thread.
+ */
 public class DbConnection {
-    private static DbConnection instance;
-    private Connection connection;
+    private static final String CONFIG_PROPERTY = "persistence.config";
+    private static final String DEFAULT_CONFIG_PATH = "src/main/resources/application.properties";
+    private static final ReentrantLock LOCK = new ReentrantLock();
 
-    private DbConnection() {
-        try {
-            // Carregar propriedades do arquivo application.properties
-            Properties properties = new Properties();
-            properties.load(new FileInputStream("src/main/resources/application.properties"));
+    private static final ThreadLocal<int[]> PRIMARY_PINS = ThreadLocal.withInitial(() -> new int[1]);
 
-            String dbUrl = properties.getProperty("db.url");
-            String dbUser = properties.getProperty("db.user");
-            String dbPassword = properties.getProperty("db.password");
-            String dbDriver = properties.getProperty("db.driver");
+    private static volatile DbConnection instance;
+    private final ConnectionPool pool;
+    private final ReplicaSet replicas;
 
-            // Inicializar conexão com o banco de dados
-            Class.forName(dbDriver);
-            this.connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
-        } catch (IOException e) {
-            throw new RuntimeException("Error loading database properties", e);
+    private DbConnection(Properties properties) {
+        ReplicaSet replicaSet = null;
+        try {
+            // Inicializar o pool de conexões com o banco de dados
+            Class.forName(properties.getProperty("db.driver"));
+            // read first, so that a bad replica setting fails before any connection is opened
+            replicaSet = ReplicaSet.fromProperties(properties);
+            this.pool = new ConnectionPool(PoolConfig.fromProperties(properties));
         } catch (Exception e) {
+            if (replicaSet != null) {
+                replicaSet.close();
+            }
             throw new RuntimeException("Error connecting to the database", e);
         }
+        this.replicas = replicaSet;
     }
 
+    /**
+     * Returns the shared instance, creating it on first use from application.properties (or the file
+     * named by the {@code persistence.config} system property).
+     */
     public static DbConnection getDbConnection() {
-        if (instance == null) {
-            instance = new DbConnection();
+        DbConnection current = instance;
+        if (current != null) {
+            return current;
+        }
+        LOCK.lock();
+        try {
+            if (instance == null) {
+                instance = new DbConnection(loadProperties());
+            }
+            return instance;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Creates the shared instance from explicit settings instead of application.properties.
+     *
+     * @throws IllegalStateException if the shared instance already exists
+     */
+    public static DbConnection initialize(Properties properties) {
+        LOCK.lock();
+        try {
+            if (instance != null) {
+                throw new IllegalStateException("Database connection is already initialized.");
+            }
+            instance = new DbConnection(properties);
+            return instance;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * @return whether the shared instance exists, without creating it
+     */
+    public static boolean isInitialized() {
+        return instance != null;
+    }
+
+    private static Properties loadProperties() {
+        String path = System.getProperty(CONFIG_PROPERTY, DEFAULT_CONFIG_PATH);
+        try (InputStream input = new FileInputStream(path)) {
+            // Carregar propriedades do arquivo application.properties
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading database properties", e);
         }
-        return instance;
     }
 
-    public Connection getConnection() {
-        if (connection == null) {
-            throw new IllegalStateException("Database connection is not initialized.");
+    /**
+     * Borrows a connection from the pool. Callers must close the returned
+     * {@link PooledConnection} (try-with-resources) to give it back.
+     */
+    public PooledConnection acquire() throws SQLException {
+        return pool.borrow();
+    }
+
+    /**
+     * Borrows a connection for a read: from a healthy replica if there are any and the thread has not
+     * pinned its reads to the primary, otherwise from the primary. Replicas lag behind the primary, so
+     * a read that must see the caller's own writes belongs inside {@link #withPrimary(Supplier)}.
+     */
+    public PooledConnection acquireRead() throws SQLException {
+        if (replicas != null && PRIMARY_PINS.get()[0] == 0) {
+            PooledConnection replica = replicas.borrow();
+            if (replica != null) {
+                return replica;
+            }
         }
-        return connection;
+        return pool.borrow();
     }
 
-    public static synchronized void closeDbConnection() {
-        if (instance == null || instance.connection == null) {
-            return;
+    /**
+     * Runs {@code action} with every read on the current thread going to the primary, as for the
+     * reads of a transaction or of a unit of work that must see its own writes. Calls may nest.
+     */
+    public <T> T withPrimary(Supplier<T> action) {
+        int[] pins = PRIMARY_PINS.get();
+        pins[0]++;
+        try {
+            return action.get();
+        } finally {
+            pins[0]--;
         }
+    }
+
+    /**
+     * @return whether {@code connection} was borrowed from the primary rather than from a replica
+     */
+    public boolean isPrimary(PooledConnection connection) {
+        return connection.getPool() == pool;
+    }
+
+    /**
+     * @return whether {@link #acquireRead()} may return a replica connection on the current thread
+     */
+    public boolean mayReadFromReplica() {
+        return replicas != null && PRIMARY_PINS.get()[0] == 0;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the read replicas, or {@code null} if none are configured
+     */
+    public ReplicaSet getReplicas() {
+        return replicas;
+    }
 
+    public static void closeDbConnection() {
+        LOCK.lock();
         try {
-            instance.connection.close();
+            if (instance == null) {
+                return;
+            }
+            instance.pool.close();
+            if (instance.replicas != null) {
+                instance.replicas.close();
+            }
         } catch (Exception e) {
-            throw new RuntimeException("Error closing the database connection", e);
+            throw new RuntimeException("Error closing the database connection pool", e);
         } finally {
-            instance = null;
-            System.out.println("Database connection closed.");
+            if (instance != null) {
+                instance = null;
+                System.out.println("Database connection pool closed.");
+            }
+            LOCK.unlock();
         }
     }
 }
@@ -0,0 +1,11 @@
+package com.persistence.db;
+
+/**
+ * How reads are spread over the healthy replicas of a {@link ReplicaSet}.
+ */
+public enum LoadBalancing {
+    /** Each read goes to the next replica in turn. */
+    ROUND_ROBIN,
+    /** Each read goes to the replica with the fewest connections on loan, in turn among ties. */
+    LEAST_BUSY
+}
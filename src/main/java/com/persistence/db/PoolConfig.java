@@ -0,0 +1,108 @@
+package com.persistence.db;
+
+import java.util.Properties;
+
+/**
+ * Connection pool settings, read from the {@code db.*} keys of application.properties.
+ */
+public class PoolConfig {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long evictionIntervalMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    public PoolConfig(String url, String user, String password, int minSize, int maxSize, long acquireTimeoutMillis,
+            long idleTimeoutMillis, long evictionIntervalMillis, long validationIntervalMillis,
+            int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.evictionIntervalMillis = evictionIntervalMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+    }
+
+    public static PoolConfig fromProperties(Properties properties) {
+        return new PoolConfig(
+                properties.getProperty("db.url"),
+                properties.getProperty("db.user"),
+                properties.getProperty("db.password"),
+                intProperty(properties, "db.pool.minSize", 1),
+                intProperty(properties, "db.pool.maxSize", 10),
+                longProperty(properties, "db.pool.acquireTimeoutMillis", 30000),
+                longProperty(properties, "db.pool.idleTimeoutMillis", 600000),
+                longProperty(properties, "db.pool.evictionIntervalMillis", 30000),
+                longProperty(properties, "db.pool.validationIntervalMillis", 500),
+                intProperty(properties, "db.pool.validationTimeoutSeconds", 2),
+                intProperty(properties, "db.statementCacheSize", 64));
+    }
+
+    static int intProperty(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static long longProperty(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+}
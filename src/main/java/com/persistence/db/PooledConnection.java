@@ -0,0 +1,66 @@
+package com.persistence.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection on loan from a {@link ConnectionPool}, together with its
+ * statement cache. Closing it returns the connection to the pool.
+ */
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private volatile long lastUsedMillis;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection, statementCacheSize);
+        this.lastUsedMillis = System.currentTimeMillis();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    void markReturned() {
+        borrowed = false;
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    void closePhysical() {
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            boolean cancelled = CancellationHandle.detach();
+            pool.release(this, cancelled);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.persistence.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read replicas of the primary database, each with its own {@link ConnectionPool}.
+ * <p>
+ * Replicas are configured as {@code db.replica.1.url}, {@code db.replica.2.url} and so on. Any other
+ * {@code db.replica.N.*} key overrides the primary's {@code db.*} setting of the same name for that
+ * replica, so credentials and pool sizes default to the primary's. {@code db.replica.balancing} picks
+ * the {@link LoadBalancing} strategy.
+ * <p>
+ * A replica is taken out of rotation as soon as a connection to it cannot be opened, and a background
+ * task probes every replica each {@code db.replica.healthCheckIntervalMillis} on a connection of its
+ * own, taking failed replicas out and putting recovered ones back. When no replica is healthy,
+ * {@link #borrow()} returns {@code null} and reads fail over to the primary.
+ */
+public class ReplicaSet implements AutoCloseable {
+    private static final String PREFIX = "db.replica.";
+
+    private final List<Replica> replicas;
+    private final LoadBalancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaSet(List<PoolConfig> configs, LoadBalancing balancing, long healthCheckIntervalMillis) {
+        if (configs.isEmpty()) {
+            throw new IllegalArgumentException("A replica set needs at least one replica");
+        }
+        List<Replica> members = new ArrayList<>(configs.size());
+        for (int i = 0; i < configs.size(); i++) {
+            members.add(new Replica("replica-" + (i + 1), configs.get(i)));
+        }
+        this.replicas = Collections.unmodifiableList(members);
+        this.balancing = balancing;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "persistence-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis,
+                healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the replicas configured under {@code db.replica.N.*}, or {@code null} if there are none
+     */
+    public static ReplicaSet fromProperties(Properties properties) {
+        List<PoolConfig> configs = new ArrayList<>();
+        for (int n = 1; properties.getProperty(PREFIX + n + ".url") != null; n++) {
+            configs.add(PoolConfig.fromProperties(replicaProperties(properties, PREFIX + n + ".")));
+        }
+        if (configs.isEmpty()) {
+            return null;
+        }
+        String balancing = properties.getProperty(PREFIX + "balancing", LoadBalancing.ROUND_ROBIN.name());
+        return new ReplicaSet(configs, LoadBalancing.valueOf(balancing.trim().toUpperCase()),
+                PoolConfig.longProperty(properties, PREFIX + "healthCheckIntervalMillis", 5000));
+    }
+
+    private static Properties replicaProperties(Properties properties, String prefix) {
+        Properties replica = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("db.") && !key.startsWith(PREFIX)) {
+                replica.setProperty(key, properties.getProperty(key));
+            }
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                replica.setProperty("db." + key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+        return replica;
+    }
+
+    /**
+     * Borrows a connection from a healthy replica chosen by the balancing strategy, trying the others
+     * in turn if it cannot be reached.
+     *
+     * @return the connection, or {@code null} if no replica is healthy
+     */
+    public PooledConnection borrow() throws SQLException {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (balancing == LoadBalancing.LEAST_BUSY) {
+            start = leastBusy(start);
+        }
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.borrow();
+            } catch (SQLException e) {
+                if (e instanceof SQLTimeoutException) {
+                    // a saturated replica is busy, not down
+                    throw e;
+                }
+                replica.markDown(e);
+            }
+        }
+        return null;
+    }
+
+    private int leastBusy(int start) {
+        int size = replicas.size();
+        int best = start;
+        int fewest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            ConnectionPool pool = replica.pool;
+            int active = pool == null ? 0 : pool.getActiveConnections();
+            if (replica.healthy && active < fewest) {
+                fewest = active;
+                best = (start + i) % size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Probes every replica on a fresh connection, outside its pool so that a saturated pool is not
+     * mistaken for a failed replica.
+     */
+    void checkHealth() {
+        for (Replica replica : replicas) {
+            PoolConfig config = replica.config;
+            try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(),
+                    config.getPassword())) {
+                if (!connection.isValid(config.getValidationTimeoutSeconds())) {
+                    throw new SQLException("Connection is not valid");
+                }
+                replica.markUp();
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    public LoadBalancing getBalancing() {
+        return balancing;
+    }
+
+    public int size() {
+        return replicas.size();
+    }
+
+    /**
+     * @return the number of replicas currently in rotation
+     */
+    public int getHealthyCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.close();
+        }
+    }
+
+    /**
+     * One replica and its pool. The pool is opened lazily, since a replica that is down at startup
+     * must not prevent the primary from being used.
+     */
+    private static final class Replica {
+        private final String name;
+        private final PoolConfig config;
+        private final ReentrantLock openLock = new ReentrantLock();
+        private volatile ConnectionPool pool;
+        private volatile boolean healthy = true;
+
+        Replica(String name, PoolConfig config) {
+            this.name = name;
+            this.config = config;
+        }
+
+        PooledConnection borrow() throws SQLException {
+            ConnectionPool current = pool;
+            if (current == null) {
+                current = open();
+            }
+            return current.borrow();
+        }
+
+        private ConnectionPool open() throws SQLException {
+            openLock.lock();
+            try {
+                if (pool == null) {
+                    pool = new ConnectionPool(config);
+                }
+                return pool;
+            } finally {
+                openLock.unlock();
+            }
+        }
+
+        void markUp() {
+            if (!healthy) {
+                healthy = true;
+                System.out.println("Replica " + name + " is back in rotation");
+            }
+        }
+
+        void markDown(Exception e) {
+            if (healthy) {
+                healthy = false;
+                System.err.println("Replica " + name + " taken out of rotation: " + e.getMessage());
+            }
+        }
+
+        void close() {
+            ConnectionPool current = pool;
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+}
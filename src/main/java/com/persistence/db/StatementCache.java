@@ -0,0 +1,69 @@
+package com.persistence.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of {@link PreparedStatement}s for a single {@link Connection}, keyed by SQL text.
+ * Statements handed out by the cache stay owned by it: callers close their
+ * {@link java.sql.ResultSet}s but never the statement itself. The least recently
+ * used statement is closed when the cache grows past its capacity.
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    public StatementCache(Connection connection, final int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "#keys#" + sql : sql;
+        PreparedStatement statement = statements.get(key);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, autoGeneratedKeys);
+            statements.put(key, statement);
+        }
+        CancellationHandle.attach(statement);
+        return statement;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public void clear() {
+        Iterator<PreparedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            closeQuietly(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached PreparedStatement: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.persistence.id;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+
+/**
+ * Hands out sequence values in blocks, so that generating keys costs one round trip per
+ * {@code allocationSize} keys instead of one per row.
+ * <p>
+ * The sequence must be created with {@code INCREMENT BY allocationSize}: each {@code nextval} then
+ * reserves the block {@code [value, value + allocationSize)} (the "pooled-lo" scheme), so several
+ * processes sharing the sequence never hand out the same key, and keys stay close to the sequence's
+ * value for anyone inserting with plain {@code nextval}. Values of a block that is not used up are
+ * lost when the process exits, leaving gaps. A {@link ReentrantLock} rather than a monitor guards the
+ * block, so a virtual thread waiting on the round trip does not pin its carrier.
+ */
+public final class SequenceAllocator {
+    private final DbConnection dbConnection;
+    private final String sql;
+    private final int allocationSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long limit;
+
+    public SequenceAllocator(DbConnection dbConnection, String sequenceName, int allocationSize) {
+        if (allocationSize < 1) {
+            throw new IllegalArgumentException("Allocation size must be positive: " + allocationSize);
+        }
+        this.dbConnection = dbConnection;
+        this.sql = "SELECT nextval('" + sequenceName + "')";
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * @return the next unused key, reserving a new block from the database if the current one is used up
+     */
+    public long nextValue() throws SQLException {
+        lock.lock();
+        try {
+            if (next == limit) {
+                next = reserveBlock();
+                limit = next + allocationSize;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long reserveBlock() throws SQLException {
+        try (PooledConnection conn = dbConnection.acquire()) {
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sql);
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    public int getAllocationSize() {
+        return allocationSize;
+    }
+}
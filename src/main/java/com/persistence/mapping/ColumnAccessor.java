@@ -0,0 +1,565 @@
+package com.persistence.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import com.persistence.type.TypeCodec;
+import com.persistence.type.TypeCodecs;
+
+/**
+ * Reads and writes one mapped field, both on the entity and against JDBC.
+ * <p>
+ * Each field gets a subclass specialised for its type, backed by {@link MethodHandle}s adapted to an
+ * exact {@code (Object)T} / {@code (Object,T)void} shape. Primitive columns are therefore moved with
+ * {@code getInt}/{@code setInt} and friends and are never boxed on the read or bind path. Fields with a
+ * {@link TypeCodec} are read and bound by the codec.
+ */
+public abstract class ColumnAccessor {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
+
+    ColumnAccessor(MethodHandle getter, MethodHandle setter) {
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * For accessors generated at build time, which reach the field directly and use no handles.
+     */
+    protected ColumnAccessor() {
+        this(null, null);
+    }
+
+    /**
+     * Builds the accessor for {@code field}, which must already be accessible, with the codec
+     * {@link TypeCodecs#forField(Field)} finds for it.
+     */
+    public static ColumnAccessor forField(Field field) {
+        return forField(field, field.getType() == LazyValue.class ? null : TypeCodecs.forField(field));
+    }
+
+    /**
+     * Builds the accessor for {@code field}, which must already be accessible.
+     *
+     * @param codec the codec that maps the field, or {@code null}
+     */
+    public static ColumnAccessor forField(Field field, TypeCodec<?> codec) {
+        Class<?> type = field.getType();
+        if (type == LazyValue.class) {
+            return LazyValueAccessor.forLazyField(field);
+        }
+        if (codec != null) {
+            return new CodecAccessor(getter(field, Object.class), setter(field, Object.class), codec);
+        }
+        Class<?> handleType = type.isPrimitive() || type == String.class ? type : Object.class;
+        MethodHandle getter = getter(field, handleType);
+        MethodHandle setter = setter(field, handleType);
+
+        if (type == int.class) {
+            return new IntAccessor(getter, setter);
+        } else if (type == long.class) {
+            return new LongAccessor(getter, setter);
+        } else if (type == short.class) {
+            return new ShortAccessor(getter, setter);
+        } else if (type == double.class) {
+            return new DoubleAccessor(getter, setter);
+        } else if (type == float.class) {
+            return new FloatAccessor(getter, setter);
+        } else if (type == boolean.class) {
+            return new BooleanAccessor(getter, setter);
+        } else if (type.isPrimitive()) {
+            throw new IllegalArgumentException("Unsupported primitive column type " + type + " on field "
+                    + field.getName());
+        } else if (type == String.class) {
+            return new StringAccessor(getter, setter);
+        }
+        return new ObjectAccessor(getter, setter, type);
+    }
+
+    /** Getter of {@code field} adapted to {@code (Object)handleType}. */
+    static MethodHandle getter(Field field, Class<?> handleType) {
+        try {
+            return LOOKUP.unreflectGetter(field).asType(MethodType.methodType(handleType, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access field " + field.getName() + " of "
+                    + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /** Setter of {@code field} adapted to {@code (Object,handleType)void}. */
+    static MethodHandle setter(Field field, Class<?> handleType) {
+        try {
+            return LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, handleType));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access field " + field.getName() + " of "
+                    + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /** Copies column {@code index} of the current row into the field. */
+    public abstract void read(ResultSet resultSet, int index, Object entity) throws SQLException;
+
+    /** Binds the field's value to parameter {@code index}. */
+    public abstract void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException;
+
+    /** Reads the field's column value, boxing primitives. */
+    public abstract Object get(Object entity);
+
+    /** Writes the field from a column value, unboxing primitives. */
+    public abstract void set(Object entity, Object value);
+
+    static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    static final class IntAccessor extends ColumnAccessor {
+        IntAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            int value = resultSet.getInt(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            int value;
+            try {
+                value = (int) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setInt(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (int) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Number) value).intValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class LongAccessor extends ColumnAccessor {
+        LongAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            long value = resultSet.getLong(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            long value;
+            try {
+                value = (long) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setLong(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (long) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Number) value).longValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class ShortAccessor extends ColumnAccessor {
+        ShortAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            short value = resultSet.getShort(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            short value;
+            try {
+                value = (short) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setShort(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (short) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Number) value).shortValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class DoubleAccessor extends ColumnAccessor {
+        DoubleAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            double value = resultSet.getDouble(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            double value;
+            try {
+                value = (double) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setDouble(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (double) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Number) value).doubleValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class FloatAccessor extends ColumnAccessor {
+        FloatAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            float value = resultSet.getFloat(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            float value;
+            try {
+                value = (float) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setFloat(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (float) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Number) value).floatValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class BooleanAccessor extends ColumnAccessor {
+        BooleanAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            boolean value = resultSet.getBoolean(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            boolean value;
+            try {
+                value = (boolean) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setBoolean(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (boolean) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, ((Boolean) value).booleanValue());
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static final class StringAccessor extends ColumnAccessor {
+        StringAccessor(MethodHandle getter, MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            String value = resultSet.getString(index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            String value;
+            try {
+                value = (String) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            pStmt.setString(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (String) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, (String) value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    /**
+     * Fields mapped by a {@link TypeCodec}, which reads and binds the value with the driver calls suited
+     * to its column type.
+     */
+    static final class CodecAccessor extends ColumnAccessor {
+        private final TypeCodec<Object> codec;
+
+        @SuppressWarnings("unchecked")
+        CodecAccessor(MethodHandle getter, MethodHandle setter, TypeCodec<?> codec) {
+            super(getter, setter);
+            this.codec = (TypeCodec<Object>) codec;
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            Object value = codec.read(resultSet, index);
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            Object value;
+            try {
+                value = (Object) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            codec.bind(pStmt, index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    /**
+     * Reference types without a dedicated accessor: boxed primitives, dates and anything else the
+     * driver can convert. Known types are read with {@code getObject(index, type)} so the driver does
+     * the conversion; unknown types fall back to the driver's default mapping.
+     */
+    static final class ObjectAccessor extends ColumnAccessor {
+        private final Class<?> type;
+        private final boolean driverConvertible;
+
+        ObjectAccessor(MethodHandle getter, MethodHandle setter, Class<?> type) {
+            super(getter, setter);
+            this.type = type;
+            this.driverConvertible = type == Integer.class || type == Long.class || type == Short.class
+                    || type == Double.class || type == Float.class || type == Boolean.class
+                    || type == java.math.BigDecimal.class || type == java.sql.Date.class
+                    || type == Timestamp.class || type == java.sql.Time.class;
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+            Object value;
+            if (driverConvertible) {
+                value = resultSet.getObject(index, type);
+            } else if (type == java.util.Date.class) {
+                value = resultSet.getTimestamp(index);
+            } else {
+                value = resultSet.getObject(index);
+            }
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+            Object value;
+            try {
+                value = (Object) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+            if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+                    && !(value instanceof Timestamp) && !(value instanceof java.sql.Time)) {
+                value = new Timestamp(((java.util.Date) value).getTime());
+            }
+            pStmt.setObject(index, value);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.persistence.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Row mapper and parameter binder specialised for one entity class.
+ * <p>
+ * Instances are created through a constructor {@link MethodHandle} and columns are moved by position
+ * through the entity's {@link ColumnAccessor}s, so a row is hydrated without name lookups or
+ * {@link java.lang.reflect.Field} calls. Column positions follow the entity's declared column order,
+ * which is also the order of every SELECT list rendered for it. Lazy columns, held in
+ * {@link LazyValue}s, are left out of SELECT lists and so of the positions {@link #map} reads.
+ */
+public final class EntityMapper {
+    private final Class<?> entityClass;
+    private final MethodHandle constructor;
+    private final Supplier<Object> instantiator;
+    private final ColumnAccessor[] accessors;
+    private final ColumnAccessor[] selectAccessors;
+    private final LazyValueAccessor[] lazyAccessors;
+    private final ColumnAccessor[] updateAccessors;
+    private final ColumnAccessor[] insertAccessors;
+    private final ColumnAccessor primaryKeyAccessor;
+    private final ColumnAccessor versionAccessor;
+
+    /**
+     * @param accessors          accessors of all columns, in column order
+     * @param primaryKeyAccessor the primary key's accessor (one of {@code accessors}), or {@code null}
+     * @param versionAccessor    the {@code @Version} column's accessor (one of {@code accessors}), or
+     *                           {@code null}
+     * @param identityPrimaryKey whether the database assigns the primary key, which INSERTs then omit
+     */
+    public EntityMapper(Class<?> entityClass, Constructor<?> constructor, List<ColumnAccessor> accessors,
+            ColumnAccessor primaryKeyAccessor, ColumnAccessor versionAccessor, boolean identityPrimaryKey) {
+        this(entityClass, constructor == null ? null : unreflect(constructor), null, accessors, primaryKeyAccessor,
+                versionAccessor, identityPrimaryKey);
+    }
+
+    /**
+     * @param instantiator creates new entities, as generated at build time in place of a constructor handle
+     */
+    public EntityMapper(Class<?> entityClass, Supplier<Object> instantiator, List<ColumnAccessor> accessors,
+            ColumnAccessor primaryKeyAccessor, ColumnAccessor versionAccessor, boolean identityPrimaryKey) {
+        this(entityClass, null, instantiator, accessors, primaryKeyAccessor, versionAccessor, identityPrimaryKey);
+    }
+
+    private EntityMapper(Class<?> entityClass, MethodHandle constructor, Supplier<Object> instantiator,
+            List<ColumnAccessor> accessors, ColumnAccessor primaryKeyAccessor, ColumnAccessor versionAccessor,
+            boolean identityPrimaryKey) {
+        this.entityClass = entityClass;
+        this.constructor = constructor;
+        this.instantiator = instantiator;
+        this.accessors = accessors.toArray(new ColumnAccessor[0]);
+        this.selectAccessors = accessors.stream()
+                .filter(accessor -> !(accessor instanceof LazyValueAccessor))
+                .toArray(ColumnAccessor[]::new);
+        this.lazyAccessors = accessors.stream()
+                .filter(accessor -> accessor instanceof LazyValueAccessor)
+                .toArray(LazyValueAccessor[]::new);
+        this.primaryKeyAccessor = primaryKeyAccessor;
+        this.versionAccessor = versionAccessor;
+        this.updateAccessors = accessors.stream()
+                .filter(accessor -> accessor != primaryKeyAccessor && accessor != versionAccessor)
+                .toArray(ColumnAccessor[]::new);
+        this.insertAccessors = !identityPrimaryKey ? this.accessors : accessors.stream()
+                .filter(accessor -> accessor != primaryKeyAccessor)
+                .toArray(ColumnAccessor[]::new);
+    }
+
+    private static MethodHandle unreflect(Constructor<?> constructor) {
+        try {
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access constructor of "
+                    + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    public Object newInstance() throws ReflectiveOperationException {
+        if (instantiator != null) {
+            return instantiator.get();
+        }
+        if (constructor == null) {
+            throw new NoSuchMethodException("No no-arg constructor found in class " + entityClass.getName());
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Hydrates a new entity from the current row, whose columns 1..n are the entity's non-lazy columns
+     * in order. Lazy fields are left empty.
+     */
+    public Object map(ResultSet resultSet) throws SQLException, ReflectiveOperationException {
+        return map(resultSet, 0);
+    }
+
+    /**
+     * Hydrates a new entity from columns {@code offset + 1..offset + n} of the current row, as when the
+     * entity's columns follow another table's in a join.
+     */
+    public Object map(ResultSet resultSet, int offset) throws SQLException, ReflectiveOperationException {
+        Object entity = newLazyInstance();
+        ColumnAccessor[] columns = selectAccessors;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].read(resultSet, offset + i + 1, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Hydrates a new entity from a projected row: column {@code i + 1} of the row is written through
+     * {@code columns[i]}, and fields outside the projection keep their default values, except lazy
+     * fields, which are left empty.
+     */
+    public Object map(ResultSet resultSet, ColumnAccessor[] columns) throws SQLException,
+            ReflectiveOperationException {
+        Object entity = newLazyInstance();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].read(resultSet, i + 1, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * @return a new entity whose lazy fields are empty, whatever its constructor put in them
+     */
+    private Object newLazyInstance() throws ReflectiveOperationException {
+        Object entity = newInstance();
+        for (LazyValueAccessor lazy : lazyAccessors) {
+            lazy.set(entity, LazyValueAccessor.NOT_LOADED);
+        }
+        return entity;
+    }
+
+    /**
+     * Copies the entity's column values, in column order, with {@link LazyValueAccessor#NOT_LOADED} for
+     * lazy values that were not loaded. Array values such as {@code byte[]} are copied, so later changes to
+     * the entity's arrays do not show through the snapshot.
+     */
+    public Object[] snapshot(Object entity) {
+        ColumnAccessor[] columns = accessors;
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = copyArray(columns[i].get(entity));
+        }
+        return values;
+    }
+
+    /**
+     * Creates a new entity from values captured by {@link #snapshot(Object)}. Array values are copied, so
+     * the snapshot can be reused for further entities.
+     */
+    public Object fromSnapshot(Object[] values) throws ReflectiveOperationException {
+        Object entity = newInstance();
+        ColumnAccessor[] columns = accessors;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].set(entity, copyArray(values[i]));
+        }
+        return entity;
+    }
+
+    private static Object copyArray(Object value) {
+        if (value == null || !value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * @return the entity's primary key value
+     */
+    public Object getPrimaryKey(Object entity) {
+        if (primaryKeyAccessor == null) {
+            throw new IllegalArgumentException("No primary key field found in class " + entityClass.getName());
+        }
+        return primaryKeyAccessor.get(entity);
+    }
+
+    public void setPrimaryKey(Object entity, Object value) {
+        if (primaryKeyAccessor == null) {
+            throw new IllegalArgumentException("No primary key field found in class " + entityClass.getName());
+        }
+        primaryKeyAccessor.set(entity, value);
+    }
+
+    /**
+     * Binds every column of {@code entity}, in column order, starting at parameter {@code startIndex}.
+     *
+     * @return the next free parameter index
+     */
+    public int bindAll(PreparedStatement pStmt, int startIndex, Object entity) throws SQLException {
+        return bind(pStmt, startIndex, accessors, entity);
+    }
+
+    /**
+     * Binds every column as {@link #bindAll} does, followed by one flag per lazy updatable column telling
+     * whether its value is loaded, matching {@code INSERT ... ON CONFLICT ... DO UPDATE SET column = CASE
+     * WHEN ? THEN EXCLUDED.column ELSE table.column END}.
+     *
+     * @return the next free parameter index
+     */
+    public int bindUpsert(PreparedStatement pStmt, int startIndex, Object entity) throws SQLException {
+        int paramIndex = bindAll(pStmt, startIndex, entity);
+        for (ColumnAccessor accessor : updateAccessors) {
+            if (accessor instanceof LazyValueAccessor) {
+                pStmt.setBoolean(paramIndex++, accessor.get(entity) != LazyValueAccessor.NOT_LOADED);
+            }
+        }
+        return paramIndex;
+    }
+
+    /**
+     * Binds the columns an INSERT sets, in column order: every column but an identity primary key.
+     *
+     * @return the next free parameter index
+     */
+    public int bindInsert(PreparedStatement pStmt, int startIndex, Object entity) throws SQLException {
+        return bind(pStmt, startIndex, insertAccessors, entity);
+    }
+
+    /**
+     * Binds the non-key columns followed by the primary key and, for a versioned entity, the version,
+     * matching {@code UPDATE ... SET ... WHERE pk = ? [AND version = ?]}. A lazy column takes two
+     * parameters, as in {@link LazyValueAccessor#bindIfLoaded}.
+     *
+     * @return the next free parameter index
+     */
+    public int bindUpdate(PreparedStatement pStmt, int startIndex, Object entity) throws SQLException {
+        int paramIndex = startIndex;
+        for (ColumnAccessor accessor : updateAccessors) {
+            if (accessor instanceof LazyValueAccessor) {
+                paramIndex = ((LazyValueAccessor) accessor).bindIfLoaded(pStmt, paramIndex, entity);
+            } else {
+                accessor.bind(pStmt, paramIndex++, entity);
+            }
+        }
+        paramIndex = bindPrimaryKey(pStmt, paramIndex, entity);
+        return bindVersion(pStmt, paramIndex, entity);
+    }
+
+    /**
+     * Binds the version of a versioned entity to parameter {@code index}; does nothing otherwise.
+     *
+     * @return the next free parameter index
+     */
+    public int bindVersion(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+        if (versionAccessor == null) {
+            return index;
+        }
+        versionAccessor.bind(pStmt, index, entity);
+        return index + 1;
+    }
+
+    public boolean isVersioned() {
+        return versionAccessor != null;
+    }
+
+    /**
+     * Advances the version of a versioned entity after its UPDATE succeeded, mirroring
+     * {@code SET version = version + 1}.
+     */
+    public void incrementVersion(Object entity) {
+        if (versionAccessor == null) {
+            return;
+        }
+        Object current = versionAccessor.get(entity);
+        if (current instanceof Long) {
+            versionAccessor.set(entity, (Long) current + 1);
+        } else if (current instanceof Short) {
+            versionAccessor.set(entity, (short) ((Short) current + 1));
+        } else {
+            versionAccessor.set(entity, (Integer) current + 1);
+        }
+    }
+
+    /**
+     * Binds the primary key of {@code entity} to parameter {@code index}.
+     *
+     * @return the next free parameter index
+     */
+    public int bindPrimaryKey(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+        if (primaryKeyAccessor == null) {
+            throw new IllegalArgumentException("No primary key field found in class " + entityClass.getName());
+        }
+        primaryKeyAccessor.bind(pStmt, index, entity);
+        return index + 1;
+    }
+
+    private static int bind(PreparedStatement pStmt, int startIndex, ColumnAccessor[] columns, Object entity)
+            throws SQLException {
+        int paramIndex = startIndex;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].bind(pStmt, paramIndex++, entity);
+        }
+        return paramIndex;
+    }
+}
@@ -0,0 +1,41 @@
+package com.persistence.mapping;
+
+import java.util.function.Supplier;
+
+/**
+ * Mapping code generated at build time for one entity by the {@code Framework-processor} annotation
+ * processor.
+ * <p>
+ * For entity {@code com.example.Order} the processor writes {@code com.example.Order_Mapping}, and
+ * {@code Outer.Inner} becomes {@code Outer_Inner_Mapping}. When that class is on the class path the
+ * metadata registry takes its accessors and instantiator in place of the {@link java.lang.invoke.MethodHandle}s
+ * it would otherwise spin per field, so building an entity's metadata costs no handle generation and
+ * the mapping code is plain field access the JIT can inline. Anything the generated class does not
+ * provide falls back to reflection.
+ */
+public interface GeneratedEntity {
+    /** Suffix of the generated class name. */
+    String SUFFIX = "_Mapping";
+
+    /**
+     * @return the names of the entity's mapped fields, in declaration order, as the processor saw them;
+     *         the registry ignores the generated class if they differ from the compiled entity's
+     */
+    String[] fieldNames();
+
+    /**
+     * @return the declared types of the fields of {@link #fieldNames()}, checked the same way
+     */
+    Class<?>[] fieldTypes();
+
+    /**
+     * @return a direct accessor of the field, or {@code null} to use the reflective one
+     */
+    ColumnAccessor accessor(String fieldName);
+
+    /**
+     * @return a factory calling the entity's no-arg constructor, or {@code null} if it is not accessible
+     *         to generated code
+     */
+    Supplier<Object> instantiator();
+}
@@ -0,0 +1,25 @@
+package com.persistence.mapping;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Reads the value of a lazy column for the {@link LazyValue}s it was attached to.
+ */
+public interface LazyLoader {
+    /**
+     * Loads the column of {@code owner}, filling its {@link LazyValue}. A loader attached to several
+     * entities read together fills all of theirs at once.
+     */
+    void load(Object owner);
+
+    /**
+     * Streams a binary column of {@code owner} from the database without loading it whole.
+     */
+    InputStream openStream(Object owner);
+
+    /**
+     * Streams a text column of {@code owner} from the database without loading it whole.
+     */
+    Reader openReader(Object owner);
+}
@@ -0,0 +1,102 @@
+package com.persistence.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Holder of a {@code @Column(fetch = LAZY)} value, typically a large {@code String} or {@code byte[]}.
+ * <p>
+ * Entities read from the database get an unloaded holder; the first {@link #get()} loads the column
+ * of every entity read together with this one, in one batched query. {@link #openStream()} and
+ * {@link #openReader()} read an unloaded value in chunks instead, so it never has to fit in memory.
+ * New entities use {@link #of(Object)}. A {@code null} field is treated as not loaded: updates leave
+ * the column alone and inserts write {@code NULL}; use {@code LazyValue.of(null)} to clear a column.
+ * Holders are not thread-safe.
+ */
+public final class LazyValue<T> {
+    private LazyLoader loader;
+    private Object owner;
+    private T value;
+    private boolean loaded;
+
+    /**
+     * Creates an unloaded value of {@code owner}'s column.
+     */
+    public LazyValue(LazyLoader loader, Object owner) {
+        this.loader = loader;
+        this.owner = owner;
+    }
+
+    private LazyValue(T value) {
+        this.value = value;
+        this.loaded = true;
+    }
+
+    public static <T> LazyValue<T> of(T value) {
+        return new LazyValue<>(value);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the value, loaded on first access
+     * @throws IllegalStateException if it could not be loaded
+     */
+    public T get() {
+        if (!loaded) {
+            loader.load(owner);
+        }
+        if (!loaded) {
+            throw new IllegalStateException("Lazy column could not be loaded");
+        }
+        return value;
+    }
+
+    public void set(T value) {
+        this.value = value;
+        this.loaded = true;
+        this.loader = null;
+        this.owner = null;
+    }
+
+    /**
+     * @return the binary value as a stream, read from memory when loaded and in chunks from the
+     *         database otherwise, or {@code null} if it is {@code NULL}
+     * @throws IllegalStateException if the loaded value is not a {@code byte[]}
+     */
+    public InputStream openStream() {
+        if (!loaded) {
+            return loader.openStream(owner);
+        }
+        if (value != null && !(value instanceof byte[])) {
+            throw new IllegalStateException("Lazy value of type " + value.getClass().getName()
+                    + " cannot be read as bytes");
+        }
+        return value == null ? null : new ByteArrayInputStream((byte[]) value);
+    }
+
+    /**
+     * @return the text value as a reader, read from memory when loaded and in chunks from the
+     *         database otherwise, or {@code null} if it is {@code NULL}
+     * @throws IllegalStateException if the loaded value is not a {@code String}
+     */
+    public Reader openReader() {
+        if (!loaded) {
+            return loader.openReader(owner);
+        }
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalStateException("Lazy value of type " + value.getClass().getName()
+                    + " cannot be read as text");
+        }
+        return value == null ? null : new StringReader((String) value);
+    }
+
+    @Override
+    public String toString() {
+        return loaded ? "LazyValue[" + value + "]" : "LazyValue[not loaded]";
+    }
+}
@@ -0,0 +1,157 @@
+package com.persistence.mapping;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Accessor of a {@link LazyValue} field. {@link #read}, {@link #bind}, {@link #get(Object)} and
+ * {@link #set(Object, Object)} work on the value inside the holder; {@link #get(Object)} returns
+ * {@link #NOT_LOADED} for a value that was never loaded, which {@link #set(Object, Object)} turns back
+ * into an empty field.
+ */
+public final class LazyValueAccessor extends ColumnAccessor {
+    /** Stands for a value that was not loaded, in snapshots and wherever column values are compared. */
+    public static final Object NOT_LOADED = new Object() {
+        @Override
+        public String toString() {
+            return "<not loaded>";
+        }
+    };
+
+    private final Class<?> valueType;
+
+    private LazyValueAccessor(Field field, Class<?> valueType) {
+        super(getter(field, Object.class), setter(field, Object.class));
+        this.valueType = valueType;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the field does not declare its value type, as in
+     *                                  {@code LazyValue<String>}
+     */
+    static LazyValueAccessor forLazyField(Field field) {
+        Type type = field.getGenericType();
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return new LazyValueAccessor(field, (Class<?>) argument);
+            }
+        }
+        throw new IllegalArgumentException("LazyValue field " + field.getName() + " of "
+                + field.getDeclaringClass().getName() + " must declare its value type");
+    }
+
+    /**
+     * @return the type of the value held, which is the column's type
+     */
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+        fill(entity, readValue(resultSet, index));
+    }
+
+    /**
+     * @return column {@code index} of the current row, as the value type
+     */
+    public Object readValue(ResultSet resultSet, int index) throws SQLException {
+        if (valueType == String.class) {
+            return resultSet.getString(index);
+        } else if (valueType == byte[].class) {
+            return resultSet.getBytes(index);
+        }
+        return resultSet.getObject(index, valueType);
+    }
+
+    /**
+     * Binds the value, or {@code NULL} if it is not loaded.
+     */
+    @Override
+    public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+        Object value = get(entity);
+        pStmt.setObject(index, value == NOT_LOADED ? null : value);
+    }
+
+    /**
+     * Binds whether the value is loaded to parameter {@code index} and the value to the next one, for
+     * {@code CASE WHEN ? THEN ? ELSE column END}, which leaves a column that was not loaded unchanged.
+     *
+     * @return the next free parameter index
+     */
+    public int bindIfLoaded(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+        Object value = get(entity);
+        pStmt.setBoolean(index, value != NOT_LOADED);
+        pStmt.setObject(index + 1, value == NOT_LOADED ? null : value);
+        return index + 2;
+    }
+
+    /**
+     * @return the loaded value, or {@link #NOT_LOADED}
+     */
+    @Override
+    public Object get(Object entity) {
+        LazyValue<?> holder = holder(entity);
+        return holder == null || !holder.isLoaded() ? NOT_LOADED : holder.get();
+    }
+
+    /**
+     * Replaces the holder with one of {@code value}, or empties the field for {@link #NOT_LOADED}.
+     */
+    @Override
+    public void set(Object entity, Object value) {
+        setHolder(entity, value == NOT_LOADED ? null : LazyValue.of(value));
+    }
+
+    /**
+     * Stores a value loaded for {@code entity} in its holder, creating one if the field is empty, unless
+     * the holder already has a value.
+     */
+    @SuppressWarnings("unchecked")
+    public void fill(Object entity, Object value) {
+        LazyValue<Object> holder = (LazyValue<Object>) holder(entity);
+        if (holder == null) {
+            setHolder(entity, LazyValue.of(value));
+        } else if (!holder.isLoaded()) {
+            holder.set(value);
+        }
+    }
+
+    /**
+     * Gives an empty field an unloaded holder backed by {@code loader}.
+     */
+    public void attach(Object entity, LazyLoader loader) {
+        if (holder(entity) == null) {
+            setHolder(entity, new LazyValue<>(loader, entity));
+        }
+    }
+
+    /**
+     * @return whether the field has a holder without a value
+     */
+    public boolean isPending(Object entity) {
+        LazyValue<?> holder = holder(entity);
+        return holder != null && !holder.isLoaded();
+    }
+
+    private LazyValue<?> holder(Object entity) {
+        try {
+            return (LazyValue<?>) (Object) getter.invokeExact(entity);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private void setHolder(Object entity, LazyValue<?> holder) {
+        try {
+            setter.invokeExact(entity, (Object) holder);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
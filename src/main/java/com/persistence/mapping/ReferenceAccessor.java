@@ -0,0 +1,93 @@
+package com.persistence.mapping;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Accessor of a {@code @ManyToOne} field. The field holds the referenced entity while the column holds
+ * its primary key, so {@link #get(Object)}, {@link #set(Object, Object)}, {@link #read} and
+ * {@link #bind} all work on the key: reading a row or setting a key stores a reference, an instance of
+ * the target entity with only its primary key set, until the relationship is fetched.
+ * {@link #getReference(Object)} and {@link #setReference(Object, Object)} work on the entity itself.
+ */
+public final class ReferenceAccessor extends ColumnAccessor {
+    private final Class<?> keyType;
+    private final Supplier<EntityMapper> targetMapper;
+
+    private ReferenceAccessor(Field field, Class<?> keyType, Supplier<EntityMapper> targetMapper) {
+        super(getter(field, Object.class), setter(field, Object.class));
+        this.keyType = keyType;
+        this.targetMapper = targetMapper;
+    }
+
+    /**
+     * @param keyType      the referenced entity's primary key type, boxed
+     * @param targetMapper supplies the referenced entity's mapper; resolved on first use so that entities
+     *                     may refer to each other or to themselves
+     */
+    public static ReferenceAccessor forField(Field field, Class<?> keyType, Supplier<EntityMapper> targetMapper) {
+        return new ReferenceAccessor(field, keyType, targetMapper);
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+        Object key = resultSet.getObject(index, keyType);
+        try {
+            setReference(entity, key == null ? null : reference(key));
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Cannot create reference for key " + key, e);
+        }
+    }
+
+    @Override
+    public void bind(PreparedStatement pStmt, int index, Object entity) throws SQLException {
+        pStmt.setObject(index, get(entity));
+    }
+
+    /**
+     * @return the referenced entity's primary key, or {@code null}
+     */
+    @Override
+    public Object get(Object entity) {
+        Object target = getReference(entity);
+        return target == null ? null : targetMapper.get().getPrimaryKey(target);
+    }
+
+    /**
+     * Points the field at a reference for primary key {@code value}, or clears it.
+     */
+    @Override
+    public void set(Object entity, Object value) {
+        try {
+            setReference(entity, value == null ? null : reference(value));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create reference for key " + value, e);
+        }
+    }
+
+    public Object getReference(Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setReference(Object entity, Object target) {
+        try {
+            setter.invokeExact(entity, target);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private Object reference(Object key) throws ReflectiveOperationException {
+        EntityMapper mapper = targetMapper.get();
+        Object target = mapper.newInstance();
+        mapper.setPrimaryKey(target, key);
+        return target;
+    }
+}
@@ -0,0 +1,95 @@
+package com.persistence.metadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import com.persistence.annotation.FetchType;
+import com.persistence.annotation.OneToMany;
+
+/**
+ * Immutable description of a {@link OneToMany} collection field.
+ */
+public final class CollectionMetadata {
+    private final Field field;
+    private final Class<?> elementType;
+    private final String mappedBy;
+    private final FetchType fetch;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    CollectionMetadata(Field field, Class<?> elementType, OneToMany oneToMany) {
+        this.field = field;
+        this.elementType = elementType;
+        this.mappedBy = oneToMany.mappedBy();
+        this.fetch = oneToMany.fetch();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access field " + field.getName() + " of "
+                    + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * @return the child entity class
+     */
+    public Class<?> getElementType() {
+        return elementType;
+    }
+
+    /**
+     * @return the child's {@code @ManyToOne} column referring back to the owner
+     */
+    public ColumnMetadata getMappedBy() {
+        ColumnMetadata column = EntityMetadataRegistry.get(elementType).getColumn(mappedBy);
+        if (!column.isReference()) {
+            throw new IllegalArgumentException("mappedBy of " + field.getDeclaringClass().getName() + "."
+                    + field.getName() + " must name a @ManyToOne field of " + elementType.getName());
+        }
+        return column;
+    }
+
+    public FetchType getFetch() {
+        return fetch;
+    }
+
+    public Object get(Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void set(Object entity, List<?> elements) {
+        try {
+            setter.invokeExact(entity, (Object) elements);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,181 @@
+package com.persistence.metadata;
+
+import java.lang.reflect.Field;
+
+import com.persistence.annotation.Column;
+import com.persistence.annotation.FetchType;
+import com.persistence.annotation.GenerationType;
+import com.persistence.annotation.ManyToOne;
+import com.persistence.annotation.Version;
+import com.persistence.mapping.ColumnAccessor;
+import com.persistence.mapping.LazyValue;
+import com.persistence.mapping.LazyValueAccessor;
+import com.persistence.mapping.ReferenceAccessor;
+import com.persistence.type.TypeCodec;
+import com.persistence.type.TypeCodecs;
+
+/**
+ * Immutable description of a single {@link Column} or {@link ManyToOne} mapped field.
+ * The underlying {@link Field} is made accessible and its {@link ColumnAccessor} generated once,
+ * when the metadata is built.
+ */
+public final class ColumnMetadata {
+    private final Field field;
+    private final String name;
+    private final boolean primaryKey;
+    private final boolean unique;
+    private final boolean nullable;
+    private final ColumnAccessor accessor;
+    private final TypeCodec<Object> codec;
+    private final Class<?> columnType;
+    private final Class<?> referencedEntity;
+    private final FetchType fetch;
+    private final boolean version;
+    private final GenerationType generation;
+    private final String sequenceName;
+    private final int allocationSize;
+
+    /**
+     * @param column       the field's {@link Column}, which a {@link Version} field may omit
+     * @param version      whether the field is annotated with {@link Version}
+     * @param sequenceName the resolved sequence of a {@link GenerationType#SEQUENCE} key, else ignored
+     * @param accessor     accessor generated at build time, or {@code null} to build one from the field;
+     *                     ignored for a field mapped by a codec
+     */
+    @SuppressWarnings("unchecked")
+    ColumnMetadata(Field field, String name, Column column, boolean version, String sequenceName,
+            ColumnAccessor accessor) {
+        this.field = field;
+        this.codec = version || field.getType() == LazyValue.class ? null
+                : (TypeCodec<Object>) TypeCodecs.forField(field);
+        this.accessor = accessor != null && codec == null ? accessor : ColumnAccessor.forField(field, codec);
+        this.name = name;
+        this.primaryKey = column != null && column.primaryKey();
+        this.unique = column != null && column.unique();
+        this.nullable = !version && (column == null || column.nullable());
+        this.columnType = this.accessor instanceof LazyValueAccessor
+                ? ((LazyValueAccessor) this.accessor).getValueType() : field.getType();
+        this.referencedEntity = null;
+        this.fetch = column == null ? FetchType.EAGER : column.fetch();
+        this.version = version;
+        this.generation = column == null ? GenerationType.NONE : column.generation();
+        this.sequenceName = generation == GenerationType.SEQUENCE ? sequenceName : null;
+        this.allocationSize = column == null ? 1 : column.allocationSize();
+    }
+
+    ColumnMetadata(Field field, String name, ManyToOne manyToOne, Class<?> keyType, ReferenceAccessor accessor) {
+        this.field = field;
+        this.accessor = accessor;
+        this.codec = null;
+        this.name = name;
+        this.primaryKey = false;
+        this.unique = false;
+        this.nullable = manyToOne.nullable();
+        this.columnType = keyType;
+        this.referencedEntity = field.getType();
+        this.fetch = manyToOne.fetch();
+        this.version = false;
+        this.generation = GenerationType.NONE;
+        this.sequenceName = null;
+        this.allocationSize = 1;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getJavaType() {
+        return field.getType();
+    }
+
+    /**
+     * @return the type of the value stored in the column: the field type, for a reference the
+     *         referenced entity's primary key type, or for a lazy column the type held by its
+     *         {@code LazyValue}
+     */
+    public Class<?> getColumnType() {
+        return columnType;
+    }
+
+    /**
+     * @return whether this is a {@link ManyToOne} foreign key
+     */
+    public boolean isReference() {
+        return referencedEntity != null;
+    }
+
+    /**
+     * @return the entity a {@link ManyToOne} column refers to, or {@code null}
+     */
+    public Class<?> getReferencedEntity() {
+        return referencedEntity;
+    }
+
+    public FetchType getFetch() {
+        return fetch;
+    }
+
+    /**
+     * @return whether this is a {@code @Column(fetch = LAZY)} column, left out of SELECT lists
+     */
+    public boolean isLazy() {
+        return !isReference() && fetch == FetchType.LAZY;
+    }
+
+    /**
+     * @return whether this is the entity's {@link Version} column
+     */
+    public boolean isVersion() {
+        return version;
+    }
+
+    public GenerationType getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the sequence of a {@link GenerationType#SEQUENCE} key, or {@code null}
+     */
+    public String getSequenceName() {
+        return sequenceName;
+    }
+
+    public int getAllocationSize() {
+        return allocationSize;
+    }
+
+    public boolean isPrimaryKey() {
+        return primaryKey;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public ColumnAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return the codec that reads and binds the column, or {@code null} if it is mapped without one
+     */
+    public TypeCodec<Object> getCodec() {
+        return codec;
+    }
+
+    public Object get(Object entity) {
+        return accessor.get(entity);
+    }
+
+    public void set(Object entity, Object value) {
+        accessor.set(entity, value);
+    }
+}
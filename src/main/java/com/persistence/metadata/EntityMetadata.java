@@ -0,0 +1,225 @@
+package com.persistence.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.persistence.annotation.GenerationType;
+import com.persistence.mapping.EntityMapper;
+
+/**
+ * Immutable, per-class view of an entity's mapping: table name, ordered columns,
+ * primary key and the generated {@link EntityMapper}. Instances are built once by
+ * {@link EntityMetadataRegistry} and shared by every caller.
+ */
+public final class EntityMetadata {
+    private final Class<?> entityClass;
+    private final String tableName;
+    private final List<ColumnMetadata> columns;
+    private final List<ColumnMetadata> nonPrimaryKeyColumns;
+    private final ColumnMetadata primaryKey;
+    private final EntityMapper mapper;
+    private final Map<String, ColumnMetadata> columnsByName;
+    private final List<ColumnMetadata> references;
+    private final List<CollectionMetadata> collections;
+    private final List<IndexMetadata> indexes;
+    private final List<ColumnMetadata> updatableColumns;
+    private final ColumnMetadata version;
+    private final List<ColumnMetadata> insertColumns;
+    private final List<ColumnMetadata> selectColumns;
+    private final List<ColumnMetadata> lazyColumns;
+
+    EntityMetadata(Class<?> entityClass, String tableName, List<ColumnMetadata> columns,
+            List<ColumnMetadata> nonPrimaryKeyColumns, ColumnMetadata primaryKey, EntityMapper mapper,
+            List<CollectionMetadata> collections, List<IndexMetadata> indexes) {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.nonPrimaryKeyColumns = nonPrimaryKeyColumns;
+        this.primaryKey = primaryKey;
+        this.mapper = mapper;
+        this.columnsByName = new HashMap<>();
+        for (ColumnMetadata column : columns) {
+            columnsByName.put(column.getField().getName(), column);
+        }
+        for (ColumnMetadata column : columns) {
+            columnsByName.put(column.getName(), column);
+        }
+        List<ColumnMetadata> referenceColumns = new ArrayList<>();
+        for (ColumnMetadata column : columns) {
+            if (column.isReference()) {
+                referenceColumns.add(column);
+            }
+        }
+        this.references = Collections.unmodifiableList(referenceColumns);
+        List<ColumnMetadata> updatable = new ArrayList<>();
+        ColumnMetadata versionColumn = null;
+        for (ColumnMetadata column : nonPrimaryKeyColumns) {
+            if (column.isVersion()) {
+                versionColumn = column;
+            } else {
+                updatable.add(column);
+            }
+        }
+        this.updatableColumns = Collections.unmodifiableList(updatable);
+        this.version = versionColumn;
+        if (hasIdentityKey()) {
+            List<ColumnMetadata> insertable = new ArrayList<>(columns);
+            insertable.remove(primaryKey);
+            this.insertColumns = Collections.unmodifiableList(insertable);
+        } else {
+            this.insertColumns = columns;
+        }
+        List<ColumnMetadata> selected = new ArrayList<>();
+        List<ColumnMetadata> lazy = new ArrayList<>();
+        for (ColumnMetadata column : columns) {
+            (column.isLazy() ? lazy : selected).add(column);
+        }
+        this.selectColumns = lazy.isEmpty() ? columns : Collections.unmodifiableList(selected);
+        this.lazyColumns = Collections.unmodifiableList(lazy);
+        this.collections = collections;
+        this.indexes = indexes;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    public List<ColumnMetadata> getNonPrimaryKeyColumns() {
+        return nonPrimaryKeyColumns;
+    }
+
+    /**
+     * Looks a column up by column name or by field name.
+     *
+     * @throws IllegalArgumentException if the entity has no such column
+     */
+    public ColumnMetadata getColumn(String name) {
+        ColumnMetadata column = columnsByName.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Class " + entityClass.getName() + " has no @Column named " + name);
+        }
+        return column;
+    }
+
+    /**
+     * @return the columns reads select, in column order: every column but the lazy ones
+     */
+    public List<ColumnMetadata> getSelectColumns() {
+        return selectColumns;
+    }
+
+    /**
+     * @return the {@code @Column(fetch = LAZY)} columns, in column order
+     */
+    public List<ColumnMetadata> getLazyColumns() {
+        return lazyColumns;
+    }
+
+    /**
+     * @return the columns an UPDATE sets: every column but the primary key and the version
+     */
+    public List<ColumnMetadata> getUpdatableColumns() {
+        return updatableColumns;
+    }
+
+    /**
+     * @return the columns an INSERT sets: every column but an identity primary key
+     */
+    public List<ColumnMetadata> getInsertColumns() {
+        return insertColumns;
+    }
+
+    /**
+     * @return whether the database assigns the primary key on insert
+     */
+    public boolean hasIdentityKey() {
+        return primaryKey != null && primaryKey.getGeneration() == GenerationType.IDENTITY;
+    }
+
+    /**
+     * @return the {@code @Version} column, or {@code null} if the entity is not versioned
+     */
+    public ColumnMetadata getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the {@code @ManyToOne} columns, in column order
+     */
+    public List<ColumnMetadata> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return the {@code @OneToMany} collections, in declaration order
+     */
+    public List<CollectionMetadata> getCollections() {
+        return collections;
+    }
+
+    /**
+     * @return the declared {@code @Index}es, class-level first
+     */
+    public List<IndexMetadata> getIndexes() {
+        return indexes;
+    }
+
+    public boolean hasRelationships() {
+        return !references.isEmpty() || !collections.isEmpty();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the entity has no {@code @OneToMany} field with this name
+     */
+    public CollectionMetadata getCollection(String name) {
+        for (CollectionMetadata collection : collections) {
+            if (collection.getName().equals(name)) {
+                return collection;
+            }
+        }
+        throw new IllegalArgumentException("Class " + entityClass.getName() + " has no @OneToMany named " + name);
+    }
+
+    /**
+     * Looks a {@code @ManyToOne} column up by field name or by column name.
+     *
+     * @throws IllegalArgumentException if the entity has no such reference
+     */
+    public ColumnMetadata getReference(String name) {
+        ColumnMetadata column = columnsByName.get(name);
+        if (column == null || !column.isReference()) {
+            throw new IllegalArgumentException("Class " + entityClass.getName() + " has no @ManyToOne named " + name);
+        }
+        return column;
+    }
+
+    public boolean hasPrimaryKey() {
+        return primaryKey != null;
+    }
+
+    public ColumnMetadata getPrimaryKey() {
+        if (primaryKey == null) {
+            throw new IllegalArgumentException("No primary key field found in class " + entityClass.getName());
+        }
+        return primaryKey;
+    }
+
+    public EntityMapper getMapper() {
+        return mapper;
+    }
+
+    public Object newInstance() throws ReflectiveOperationException {
+        return mapper.newInstance();
+    }
+}
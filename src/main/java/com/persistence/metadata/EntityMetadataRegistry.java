@@ -0,0 +1,324 @@
+package com.persistence.metadata;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.GenerationType;
+import com.persistence.annotation.Index;
+import com.persistence.annotation.ManyToOne;
+import com.persistence.annotation.OneToMany;
+import com.persistence.annotation.Version;
+import com.persistence.mapping.ColumnAccessor;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.mapping.GeneratedEntity;
+import com.persistence.mapping.LazyValue;
+import com.persistence.mapping.ReferenceAccessor;
+import com.persistence.type.TypeCodec;
+
+/**
+ * Process-wide cache of {@link EntityMetadata}. Reflection over an entity class
+ * happens only the first time it is requested. Accessors and the instantiator come from the entity's
+ * {@link GeneratedEntity} when the annotation processor has generated one, and from reflection
+ * otherwise.
+ */
+public final class EntityMetadataRegistry {
+    private static final ConcurrentMap<Class<?>, EntityMetadata> METADATA = new ConcurrentHashMap<>();
+
+    private EntityMetadataRegistry() {
+    }
+
+    public static EntityMetadata get(Class<?> entityClass) {
+        EntityMetadata metadata = METADATA.get(entityClass);
+        if (metadata == null) {
+            metadata = METADATA.computeIfAbsent(entityClass, EntityMetadataRegistry::build);
+        }
+        return metadata;
+    }
+
+    public static String getColumnName(Field field) {
+        Column columnAnnotation = field.getAnnotation(Column.class);
+        if (columnAnnotation != null && !columnAnnotation.name().isEmpty()) {
+            return columnAnnotation.name();
+        }
+        return field.getName().toLowerCase();
+    }
+
+    private static EntityMetadata build(Class<?> entityClass) {
+        String tableName = resolveTableName(entityClass);
+        GeneratedEntity generated = generated(entityClass);
+        List<ColumnMetadata> columns = new ArrayList<>();
+        List<ColumnMetadata> nonPrimaryKeyColumns = new ArrayList<>();
+        List<CollectionMetadata> collections = new ArrayList<>();
+        ColumnMetadata primaryKey = null;
+        ColumnMetadata versionColumn = null;
+
+        for (Field field : entityClass.getDeclaredFields()) {
+            Column columnAnnotation = field.getAnnotation(Column.class);
+            ManyToOne manyToOne = field.getAnnotation(ManyToOne.class);
+            OneToMany oneToMany = field.getAnnotation(OneToMany.class);
+            if (oneToMany != null) {
+                field.setAccessible(true);
+                collections.add(new CollectionMetadata(field, elementType(field), oneToMany));
+                continue;
+            }
+            boolean version = field.isAnnotationPresent(Version.class);
+            if (columnAnnotation == null && manyToOne == null && !version) {
+                continue;
+            }
+            field.setAccessible(true);
+            ColumnMetadata column = manyToOne != null ? referenceColumn(field, manyToOne)
+                    : new ColumnMetadata(field, getColumnName(field), columnAnnotation, version,
+                            sequenceName(tableName, field, columnAnnotation),
+                            generated == null ? null : generated.accessor(field.getName()));
+            checkGeneration(entityClass, column);
+            checkLazy(entityClass, column);
+            if (version) {
+                checkVersion(entityClass, field, versionColumn);
+                versionColumn = column;
+            }
+            columns.add(column);
+            if (column.isPrimaryKey() && primaryKey == null) {
+                primaryKey = column;
+            } else {
+                nonPrimaryKeyColumns.add(column);
+            }
+        }
+
+        List<ColumnAccessor> accessors = new ArrayList<>(columns.size());
+        for (ColumnMetadata column : columns) {
+            accessors.add(column.getAccessor());
+        }
+        Supplier<Object> instantiator = generated == null ? null : generated.instantiator();
+        ColumnAccessor primaryKeyAccessor = primaryKey == null ? null : primaryKey.getAccessor();
+        ColumnAccessor versionAccessor = versionColumn == null ? null : versionColumn.getAccessor();
+        boolean identityPrimaryKey = primaryKey != null && primaryKey.getGeneration() == GenerationType.IDENTITY;
+        EntityMapper mapper = instantiator != null
+                ? new EntityMapper(entityClass, instantiator, accessors, primaryKeyAccessor, versionAccessor,
+                        identityPrimaryKey)
+                : new EntityMapper(entityClass, resolveConstructor(entityClass), accessors, primaryKeyAccessor,
+                        versionAccessor, identityPrimaryKey);
+
+        return new EntityMetadata(entityClass, tableName,
+                Collections.unmodifiableList(columns), Collections.unmodifiableList(nonPrimaryKeyColumns),
+                primaryKey, mapper, Collections.unmodifiableList(collections),
+                Collections.unmodifiableList(indexes(entityClass, tableName, columns)));
+    }
+
+    private static List<IndexMetadata> indexes(Class<?> entityClass, String tableName, List<ColumnMetadata> columns) {
+        Map<String, ColumnMetadata> columnsByName = new HashMap<>();
+        for (ColumnMetadata column : columns) {
+            columnsByName.put(column.getField().getName(), column);
+            columnsByName.put(column.getName(), column);
+        }
+        List<IndexMetadata> indexes = new ArrayList<>();
+        for (Index index : entityClass.getAnnotationsByType(Index.class)) {
+            indexes.add(index(entityClass, tableName, index, index.columns(), columnsByName));
+        }
+        for (ColumnMetadata column : columns) {
+            for (Index index : column.getField().getAnnotationsByType(Index.class)) {
+                String[] names = index.columns().length == 0 ? new String[] { column.getName() } : index.columns();
+                indexes.add(index(entityClass, tableName, index, names, columnsByName));
+            }
+        }
+        return indexes;
+    }
+
+    private static IndexMetadata index(Class<?> entityClass, String tableName, Index index, String[] names,
+            Map<String, ColumnMetadata> columnsByName) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("@Index on " + entityClass.getName() + " lists no columns");
+        }
+        List<ColumnMetadata> indexed = new ArrayList<>(names.length);
+        StringBuilder defaultName = new StringBuilder(tableName);
+        for (String name : names) {
+            ColumnMetadata column = columnsByName.get(name);
+            if (column == null) {
+                throw new IllegalArgumentException("@Index on " + entityClass.getName() + " names unknown column "
+                        + name);
+            }
+            indexed.add(column);
+            defaultName.append('_').append(column.getName());
+        }
+        String indexName = index.name().isEmpty() ? defaultName.append("_idx").toString() : index.name();
+        return new IndexMetadata(indexName, Collections.unmodifiableList(indexed), index.unique(),
+                index.where().isEmpty() ? null : index.where());
+    }
+
+    private static String sequenceName(String tableName, Field field, Column column) {
+        if (column == null) {
+            return null;
+        }
+        if (!column.sequence().isEmpty()) {
+            return column.sequence();
+        }
+        return tableName + "_" + getColumnName(field) + "_seq";
+    }
+
+    private static void checkGeneration(Class<?> entityClass, ColumnMetadata column) {
+        if (column.getGeneration() == GenerationType.NONE) {
+            return;
+        }
+        Class<?> type = wrap(column.getJavaType());
+        if (!column.isPrimaryKey() || (type != Integer.class && type != Long.class)) {
+            throw new IllegalArgumentException("Generated column " + column.getName() + " of " + entityClass.getName()
+                    + " must be an int or long primary key");
+        }
+        if (column.getAllocationSize() < 1) {
+            throw new IllegalArgumentException("Allocation size of " + column.getName() + " in "
+                    + entityClass.getName() + " must be positive");
+        }
+    }
+
+    private static void checkLazy(Class<?> entityClass, ColumnMetadata column) {
+        boolean holder = column.getJavaType() == LazyValue.class;
+        if (column.isLazy() != holder || (holder && (column.isPrimaryKey() || column.isVersion()))) {
+            throw new IllegalArgumentException("Column " + column.getName() + " of " + entityClass.getName()
+                    + " must be both @Column(fetch = LAZY) and a LazyValue, and neither a key nor a version");
+        }
+        Column annotation = column.getField().getAnnotation(Column.class);
+        if (holder && annotation.codec() != TypeCodec.class) {
+            throw new IllegalArgumentException("Lazy column " + column.getName() + " of " + entityClass.getName()
+                    + " cannot have a codec");
+        }
+    }
+
+    private static void checkVersion(Class<?> entityClass, Field field, ColumnMetadata previous) {
+        Class<?> type = field.getType();
+        if (type != int.class && type != long.class && type != short.class) {
+            throw new IllegalArgumentException("@Version field " + field.getName() + " of " + entityClass.getName()
+                    + " must be an int, long or short, not " + type.getName());
+        }
+        if (previous != null || field.isAnnotationPresent(ManyToOne.class)
+                || (field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).primaryKey())) {
+            throw new IllegalArgumentException("Class " + entityClass.getName()
+                    + " must have at most one @Version field, which is neither a key nor a reference");
+        }
+    }
+
+    /**
+     * @return the foreign key column name of a {@code @ManyToOne} field
+     */
+    public static String getJoinColumnName(Field field) {
+        ManyToOne manyToOne = field.getAnnotation(ManyToOne.class);
+        if (manyToOne != null && !manyToOne.joinColumn().isEmpty()) {
+            return manyToOne.joinColumn();
+        }
+        return field.getName().toLowerCase() + "_id";
+    }
+
+    private static ColumnMetadata referenceColumn(Field field, ManyToOne manyToOne) {
+        final Class<?> target = field.getType();
+        if (!target.isAnnotationPresent(Entity.class)) {
+            throw new IllegalArgumentException("@ManyToOne field " + field.getName() + " of "
+                    + field.getDeclaringClass().getName() + " must refer to an @Entity, not " + target.getName());
+        }
+        // the target's metadata is resolved lazily, so that entities may refer to each other
+        Class<?> keyType = primaryKeyType(target);
+        ReferenceAccessor accessor = ReferenceAccessor.forField(field, keyType, () -> get(target).getMapper());
+        return new ColumnMetadata(field, getJoinColumnName(field), manyToOne, keyType, accessor);
+    }
+
+    private static Class<?> primaryKeyType(Class<?> entityClass) {
+        for (Field field : entityClass.getDeclaredFields()) {
+            Column column = field.getAnnotation(Column.class);
+            if (column != null && column.primaryKey()) {
+                return wrap(field.getType());
+            }
+        }
+        throw new IllegalArgumentException("No primary key field found in class " + entityClass.getName());
+    }
+
+    private static Class<?> elementType(Field field) {
+        Type type = field.getGenericType();
+        if (List.class.isAssignableFrom(field.getType()) && type instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (element instanceof Class && ((Class<?>) element).isAnnotationPresent(Entity.class)) {
+                return (Class<?>) element;
+            }
+        }
+        throw new IllegalArgumentException("@OneToMany field " + field.getName() + " of "
+                + field.getDeclaringClass().getName() + " must be a List of an @Entity type");
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == short.class) {
+            return Short.class;
+        }
+        return type;
+    }
+
+    /**
+     * Loads the entity's generated mapping class, if the annotation processor produced one that still
+     * matches the entity's mapped fields.
+     *
+     * @return the generated mapping, or {@code null} to map through reflection
+     */
+    private static GeneratedEntity generated(Class<?> entityClass) {
+        String name = entityClass.getName().replace('$', '_') + GeneratedEntity.SUFFIX;
+        Class<?> generatedClass;
+        try {
+            generatedClass = Class.forName(name, true, entityClass.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        try {
+            GeneratedEntity generated = (GeneratedEntity) generatedClass.getConstructor().newInstance();
+            List<String> names = new ArrayList<>();
+            List<Class<?>> types = new ArrayList<>();
+            for (Field field : entityClass.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(OneToMany.class) && (field.isAnnotationPresent(Column.class)
+                        || field.isAnnotationPresent(ManyToOne.class) || field.isAnnotationPresent(Version.class))) {
+                    names.add(field.getName());
+                    types.add(field.getType());
+                }
+            }
+            if (names.equals(Arrays.asList(generated.fieldNames()))
+                    && types.equals(Arrays.asList(generated.fieldTypes()))) {
+                return generated;
+            }
+            System.err.println("Warning: ignoring " + name + ", which was generated from an older version of "
+                    + entityClass.getName() + "; rebuild to regenerate it");
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            System.err.println("Warning: cannot use generated mapping " + name + ": " + e);
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code @Entity(name)}, or the lower-cased simple class name when no name is given
+     */
+    private static String resolveTableName(Class<?> entityClass) {
+        Entity entityAnnotation = entityClass.getAnnotation(Entity.class);
+        if (entityAnnotation != null && !entityAnnotation.name().isEmpty()) {
+            return entityAnnotation.name();
+        }
+        return entityClass.getSimpleName().toLowerCase();
+    }
+
+    private static Constructor<?> resolveConstructor(Class<?> entityClass) {
+        try {
+            Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.persistence.metadata;
+
+import java.util.List;
+
+/**
+ * Immutable description of an index declared with {@link com.persistence.annotation.Index}.
+ */
+public final class IndexMetadata {
+    private final String name;
+    private final List<ColumnMetadata> columns;
+    private final boolean unique;
+    private final String where;
+
+    IndexMetadata(String name, List<ColumnMetadata> columns, boolean unique, String where) {
+        this.name = name;
+        this.columns = columns;
+        this.unique = unique;
+        this.where = where;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the indexed columns, in index order
+     */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * @return the condition of a partial index, or {@code null}
+     */
+    public String getWhere() {
+        return where;
+    }
+}
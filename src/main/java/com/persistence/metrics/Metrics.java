@@ -0,0 +1,91 @@
+package com.persistence.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.persistence.cache.CacheStatistics;
+
+/**
+ * Process-wide instrumentation switchboard.
+ * <p>
+ * Instrumented code calls {@link #start(String, String)} once per operation. With no listeners
+ * registered that is a single volatile read returning {@link OperationTimer#DISABLED}, so
+ * instrumentation costs next to nothing until someone listens. Listeners found through
+ * {@link ServiceLoader} are registered when the class is first used.
+ */
+public final class Metrics {
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final ConcurrentMap<String, CacheStatistics> CACHES = new ConcurrentHashMap<>();
+    private static volatile OperationListener[] listeners = new OperationListener[0];
+
+    static {
+        try {
+            for (OperationListener listener : ServiceLoader.load(OperationListener.class)) {
+                addListener(listener);
+            }
+        } catch (ServiceConfigurationError e) {
+            System.err.println("Error loading operation listeners: " + e.getMessage());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static OperationTimer start(String entity, String operation) {
+        OperationListener[] current = listeners;
+        if (current.length == 0) {
+            return OperationTimer.DISABLED;
+        }
+        return new OperationTimer(current, entity, operation);
+    }
+
+    public static void addListener(OperationListener listener) {
+        LOCK.lock();
+        try {
+            OperationListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+            updated[listeners.length] = listener;
+            listeners = updated;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static void removeListener(OperationListener listener) {
+        LOCK.lock();
+        try {
+            List<OperationListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+            remaining.remove(listener);
+            listeners = remaining.toArray(new OperationListener[0]);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * Publishes a cache's statistics under {@code name}, replacing any cache registered under it.
+     * Pass {@code null} to unregister.
+     */
+    public static void registerCache(String name, CacheStatistics statistics) {
+        if (statistics == null) {
+            CACHES.remove(name);
+        } else {
+            CACHES.put(name, statistics);
+        }
+    }
+
+    public static Map<String, CacheStatistics> getCaches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+}
@@ -0,0 +1,178 @@
+package com.persistence.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.persistence.cache.CacheStatistics;
+import com.persistence.db.ConnectionPool;
+import com.persistence.db.DbConnection;
+
+/**
+ * Built-in {@link OperationListener} that aggregates events into per-entity, per-operation histograms
+ * of total and per-phase time, counts rows and errors, and logs operations slower than a threshold.
+ * <p>
+ * Recording is lock-free. Register it with {@link Metrics#addListener(OperationListener)} and, to
+ * read it from a JMX console, {@link #registerMBean()}.
+ */
+public class MetricsRegistry implements OperationListener, PersistenceMetricsMXBean {
+    public static final String OBJECT_NAME = "com.persistence:type=Metrics";
+
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Histogram poolWait = new Histogram();
+    private volatile long slowQueryThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+
+    @Override
+    public void onOperation(OperationEvent event) {
+        String key = event.getEntity() + "." + event.getOperation();
+        OperationStats stats = operations.get(key);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(key,
+                    name -> new OperationStats(event.getEntity(), event.getOperation()));
+        }
+        stats.record(event);
+        poolWait.record(event.getNanos(Phase.ACQUIRE));
+
+        long threshold = slowQueryThresholdNanos;
+        if (threshold > 0 && event.getTotalNanos() >= threshold) {
+            System.err.println("Slow operation " + key + " took "
+                    + TimeUnit.NANOSECONDS.toMillis(event.getTotalNanos()) + " ms: " + event.getSql());
+        }
+    }
+
+    /**
+     * @return the summary of one operation, or {@code null} if it has not been recorded
+     */
+    public OperationSnapshot getOperation(String entity, String operation) {
+        OperationStats stats = operations.get(entity + "." + operation);
+        return stats == null ? null : stats.snapshot();
+    }
+
+    @Override
+    public List<OperationSnapshot> getOperations() {
+        List<OperationSnapshot> snapshots = new ArrayList<>(operations.size());
+        for (OperationStats stats : operations.values()) {
+            snapshots.add(stats.snapshot());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        Map<String, Double> hitRates = new LinkedHashMap<>();
+        for (Map.Entry<String, CacheStatistics> cache : Metrics.getCaches().entrySet()) {
+            hitRates.put(cache.getKey(), cache.getValue().getHitRate());
+        }
+        return hitRates;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        ConnectionPool pool = pool();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        ConnectionPool pool = pool();
+        return pool == null ? 0 : pool.getIdleConnections();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        ConnectionPool pool = pool();
+        return pool == null ? 0 : pool.getTotalConnections();
+    }
+
+    @Override
+    public double getPoolWaitP99Millis() {
+        return poolWait.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getPoolWaitMaxMillis() {
+        return poolWait.getMax() / 1e6;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    /**
+     * Operations taking at least this long are logged to {@code System.err}; 0 disables the log.
+     */
+    @Override
+    public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, slowQueryThresholdMillis));
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        poolWait.reset();
+    }
+
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static ConnectionPool pool() {
+        return DbConnection.isInitialized() ? DbConnection.getDbConnection().getPool() : null;
+    }
+
+    private static final class OperationStats {
+        private final String entity;
+        private final String operation;
+        private final Histogram total = new Histogram();
+        private final Histogram[] phases = new Histogram[Phase.values().length];
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsWritten = new LongAdder();
+
+        OperationStats(String entity, String operation) {
+            this.entity = entity;
+            this.operation = operation;
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+        }
+
+        void record(OperationEvent event) {
+            total.record(event.getTotalNanos());
+            for (Phase phase : Phase.values()) {
+                phases[phase.ordinal()].record(event.getNanos(phase));
+            }
+            if (event.isFailed()) {
+                errors.increment();
+            }
+            rowsRead.add(event.getRowsRead());
+            rowsWritten.add(event.getRowsWritten());
+        }
+
+        OperationSnapshot snapshot() {
+            return new OperationSnapshot(entity, operation, errors.sum(), rowsRead.sum(), rowsWritten.sum(),
+                    total, phases);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.persistence.metrics;
+
+/**
+ * Timings and outcome of one database operation on one entity.
+ */
+public final class OperationEvent {
+    private final String entity;
+    private final String operation;
+    private final String sql;
+    private final long[] phaseNanos;
+    private final long totalNanos;
+    private final long rowsRead;
+    private final long rowsWritten;
+    private final Throwable error;
+
+    OperationEvent(String entity, String operation, String sql, long[] phaseNanos, long totalNanos,
+            long rowsRead, long rowsWritten, Throwable error) {
+        this.entity = entity;
+        this.operation = operation;
+        this.sql = sql;
+        this.phaseNanos = phaseNanos;
+        this.totalNanos = totalNanos;
+        this.rowsRead = rowsRead;
+        this.rowsWritten = rowsWritten;
+        this.error = error;
+    }
+
+    /**
+     * @return the entity's table name
+     */
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the last statement the operation prepared, or {@code null}
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return wall-clock time of the whole operation, which also covers work outside the phases
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * @return what made the operation fail, or {@code null}
+     */
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,13 @@
+package com.persistence.metrics;
+
+/**
+ * Receives one {@link OperationEvent} per completed database operation.
+ * <p>
+ * Listeners are registered with {@link Metrics#addListener(OperationListener)} or discovered through
+ * {@link java.util.ServiceLoader} from {@code META-INF/services/com.persistence.metrics.OperationListener}.
+ * They are called synchronously on the thread that ran the operation, so they must be fast and
+ * thread-safe; exceptions they throw are logged and ignored.
+ */
+public interface OperationListener {
+    void onOperation(OperationEvent event);
+}
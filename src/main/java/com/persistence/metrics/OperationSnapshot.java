@@ -0,0 +1,113 @@
+package com.persistence.metrics;
+
+/**
+ * Point-in-time summary of one entity operation recorded by a {@link MetricsRegistry}. Times are in
+ * milliseconds; percentiles are of the total operation time.
+ */
+public final class OperationSnapshot {
+    private final String entity;
+    private final String operation;
+    private final long count;
+    private final long errors;
+    private final long rowsRead;
+    private final long rowsWritten;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final double meanAcquireMillis;
+    private final double meanPrepareMillis;
+    private final double meanExecuteMillis;
+    private final double meanMapMillis;
+
+    OperationSnapshot(String entity, String operation, long errors, long rowsRead, long rowsWritten,
+            Histogram total, Histogram[] phases) {
+        this.entity = entity;
+        this.operation = operation;
+        this.count = total.getCount();
+        this.errors = errors;
+        this.rowsRead = rowsRead;
+        this.rowsWritten = rowsWritten;
+        this.meanMillis = total.getMean() / 1e6;
+        this.p50Millis = total.getPercentile(50) / 1e6;
+        this.p95Millis = total.getPercentile(95) / 1e6;
+        this.p99Millis = total.getPercentile(99) / 1e6;
+        this.maxMillis = total.getMax() / 1e6;
+        this.meanAcquireMillis = phases[Phase.ACQUIRE.ordinal()].getMean() / 1e6;
+        this.meanPrepareMillis = phases[Phase.PREPARE.ordinal()].getMean() / 1e6;
+        this.meanExecuteMillis = phases[Phase.EXECUTE.ordinal()].getMean() / 1e6;
+        this.meanMapMillis = phases[Phase.MAP.ordinal()].getMean() / 1e6;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return mean time spent waiting for a pooled connection
+     */
+    public double getMeanAcquireMillis() {
+        return meanAcquireMillis;
+    }
+
+    public double getMeanPrepareMillis() {
+        return meanPrepareMillis;
+    }
+
+    public double getMeanExecuteMillis() {
+        return meanExecuteMillis;
+    }
+
+    public double getMeanMapMillis() {
+        return meanMapMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%s count=%d errors=%d rows=%d/%d mean=%.3fms p99=%.3fms "
+                + "[acquire=%.3f prepare=%.3f execute=%.3f map=%.3f]", entity, operation, count, errors,
+                rowsRead, rowsWritten, meanMillis, p99Millis, meanAcquireMillis, meanPrepareMillis,
+                meanExecuteMillis, meanMapMillis);
+    }
+}
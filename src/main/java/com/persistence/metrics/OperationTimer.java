@@ -0,0 +1,108 @@
+package com.persistence.metrics;
+
+/**
+ * Times the phases of one operation. Each phase method records the time elapsed since the previous
+ * mark, so calls follow the order the work happens in; a phase marked more than once (one per batch,
+ * say) accumulates.
+ * <p>
+ * Obtained from {@link Metrics#start(String, String)}. When no listener is registered that returns a
+ * shared disabled timer, whose methods return immediately without reading the clock.
+ */
+public final class OperationTimer {
+    static final OperationTimer DISABLED = new OperationTimer(null, null, null);
+
+    private final OperationListener[] listeners;
+    private final String entity;
+    private final String operation;
+    private final long startNanos;
+    private final long[] phaseNanos;
+    private long lastMark;
+    private String sql;
+    private long rowsRead;
+    private long rowsWritten;
+    private Throwable error;
+
+    OperationTimer(OperationListener[] listeners, String entity, String operation) {
+        this.listeners = listeners;
+        this.entity = entity;
+        this.operation = operation;
+        if (listeners == null) {
+            this.startNanos = 0;
+            this.phaseNanos = null;
+        } else {
+            this.startNanos = System.nanoTime();
+            this.phaseNanos = new long[Phase.values().length];
+            this.lastMark = startNanos;
+        }
+    }
+
+    public boolean isEnabled() {
+        return listeners != null;
+    }
+
+    public void acquired() {
+        mark(Phase.ACQUIRE);
+    }
+
+    public void prepared(String sql) {
+        if (listeners != null) {
+            this.sql = sql;
+            mark(Phase.PREPARE);
+        }
+    }
+
+    public void executed() {
+        mark(Phase.EXECUTE);
+    }
+
+    public void mapped() {
+        mark(Phase.MAP);
+    }
+
+    public void rowsRead(long rows) {
+        if (listeners != null) {
+            rowsRead += rows;
+        }
+    }
+
+    public void rowsWritten(long rows) {
+        if (listeners != null) {
+            rowsWritten += rows;
+        }
+    }
+
+    public void failed(Throwable error) {
+        if (listeners != null) {
+            this.error = error;
+        }
+    }
+
+    /**
+     * Completes the operation and notifies the listeners. Call exactly once, from a {@code finally}
+     * block.
+     */
+    public void finish() {
+        if (listeners == null) {
+            return;
+        }
+        OperationEvent event = new OperationEvent(entity, operation, sql, phaseNanos,
+                System.nanoTime() - startNanos, rowsRead, rowsWritten, error);
+        for (OperationListener listener : listeners) {
+            try {
+                listener.onOperation(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error in operation listener " + listener.getClass().getName() + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    private void mark(Phase phase) {
+        if (listeners == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - lastMark;
+        lastMark = now;
+    }
+}
@@ -0,0 +1,35 @@
+package com.persistence.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of a {@link MetricsRegistry}, registered as {@value MetricsRegistry#OBJECT_NAME}.
+ */
+public interface PersistenceMetricsMXBean {
+    List<OperationSnapshot> getOperations();
+
+    /**
+     * @return hit rate of every cache published through {@link Metrics#registerCache}, by name
+     */
+    Map<String, Double> getCacheHitRates();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    /**
+     * @return 99th percentile of the time operations waited for a pooled connection
+     */
+    double getPoolWaitP99Millis();
+
+    double getPoolWaitMaxMillis();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long slowQueryThresholdMillis);
+
+    void reset();
+}
@@ -0,0 +1,15 @@
+package com.persistence.metrics;
+
+/**
+ * The stages a database operation's time is split into.
+ */
+public enum Phase {
+    /** Waiting for a pooled connection. */
+    ACQUIRE,
+    /** Looking up or preparing the statement and binding its parameters. */
+    PREPARE,
+    /** Executing the statement, including the network round trip. */
+    EXECUTE,
+    /** Turning result rows into entities. */
+    MAP
+}
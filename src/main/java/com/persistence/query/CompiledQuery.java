@@ -0,0 +1,24 @@
+package com.persistence.query;
+
+import com.persistence.mapping.ColumnAccessor;
+
+/**
+ * SQL text and projected column accessors for one query shape. Shared by every query with that shape.
+ */
+final class CompiledQuery {
+    private final String sql;
+    private final ColumnAccessor[] projection;
+
+    CompiledQuery(String sql, ColumnAccessor[] projection) {
+        this.sql = sql;
+        this.projection = projection;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    ColumnAccessor[] getProjection() {
+        return projection;
+    }
+}
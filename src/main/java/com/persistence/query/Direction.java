@@ -0,0 +1,9 @@
+package com.persistence.query;
+
+/**
+ * Sort direction of an ORDER BY term.
+ */
+public enum Direction {
+    ASC,
+    DESC
+}
@@ -0,0 +1,24 @@
+package com.persistence.query;
+
+/**
+ * Comparison operators available in {@link Query#where(String, Operator, Object)}.
+ */
+public enum Operator {
+    EQ("="),
+    NE("<>"),
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">="),
+    LIKE("LIKE");
+
+    private final String sql;
+
+    Operator(String sql) {
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,463 @@
+package com.persistence.query;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.mapping.ColumnAccessor;
+import com.persistence.mapping.ReferenceAccessor;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.OperationTimer;
+import com.persistence.relation.RelationLoader;
+
+/**
+ * Builder for selective reads, obtained from {@code PersistenceFramework.query()}.
+ * <p>
+ * Columns are referenced by field or column name and checked against the entity's {@code @Column}
+ * mapping; predicate values are checked against the column's Java type (the referenced primary key
+ * type for a {@code @ManyToOne} column). The query compiles to a parameterized statement that is
+ * cached by shape in a {@link QueryPlanCache}, so only values vary between executions. Predicates are
+ * combined with AND.
+ *
+ * <pre>
+ * List&lt;Object&gt; page = framework.query()
+ *         .where("status", Operator.EQ, "active")
+ *         .orderBy("id", Direction.ASC)
+ *         .after(lastSeenId)
+ *         .limit(50)
+ *         .list();
+ * </pre>
+ */
+public class Query {
+    private final EntityMetadata metadata;
+    private final DbConnection dbConnection;
+    private final QueryPlanCache planCache;
+    private final RelationLoader relationLoader;
+    private final List<ColumnMetadata> joins = new ArrayList<>();
+    private final List<ColumnMetadata> projection = new ArrayList<>();
+    private final List<Predicate> predicates = new ArrayList<>();
+    private final List<Ordering> orderings = new ArrayList<>();
+    private Object[] seekValues;
+    private Integer limit;
+    private Integer offset;
+
+    public Query(EntityMetadata metadata, DbConnection dbConnection, QueryPlanCache planCache) {
+        this(metadata, dbConnection, planCache, null);
+    }
+
+    /**
+     * @param relationLoader loads the relationships of the returned entities, or {@code null} to leave
+     *                       them as read
+     */
+    public Query(EntityMetadata metadata, DbConnection dbConnection, QueryPlanCache planCache,
+            RelationLoader relationLoader) {
+        this.metadata = metadata;
+        this.dbConnection = dbConnection;
+        this.planCache = planCache;
+        this.relationLoader = relationLoader;
+    }
+
+    /**
+     * Restricts the SELECT list to the given columns. Other fields of the returned entities keep their
+     * default values.
+     */
+    public Query select(String... columns) {
+        for (String column : columns) {
+            projection.add(metadata.getColumn(column));
+        }
+        return this;
+    }
+
+    /**
+     * Loads a {@code @ManyToOne} reference in the same statement through a LEFT JOIN, so the returned
+     * entities refer to fully loaded targets. Entities sharing a target share one instance.
+     */
+    public Query fetchJoin(String reference) {
+        joins.add(metadata.getReference(reference));
+        return this;
+    }
+
+    public Query where(String column, Operator operator, Object value) {
+        ColumnMetadata columnMetadata = metadata.getColumn(column);
+        if (value == null) {
+            throw new IllegalArgumentException("Null comparison on " + column + "; use whereNull or whereNotNull");
+        }
+        if (operator == Operator.LIKE && columnMetadata.getColumnType() != String.class) {
+            throw new IllegalArgumentException("LIKE requires a String column, " + column + " is "
+                    + columnMetadata.getColumnType().getName());
+        }
+        checkValue(columnMetadata, value);
+        predicates.add(new Predicate(columnMetadata, operator.getSql(), Collections.singletonList(value)));
+        return this;
+    }
+
+    public Query whereIn(String column, Collection<?> values) {
+        ColumnMetadata columnMetadata = metadata.getColumn(column);
+        for (Object value : values) {
+            checkValue(columnMetadata, value);
+        }
+        predicates.add(new Predicate(columnMetadata, "IN", new ArrayList<Object>(values)));
+        return this;
+    }
+
+    public Query whereNull(String column) {
+        predicates.add(new Predicate(metadata.getColumn(column), "IS NULL", Collections.emptyList()));
+        return this;
+    }
+
+    public Query whereNotNull(String column) {
+        predicates.add(new Predicate(metadata.getColumn(column), "IS NOT NULL", Collections.emptyList()));
+        return this;
+    }
+
+    public Query orderBy(String column, Direction direction) {
+        orderings.add(new Ordering(metadata.getColumn(column), direction));
+        return this;
+    }
+
+    /**
+     * Keyset (seek) pagination: returns only rows that sort after the given values of the ORDER BY
+     * columns, typically taken from the last row of the previous page. Unlike OFFSET, the database can
+     * jump straight to the position through an index on the ordering columns.
+     */
+    public Query after(Object... lastValues) {
+        if (orderings.isEmpty() || lastValues.length == 0 || lastValues.length > orderings.size()) {
+            throw new IllegalArgumentException("after() needs one value per leading orderBy column; got "
+                    + lastValues.length + " value(s) for " + orderings.size() + " orderBy column(s)");
+        }
+        for (int i = 0; i < lastValues.length; i++) {
+            checkValue(orderings.get(i).column, lastValues[i]);
+        }
+        this.seekValues = lastValues.clone();
+        return this;
+    }
+
+    public Query limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public Query offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public List<Object> list() {
+        List<Object> entities = read();
+        if (relationLoader != null) {
+            relationLoader.afterLoad(entities);
+        }
+        return entities;
+    }
+
+    private List<Object> read() {
+        OperationTimer timer = Metrics.start(metadata.getTableName(), "query");
+        CompiledQuery plan = planCache.get(shape(), this::compile);
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(plan.getSql());
+            bindParameters(pStmt);
+            timer.prepared(plan.getSql());
+
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                timer.executed();
+                List<Object> entities = new ArrayList<>();
+                List<Map<Object, Object>> joined = new ArrayList<>();
+                for (int i = 0; i < joins.size(); i++) {
+                    joined.add(new HashMap<>());
+                }
+                while (resultSet.next()) {
+                    Object entity = metadata.getMapper().map(resultSet, plan.getProjection());
+                    int offset = plan.getProjection().length;
+                    for (int i = 0; i < joins.size(); i++) {
+                        offset = readJoined(resultSet, offset, entity, joins.get(i), joined.get(i));
+                    }
+                    entities.add(entity);
+                }
+                timer.mapped();
+                timer.rowsRead(entities.size());
+                return entities;
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            timer.failed(e);
+            System.err.println("Error querying " + metadata.getTableName() + ": " + e.getMessage());
+            e.printStackTrace();
+            return Collections.emptyList();
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Maps the joined target's columns, which start after {@code offset}, onto {@code entity}'s reference.
+     *
+     * @return the offset of the next join's columns
+     */
+    private static int readJoined(ResultSet resultSet, int offset, Object entity, ColumnMetadata join,
+            Map<Object, Object> loaded) throws SQLException, ReflectiveOperationException {
+        ReferenceAccessor accessor = (ReferenceAccessor) join.getAccessor();
+        EntityMetadata targetMetadata = EntityMetadataRegistry.get(join.getReferencedEntity());
+        Object key = accessor.get(entity);
+        if (key != null) {
+            Object target = loaded.get(key);
+            if (target == null) {
+                target = targetMetadata.getMapper().map(resultSet, offset);
+                loaded.put(key, target);
+            }
+            accessor.setReference(entity, target);
+        }
+        return offset + targetMetadata.getSelectColumns().size();
+    }
+
+    public Object first() {
+        Integer previousLimit = limit;
+        limit = 1;
+        try {
+            List<Object> entities = list();
+            return entities.isEmpty() ? null : entities.get(0);
+        } finally {
+            limit = previousLimit;
+        }
+    }
+
+    /**
+     * @return the SQL text this query executes
+     */
+    public String toSql() {
+        return planCache.get(shape(), this::compile).getSql();
+    }
+
+    private String shape() {
+        StringBuilder shape = new StringBuilder("S:");
+        for (ColumnMetadata column : projection) {
+            shape.append(column.getName()).append(',');
+        }
+        shape.append("|W:");
+        for (Predicate predicate : predicates) {
+            shape.append(predicate.column.getName()).append(' ').append(predicate.operator);
+            if ("IN".equals(predicate.operator)) {
+                shape.append(predicate.values.size());
+            }
+            shape.append(',');
+        }
+        shape.append("|O:");
+        for (Ordering ordering : orderings) {
+            shape.append(ordering.column.getName()).append(' ').append(ordering.direction).append(',');
+        }
+        shape.append("|K:").append(seekValues == null ? 0 : seekValues.length);
+        shape.append("|J:");
+        for (ColumnMetadata join : joins) {
+            shape.append(join.getName()).append(',');
+        }
+        shape.append("|L:").append(limit != null).append("|F:").append(offset != null);
+        return shape.toString();
+    }
+
+    private CompiledQuery compile() {
+        List<ColumnMetadata> selected = projection.isEmpty() ? metadata.getSelectColumns() : projection;
+        ColumnAccessor[] accessors = new ColumnAccessor[selected.size()];
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < selected.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(qualify(selected.get(i)));
+            accessors[i] = selected.get(i).getAccessor();
+        }
+        StringBuilder joinClauses = new StringBuilder();
+        for (int j = 0; j < joins.size(); j++) {
+            EntityMetadata target = EntityMetadataRegistry.get(joins.get(j).getReferencedEntity());
+            String alias = "t" + (j + 1);
+            for (ColumnMetadata column : target.getSelectColumns()) {
+                sql.append(", ").append(alias).append('.').append(column.getName());
+            }
+            joinClauses.append(" LEFT JOIN ").append(target.getTableName()).append(' ').append(alias)
+                    .append(" ON t0.").append(joins.get(j).getName())
+                    .append(" = ").append(alias).append('.').append(target.getPrimaryKey().getName());
+        }
+        sql.append(" FROM ").append(metadata.getTableName());
+        if (!joins.isEmpty()) {
+            sql.append(" t0").append(joinClauses);
+        }
+
+        List<String> conditions = new ArrayList<>();
+        for (Predicate predicate : predicates) {
+            conditions.add(predicate.toSql(qualify(predicate.column)));
+        }
+        if (seekValues != null) {
+            conditions.add(keysetCondition(seekValues.length));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+
+        if (!orderings.isEmpty()) {
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < orderings.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(qualify(orderings.get(i).column)).append(' ').append(orderings.get(i).direction);
+            }
+        }
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+        }
+        if (offset != null) {
+            sql.append(" OFFSET ?");
+        }
+        return new CompiledQuery(sql.toString(), accessors);
+    }
+
+    /**
+     * Expands {@code (a, b) > (?, ?)} into {@code (a > ?) OR (a = ? AND b > ?)} so that mixed sort
+     * directions are honoured.
+     */
+    private String keysetCondition(int keyCount) {
+        StringBuilder condition = new StringBuilder("(");
+        for (int i = 0; i < keyCount; i++) {
+            if (i > 0) {
+                condition.append(" OR ");
+            }
+            condition.append('(');
+            for (int j = 0; j < i; j++) {
+                condition.append(qualify(orderings.get(j).column)).append(" = ? AND ");
+            }
+            Ordering ordering = orderings.get(i);
+            condition.append(qualify(ordering.column))
+                    .append(ordering.direction == Direction.ASC ? " > ?" : " < ?")
+                    .append(')');
+        }
+        return condition.append(')').toString();
+    }
+
+    /**
+     * @return the column name, qualified with the root table's alias when the query joins other tables
+     */
+    private String qualify(ColumnMetadata column) {
+        return joins.isEmpty() ? column.getName() : "t0." + column.getName();
+    }
+
+    private void bindParameters(PreparedStatement pStmt) throws SQLException {
+        int paramIndex = 1;
+        for (Predicate predicate : predicates) {
+            for (Object value : predicate.values) {
+                bind(pStmt, paramIndex++, predicate.column, value);
+            }
+        }
+        if (seekValues != null) {
+            for (int i = 0; i < seekValues.length; i++) {
+                for (int j = 0; j <= i; j++) {
+                    bind(pStmt, paramIndex++, orderings.get(j).column, seekValues[j]);
+                }
+            }
+        }
+        if (limit != null) {
+            pStmt.setInt(paramIndex++, limit);
+        }
+        if (offset != null) {
+            pStmt.setInt(paramIndex, offset);
+        }
+    }
+
+    private static void bind(PreparedStatement pStmt, int index, ColumnMetadata column, Object value)
+            throws SQLException {
+        if (column.getCodec() != null) {
+            column.getCodec().bind(pStmt, index, value);
+        } else {
+            pStmt.setObject(index, toJdbc(value));
+        }
+    }
+
+    private static Object toJdbc(Object value) {
+        if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+                && !(value instanceof Timestamp) && !(value instanceof java.sql.Time)) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        return value;
+    }
+
+    private static void checkValue(ColumnMetadata column, Object value) {
+        Class<?> type = wrap(column.getColumnType());
+        if (value == null || !type.isInstance(value)) {
+            throw new IllegalArgumentException("Value " + value + " is not a " + type.getSimpleName()
+                    + " as required by column " + column.getName());
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+
+    private static final class Predicate {
+        private final ColumnMetadata column;
+        private final String operator;
+        private final List<Object> values;
+
+        Predicate(ColumnMetadata column, String operator, List<Object> values) {
+            this.column = column;
+            this.operator = operator;
+            this.values = values;
+        }
+
+        String toSql(String name) {
+            if ("IN".equals(operator)) {
+                if (values.isEmpty()) {
+                    return "1 = 0";
+                }
+                StringBuilder sql = new StringBuilder(name).append(" IN (");
+                for (int i = 0; i < values.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                return sql.append(')').toString();
+            }
+            if (values.isEmpty()) {
+                return name + " " + operator;
+            }
+            return name + " " + operator + " ?";
+        }
+    }
+
+    private static final class Ordering {
+        private final ColumnMetadata column;
+        private final Direction direction;
+
+        Ordering(ColumnMetadata column, Direction direction) {
+            this.column = column;
+            this.direction = direction;
+        }
+    }
+}
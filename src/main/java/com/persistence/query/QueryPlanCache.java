@@ -0,0 +1,31 @@
+package com.persistence.query;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Compiled queries of one entity, keyed by query shape: the projection, predicate columns and
+ * operators, ordering and paging clauses, but not the bound values. Two queries that differ only
+ * in their values share SQL text and therefore a cached prepared statement.
+ */
+public class QueryPlanCache {
+    private static final int MAX_SHAPES = 512;
+
+    private final ConcurrentMap<String, CompiledQuery> plans = new ConcurrentHashMap<>();
+
+    CompiledQuery get(String shape, Supplier<CompiledQuery> compiler) {
+        CompiledQuery plan = plans.get(shape);
+        if (plan == null) {
+            if (plans.size() >= MAX_SHAPES) {
+                plans.clear();
+            }
+            plan = plans.computeIfAbsent(shape, key -> compiler.get());
+        }
+        return plan;
+    }
+
+    public int size() {
+        return plans.size();
+    }
+}
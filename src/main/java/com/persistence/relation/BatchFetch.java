@@ -0,0 +1,33 @@
+package com.persistence.relation;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.persistence.metadata.CollectionMetadata;
+
+/**
+ * One pending collection load shared by the {@link LazyList}s of owners loaded together.
+ */
+final class BatchFetch {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final RelationLoader loader;
+    private final CollectionMetadata collection;
+    private List<?> owners;
+
+    BatchFetch(RelationLoader loader, CollectionMetadata collection, List<?> owners) {
+        this.loader = loader;
+        this.collection = collection;
+        this.owners = owners;
+    }
+
+    void load() {
+        lock.lock();
+        try {
+            if (owners != null && loader.fetchCollection(owners, collection, false)) {
+                owners = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.persistence.relation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+
+import com.persistence.metadata.ColumnMetadata;
+
+/**
+ * Text lazy column read {@value RelationLoader#STREAM_CHUNK_SIZE} characters at a time, so that at
+ * most one chunk is in memory. Chunks are separate reads, so a value rewritten while it is streamed
+ * may be read partly old and partly new.
+ */
+final class ChunkedColumnReader extends Reader {
+    private final RelationLoader loader;
+    private final ColumnMetadata column;
+    private final Object owner;
+    private String chunk;
+    private int position;
+    /** Characters read so far, counted as PostgreSQL does: one per code point. */
+    private long offset;
+
+    private ChunkedColumnReader(RelationLoader loader, ColumnMetadata column, Object owner, String first) {
+        this.loader = loader;
+        this.column = column;
+        this.owner = owner;
+        this.chunk = first;
+        this.offset = codePoints(first);
+    }
+
+    /**
+     * Reads the first chunk right away, so that a missing row or a {@code NULL} is reported here.
+     *
+     * @return the reader, or {@code null} if the value is {@code NULL}
+     * @throws UncheckedIOException if the first chunk cannot be read
+     */
+    static Reader open(RelationLoader loader, ColumnMetadata column, Object owner) {
+        try {
+            String first = (String) loader.readChunk(owner, column, 1, RelationLoader.STREAM_CHUNK_SIZE);
+            return first == null ? null : new ChunkedColumnReader(loader, column, owner, first);
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Cannot stream column " + column.getName(), e));
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == chunk.length() && !next()) {
+            return -1;
+        }
+        int count = Math.min(len, chunk.length() - position);
+        chunk.getChars(position, position + count, buffer, off);
+        position += count;
+        return count;
+    }
+
+    /**
+     * @return whether another chunk was read
+     */
+    private boolean next() throws IOException {
+        if (codePoints(chunk) < RelationLoader.STREAM_CHUNK_SIZE) {
+            return false;
+        }
+        try {
+            String next = (String) loader.readChunk(owner, column, Math.toIntExact(offset + 1),
+                    RelationLoader.STREAM_CHUNK_SIZE);
+            chunk = next == null ? "" : next;
+        } catch (SQLException e) {
+            throw new IOException("Cannot stream column " + column.getName(), e);
+        }
+        position = 0;
+        offset += codePoints(chunk);
+        return !chunk.isEmpty();
+    }
+
+    private static int codePoints(String text) {
+        return text.codePointCount(0, text.length());
+    }
+
+    @Override
+    public void close() {
+        chunk = "";
+        position = 0;
+    }
+}
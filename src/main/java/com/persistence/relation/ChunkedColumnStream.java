@@ -0,0 +1,89 @@
+package com.persistence.relation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+
+import com.persistence.metadata.ColumnMetadata;
+
+/**
+ * Binary lazy column read {@value RelationLoader#STREAM_CHUNK_SIZE} bytes at a time, so that at most
+ * one chunk is in memory. Chunks are separate reads, so a value rewritten while it is streamed may be
+ * read partly old and partly new.
+ */
+final class ChunkedColumnStream extends InputStream {
+    private final RelationLoader loader;
+    private final ColumnMetadata column;
+    private final Object owner;
+    private byte[] chunk;
+    private int position;
+    private long offset;
+
+    private ChunkedColumnStream(RelationLoader loader, ColumnMetadata column, Object owner, byte[] first) {
+        this.loader = loader;
+        this.column = column;
+        this.owner = owner;
+        this.chunk = first;
+        this.offset = first.length;
+    }
+
+    /**
+     * Reads the first chunk right away, so that a missing row or a {@code NULL} is reported here.
+     *
+     * @return the stream, or {@code null} if the value is {@code NULL}
+     * @throws UncheckedIOException if the first chunk cannot be read
+     */
+    static InputStream open(RelationLoader loader, ColumnMetadata column, Object owner) {
+        try {
+            byte[] first = (byte[]) loader.readChunk(owner, column, 1, RelationLoader.STREAM_CHUNK_SIZE);
+            return first == null ? null : new ChunkedColumnStream(loader, column, owner, first);
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Cannot stream column " + column.getName(), e));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, buffer, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * @return whether unread bytes are available, reading the next chunk if the current one is used up
+     */
+    private boolean fill() throws IOException {
+        if (position < chunk.length) {
+            return true;
+        }
+        if (chunk.length < RelationLoader.STREAM_CHUNK_SIZE) {
+            return false;
+        }
+        try {
+            byte[] next = (byte[]) loader.readChunk(owner, column, Math.toIntExact(offset + 1),
+                    RelationLoader.STREAM_CHUNK_SIZE);
+            chunk = next == null ? new byte[0] : next;
+        } catch (SQLException e) {
+            throw new IOException("Cannot stream column " + column.getName(), e);
+        }
+        position = 0;
+        offset += chunk.length;
+        return chunk.length > 0;
+    }
+}
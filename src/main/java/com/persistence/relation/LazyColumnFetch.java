@@ -0,0 +1,54 @@
+package com.persistence.relation;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.persistence.mapping.LazyLoader;
+import com.persistence.metadata.ColumnMetadata;
+
+/**
+ * One pending lazy column load shared by the {@link com.persistence.mapping.LazyValue}s of entities
+ * loaded together.
+ */
+final class LazyColumnFetch implements LazyLoader {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final RelationLoader loader;
+    private final ColumnMetadata column;
+    private List<?> owners;
+
+    LazyColumnFetch(RelationLoader loader, ColumnMetadata column, List<?> owners) {
+        this.loader = loader;
+        this.column = column;
+        this.owners = owners;
+    }
+
+    @Override
+    public void load(Object owner) {
+        lock.lock();
+        try {
+            if (owners != null && loader.fetchColumn(owners, column)) {
+                owners = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public InputStream openStream(Object owner) {
+        if (column.getColumnType() != byte[].class) {
+            throw new IllegalStateException("Column " + column.getName() + " cannot be read as bytes");
+        }
+        return ChunkedColumnStream.open(loader, column, owner);
+    }
+
+    @Override
+    public Reader openReader(Object owner) {
+        if (column.getColumnType() != String.class) {
+            throw new IllegalStateException("Column " + column.getName() + " cannot be read as text");
+        }
+        return ChunkedColumnReader.open(loader, column, owner);
+    }
+}
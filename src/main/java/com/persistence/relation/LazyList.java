@@ -0,0 +1,69 @@
+package com.persistence.relation;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@code @OneToMany} collection that is filled on first access. The first access loads the
+ * collections of every owner loaded together with this one, in one batched query, so iterating the
+ * children of a page of owners costs one query rather than one per owner.
+ */
+public final class LazyList<E> extends AbstractList<E> implements RandomAccess {
+    private BatchFetch batch;
+    private List<E> elements;
+
+    LazyList(BatchFetch batch) {
+        this.batch = batch;
+    }
+
+    public boolean isLoaded() {
+        return elements != null;
+    }
+
+    @Override
+    public E get(int index) {
+        return load().get(index);
+    }
+
+    @Override
+    public int size() {
+        return load().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return load().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        load().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E removed = load().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    void fill(List<?> loaded) {
+        elements = new ArrayList<>((List<E>) loaded);
+        batch = null;
+    }
+
+    private List<E> load() {
+        BatchFetch pending = batch;
+        if (elements == null && pending != null) {
+            pending.load();
+        }
+        if (elements == null) {
+            throw new IllegalStateException("Lazy collection could not be loaded");
+        }
+        return elements;
+    }
+}
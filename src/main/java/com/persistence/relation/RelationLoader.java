@@ -0,0 +1,451 @@
+package com.persistence.relation;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.persistence.SchemaGenerator;
+import com.persistence.annotation.FetchType;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.mapping.LazyValue;
+import com.persistence.mapping.LazyValueAccessor;
+import com.persistence.mapping.ReferenceAccessor;
+import com.persistence.metadata.CollectionMetadata;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.OperationTimer;
+
+/**
+ * Loads the relationships of entities read together, one query per relationship rather than one per
+ * entity. Keys are sent as a single array parameter ({@code WHERE column = ANY(?)}), so the statement
+ * text does not depend on how many keys are loaded.
+ * <p>
+ * After a read, {@code EAGER} relationships are loaded immediately and {@code LAZY} collections get a
+ * {@link LazyList} that loads the collections of the whole result on first access. Entities loaded
+ * through a relationship only get lazy collections, so eager loading stops one level deep and cannot
+ * cycle. {@code LAZY} references keep the reference created from the foreign key until
+ * {@link #fetch(Collection, String)} replaces them with loaded entities.
+ * <p>
+ * Lazy columns of entities read together get {@link LazyValue}s that share one {@link LazyColumnFetch},
+ * so the first access loads the column for all of them with {@code SELECT pk, column ... = ANY(?)}.
+ * Streaming an unloaded value reads it in chunks of {@value #STREAM_CHUNK_SIZE} characters or bytes
+ * with {@code substring(column FROM ? FOR ?)}, each on a connection borrowed for that chunk only.
+ */
+public final class RelationLoader {
+    private static final int CHUNK_SIZE = 1000;
+    static final int STREAM_CHUNK_SIZE = 256 * 1024;
+
+    private final EntityMetadata metadata;
+    private final DbConnection dbConnection;
+    private final ConcurrentMap<Class<?>, RelationLoader> loaders;
+
+    public RelationLoader(EntityMetadata metadata, DbConnection dbConnection) {
+        this(metadata, dbConnection, new ConcurrentHashMap<>());
+    }
+
+    private RelationLoader(EntityMetadata metadata, DbConnection dbConnection,
+            ConcurrentMap<Class<?>, RelationLoader> loaders) {
+        this.metadata = metadata;
+        this.dbConnection = dbConnection;
+        this.loaders = loaders;
+    }
+
+    /**
+     * Loads the {@code EAGER} relationships of entities just read and attaches lazy collections.
+     */
+    public void afterLoad(List<?> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        attachLazyColumns(entities);
+        if (!metadata.hasRelationships()) {
+            return;
+        }
+        for (ColumnMetadata reference : metadata.getReferences()) {
+            if (reference.getFetch() == FetchType.EAGER) {
+                fetchReferences(entities, reference);
+            }
+        }
+        for (CollectionMetadata collection : metadata.getCollections()) {
+            if (collection.getFetch() == FetchType.EAGER) {
+                fetchCollection(entities, collection, true);
+            } else {
+                attachLazy(entities, collection);
+            }
+        }
+    }
+
+    /**
+     * Loads the named {@code @OneToMany} collection, {@code @ManyToOne} reference or lazy column of every
+     * entity in one batched query.
+     *
+     * @throws IllegalArgumentException if the entity has no relationship or lazy column with that name
+     */
+    public void fetch(Collection<?> entities, String relationship) {
+        List<?> owners = new ArrayList<>(entities);
+        if (owners.isEmpty()) {
+            return;
+        }
+        for (CollectionMetadata collection : metadata.getCollections()) {
+            if (collection.getName().equals(relationship)) {
+                fetchCollection(owners, collection, true);
+                return;
+            }
+        }
+        for (ColumnMetadata column : metadata.getLazyColumns()) {
+            if (column.getName().equals(relationship) || column.getField().getName().equals(relationship)) {
+                fetchColumn(owners, column);
+                return;
+            }
+        }
+        fetchReferences(owners, metadata.getReference(relationship));
+    }
+
+    /**
+     * Gives the empty lazy fields of entities read together unloaded values that load as one batch.
+     */
+    public void attachLazyColumns(List<?> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        for (ColumnMetadata column : metadata.getLazyColumns()) {
+            LazyValueAccessor accessor = (LazyValueAccessor) column.getAccessor();
+            LazyColumnFetch batch = new LazyColumnFetch(this, column, new ArrayList<>(entities));
+            for (Object entity : entities) {
+                accessor.attach(entity, batch);
+            }
+        }
+    }
+
+    /**
+     * Loads {@code column} for every owner whose value is still pending with
+     * {@code SELECT pk, column ... WHERE pk = ANY(?)}. Owners whose row no longer exists get {@code null}.
+     *
+     * @return whether the values were loaded
+     */
+    boolean fetchColumn(List<?> owners, ColumnMetadata column) {
+        LazyValueAccessor accessor = (LazyValueAccessor) column.getAccessor();
+        EntityMapper mapper = metadata.getMapper();
+        Map<Object, List<Object>> ownersByKey = new LinkedHashMap<>();
+        for (Object owner : owners) {
+            Object key = mapper.getPrimaryKey(owner);
+            if (key != null && accessor.get(owner) == LazyValueAccessor.NOT_LOADED) {
+                ownersByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(owner);
+            }
+        }
+        if (ownersByKey.isEmpty()) {
+            return true;
+        }
+
+        String tableName = metadata.getTableName();
+        ColumnMetadata primaryKey = metadata.getPrimaryKey();
+        String sql = "SELECT " + primaryKey.getName() + ", " + column.getName() + " FROM " + tableName
+                + " WHERE " + primaryKey.getName() + " = ANY(?)";
+        List<Object> keys = new ArrayList<>(ownersByKey.keySet());
+        Map<Object, Object> values = new HashMap<>();
+
+        OperationTimer timer = Metrics.start(tableName, "lazyFetch");
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sql);
+            timer.prepared(sql);
+            for (int from = 0; from < keys.size(); from += CHUNK_SIZE) {
+                List<Object> chunk = keys.subList(from, Math.min(from + CHUNK_SIZE, keys.size()));
+                Array array = conn.getConnection().createArrayOf(arrayType(primaryKey), elements(primaryKey, chunk));
+                try {
+                    pStmt.setArray(1, array);
+                    try (ResultSet resultSet = pStmt.executeQuery()) {
+                        while (resultSet.next()) {
+                            Object key = primaryKey.getCodec() != null ? primaryKey.getCodec().read(resultSet, 1)
+                                    : resultSet.getObject(1, wrap(primaryKey.getColumnType()));
+                            values.put(key, accessor.readValue(resultSet, 2));
+                        }
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            timer.executed();
+            timer.rowsRead(values.size());
+        } catch (SQLException e) {
+            timer.failed(e);
+            System.err.println("Error loading column " + column.getName() + " of " + tableName + ": "
+                    + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            timer.finish();
+        }
+        for (Map.Entry<Object, List<Object>> entry : ownersByKey.entrySet()) {
+            for (Object owner : entry.getValue()) {
+                accessor.fill(owner, values.get(entry.getKey()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads up to {@code length} characters or bytes of {@code owner}'s column, starting at 1-based
+     * {@code offset}.
+     *
+     * @return the chunk, {@code null} if the value is {@code NULL}
+     * @throws SQLException if the read failed or the row no longer exists
+     */
+    Object readChunk(Object owner, ColumnMetadata column, int offset, int length) throws SQLException {
+        String tableName = metadata.getTableName();
+        String sql = "SELECT substring(" + column.getName() + " FROM ? FOR ?) FROM " + tableName + " WHERE "
+                + metadata.getPrimaryKey().getName() + " = ?";
+        OperationTimer timer = Metrics.start(tableName, "lazyStream");
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sql);
+            pStmt.setInt(1, offset);
+            pStmt.setInt(2, length);
+            metadata.getMapper().bindPrimaryKey(pStmt, 3, owner);
+            timer.prepared(sql);
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                timer.executed();
+                if (!resultSet.next()) {
+                    throw new SQLException("No row in " + tableName + " with id " + metadata.getMapper()
+                            .getPrimaryKey(owner));
+                }
+                timer.rowsRead(1);
+                return ((LazyValueAccessor) column.getAccessor()).readValue(resultSet, 1);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == short.class) {
+            return Short.class;
+        }
+        return type;
+    }
+
+    /**
+     * Loads {@code collection} for every owner and fills their lazy lists. When {@code replace} is set,
+     * owners without a lazy list get a new list; otherwise their field is left alone.
+     *
+     * @return whether the children were loaded
+     */
+    boolean fetchCollection(List<?> owners, CollectionMetadata collection, boolean replace) {
+        ColumnMetadata mappedBy = collection.getMappedBy();
+        ReferenceAccessor backReference = (ReferenceAccessor) mappedBy.getAccessor();
+        EntityMapper ownerMapper = metadata.getMapper();
+
+        Map<Object, Object> ownersByKey = new LinkedHashMap<>();
+        Map<Object, List<Object>> childrenByKey = new HashMap<>();
+        for (Object owner : owners) {
+            Object key = ownerMapper.getPrimaryKey(owner);
+            if (key != null) {
+                ownersByKey.put(key, owner);
+                childrenByKey.put(key, new ArrayList<>());
+            }
+        }
+
+        RelationLoader children = loaderFor(collection.getElementType());
+        List<Object> loaded = children.loadByKeys(ownersByKey.keySet(), mappedBy);
+        if (loaded == null) {
+            return false;
+        }
+        for (Object child : loaded) {
+            Object key = backReference.get(child);
+            List<Object> siblings = childrenByKey.get(key);
+            if (siblings != null) {
+                siblings.add(child);
+                backReference.setReference(child, ownersByKey.get(key));
+            }
+        }
+        children.attachLazy(loaded);
+
+        for (Object owner : owners) {
+            Object key = ownerMapper.getPrimaryKey(owner);
+            List<Object> elements = key == null ? new ArrayList<>() : childrenByKey.get(key);
+            Object current = collection.get(owner);
+            if (current instanceof LazyList) {
+                ((LazyList<?>) current).fill(elements);
+            } else if (replace) {
+                collection.set(owner, elements);
+            }
+        }
+        return true;
+    }
+
+    private void fetchReferences(List<?> entities, ColumnMetadata reference) {
+        ReferenceAccessor accessor = (ReferenceAccessor) reference.getAccessor();
+        Set<Object> keys = new LinkedHashSet<>();
+        for (Object entity : entities) {
+            Object key = accessor.get(entity);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        RelationLoader targets = loaderFor(reference.getReferencedEntity());
+        List<Object> loaded = targets.loadByKeys(keys, targets.metadata.getPrimaryKey());
+        if (loaded == null) {
+            return;
+        }
+        Map<Object, Object> targetsByKey = new HashMap<>();
+        for (Object target : loaded) {
+            targetsByKey.put(targets.metadata.getMapper().getPrimaryKey(target), target);
+        }
+        for (Object entity : entities) {
+            Object target = targetsByKey.get(accessor.get(entity));
+            if (target != null) {
+                accessor.setReference(entity, target);
+            }
+        }
+        targets.attachLazy(loaded);
+    }
+
+    private void attachLazy(List<?> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        attachLazyColumns(entities);
+        for (CollectionMetadata collection : metadata.getCollections()) {
+            attachLazy(entities, collection);
+        }
+    }
+
+    private void attachLazy(List<?> owners, CollectionMetadata collection) {
+        BatchFetch batch = new BatchFetch(this, collection, new ArrayList<>(owners));
+        for (Object owner : owners) {
+            collection.set(owner, new LazyList<>(batch));
+        }
+    }
+
+    /**
+     * Reads the entities whose {@code column} holds one of {@code keys}, {@value #CHUNK_SIZE} keys per
+     * statement.
+     *
+     * @return the entities in no particular order, or {@code null} if the read failed
+     */
+    List<Object> loadByKeys(Collection<?> keys, ColumnMetadata column) {
+        return loadByKeys(keys, column, CHUNK_SIZE, "batchFetch");
+    }
+
+    /**
+     * Reads the entities whose {@code column} holds one of {@code keys} with
+     * {@code WHERE column = ANY(?)}, binding up to {@code chunkSize} keys per statement as one array of
+     * the column's SQL type. Relationships are not loaded.
+     *
+     * @param operation name under which the read is reported to {@link Metrics}
+     * @return the entities in no particular order, or {@code null} if the read failed
+     */
+    public List<Object> loadByKeys(Collection<?> keys, ColumnMetadata column, int chunkSize, String operation) {
+        List<Object> entities = new ArrayList<>();
+        if (keys.isEmpty()) {
+            return entities;
+        }
+        String tableName = metadata.getTableName();
+        String sql = "SELECT " + columnList() + " FROM " + tableName + " WHERE " + column.getName() + " = ANY(?)";
+        String arrayType = arrayType(column);
+        List<Object> remaining = new ArrayList<>(keys);
+
+        OperationTimer timer = Metrics.start(tableName, operation);
+        try (PooledConnection conn = dbConnection.acquireRead()) {
+            timer.acquired();
+            PreparedStatement pStmt = conn.getStatementCache().prepare(sql);
+            timer.prepared(sql);
+            for (int from = 0; from < remaining.size(); from += chunkSize) {
+                List<Object> chunk = remaining.subList(from, Math.min(from + chunkSize, remaining.size()));
+                Array array = conn.getConnection().createArrayOf(arrayType, elements(column, chunk));
+                try {
+                    pStmt.setArray(1, array);
+                    try (ResultSet resultSet = pStmt.executeQuery()) {
+                        while (resultSet.next()) {
+                            entities.add(metadata.getMapper().map(resultSet));
+                        }
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            timer.executed();
+            timer.mapped();
+            timer.rowsRead(entities.size());
+            return entities;
+        } catch (SQLException | ReflectiveOperationException e) {
+            timer.failed(e);
+            System.err.println("Error loading objects by key from " + tableName + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    private String columnList() {
+        StringBuilder columns = new StringBuilder();
+        for (ColumnMetadata column : metadata.getSelectColumns()) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(column.getName());
+        }
+        return columns.toString();
+    }
+
+    /**
+     * @return the keys as array elements, encoded by the column's codec if it has one
+     */
+    private static Object[] elements(ColumnMetadata column, List<Object> keys) {
+        if (column.getCodec() == null) {
+            return keys.toArray();
+        }
+        Object[] elements = new Object[keys.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = column.getCodec().encode(keys.get(i));
+        }
+        return elements;
+    }
+
+    private static String arrayType(ColumnMetadata column) {
+        String sqlType = SchemaGenerator.getSqlType(column).toLowerCase();
+        int parenthesis = sqlType.indexOf('(');
+        if (parenthesis >= 0) {
+            sqlType = sqlType.substring(0, parenthesis);
+        }
+        if ("timestamp with time zone".equals(sqlType)) {
+            return "timestamptz";
+        }
+        return "double precision".equals(sqlType) ? "float8" : sqlType;
+    }
+
+    private RelationLoader loaderFor(Class<?> entityClass) {
+        if (entityClass == metadata.getEntityClass()) {
+            return this;
+        }
+        return loaders.computeIfAbsent(entityClass,
+                type -> new RelationLoader(EntityMetadataRegistry.get(type), dbConnection, loaders));
+    }
+}
@@ -0,0 +1,190 @@
+package com.persistence.sql;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadata;
+
+/**
+ * SQL text for the CRUD statements of one entity, rendered once from its
+ * {@link EntityMetadata} and reused for every call. SELECT lists name the columns in
+ * declaration order so rows can be mapped by position, leaving out lazy columns. Full-row UPDATEs
+ * and upserts set a lazy column only when its value was loaded, with
+ * {@code CASE WHEN ? THEN ... ELSE column END}.
+ */
+public final class SqlTemplates {
+    /** PostgreSQL's wire protocol caps a single statement at this many bind parameters. */
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final EntityMetadata metadata;
+    private final String insert;
+    private final String insertPrefix;
+    private final String valuesRow;
+    private final ConcurrentMap<Integer, String> multiRowInserts = new ConcurrentHashMap<>();
+    private final String selectAll;
+    private final String selectById;
+    private final String update;
+    private final ConcurrentMap<String, String> partialUpdates = new ConcurrentHashMap<>();
+    private final String delete;
+    private final String upsert;
+
+    public SqlTemplates(EntityMetadata metadata) {
+        this.metadata = metadata;
+        String tableName = metadata.getTableName();
+
+        String columns = metadata.getColumns().stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.joining(", "));
+        String insertColumns = metadata.getInsertColumns().stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.joining(", "));
+        String placeholders = metadata.getInsertColumns().stream()
+                .map(column -> "?")
+                .collect(Collectors.joining(", "));
+        String selectColumns = metadata.getSelectColumns().stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.joining(", "));
+
+        this.insertPrefix = "INSERT INTO " + tableName + " (" + insertColumns + ") VALUES ";
+        this.valuesRow = "(" + placeholders + ")";
+        this.insert = insertPrefix + valuesRow;
+        this.selectAll = "SELECT " + selectColumns + " FROM " + tableName;
+
+        if (metadata.hasPrimaryKey()) {
+            String pkCondition = " WHERE " + metadata.getPrimaryKey().getName() + " = ?";
+            String setClause = metadata.getUpdatableColumns().stream()
+                    .map(column -> column.isLazy()
+                            ? column.getName() + " = CASE WHEN ? THEN ? ELSE " + column.getName() + " END"
+                            : column.getName() + " = ?")
+                    .collect(Collectors.joining(", "));
+
+            this.selectById = selectAll + pkCondition;
+            this.update = "UPDATE " + tableName + " SET " + setClause
+                    + versionIncrement(!metadata.getUpdatableColumns().isEmpty()) + pkCondition
+                    + versionCondition();
+            this.delete = "DELETE FROM " + tableName + pkCondition + versionCondition();
+            this.upsert = upsert(columns);
+        } else {
+            this.selectById = null;
+            this.update = null;
+            this.delete = null;
+            this.upsert = null;
+        }
+    }
+
+    public String insert() {
+        return insert;
+    }
+
+    /**
+     * {@code INSERT ... VALUES (...), (...)} for {@code rows} rows. Rendered on first use per row count.
+     */
+    public String insertMultiRow(int rows) {
+        if (rows == 1) {
+            return insert;
+        }
+        return multiRowInserts.computeIfAbsent(rows, count -> {
+            StringBuilder sql = new StringBuilder(insertPrefix.length() + count * (valuesRow.length() + 2));
+            sql.append(insertPrefix);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(valuesRow);
+            }
+            return sql.toString();
+        });
+    }
+
+    /**
+     * Largest number of rows a multi-row INSERT for this entity can carry.
+     */
+    public int maxRowsPerInsert() {
+        return Math.max(1, MAX_BIND_PARAMETERS / Math.max(1, metadata.getInsertColumns().size()));
+    }
+
+    public String selectAll() {
+        return selectAll;
+    }
+
+    public String selectById() {
+        return requirePrimaryKey(selectById);
+    }
+
+    public String update() {
+        return requirePrimaryKey(update);
+    }
+
+    /**
+     * {@code UPDATE ... SET} of only the given updatable columns, keyed by primary key and, for a
+     * versioned entity, the version. Lazy columns are set unconditionally, so callers only pass loaded
+     * ones. Rendered on first use per column set.
+     */
+    public String update(List<ColumnMetadata> columns) {
+        String key = columns.stream().map(ColumnMetadata::getName).collect(Collectors.joining(","));
+        return partialUpdates.computeIfAbsent(key, names -> "UPDATE " + metadata.getTableName() + " SET "
+                + columns.stream().map(column -> column.getName() + " = ?").collect(Collectors.joining(", "))
+                + versionIncrement(!columns.isEmpty())
+                + " WHERE " + metadata.getPrimaryKey().getName() + " = ?" + versionCondition());
+    }
+
+    public String delete() {
+        return requirePrimaryKey(delete);
+    }
+
+    /**
+     * {@code INSERT} of every column, including the primary key, that updates the existing row on a key
+     * conflict. A versioned row has its version advanced but not checked, so the last writer wins.
+     */
+    public String upsert() {
+        return requirePrimaryKey(upsert);
+    }
+
+    private String upsert(String columns) {
+        String tableName = metadata.getTableName();
+        String placeholders = metadata.getColumns().stream()
+                .map(column -> "?")
+                .collect(Collectors.joining(", "));
+        String sql = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ")"
+                + " ON CONFLICT (" + metadata.getPrimaryKey().getName() + ")";
+        List<ColumnMetadata> updatable = metadata.getUpdatableColumns();
+        ColumnMetadata version = metadata.getVersion();
+        if (updatable.isEmpty() && version == null) {
+            return sql + " DO NOTHING";
+        }
+        String setClause = updatable.stream()
+                .map(column -> column.isLazy()
+                        ? column.getName() + " = CASE WHEN ? THEN EXCLUDED." + column.getName() + " ELSE "
+                                + tableName + "." + column.getName() + " END"
+                        : column.getName() + " = EXCLUDED." + column.getName())
+                .collect(Collectors.joining(", "));
+        if (version != null) {
+            setClause += (updatable.isEmpty() ? "" : ", ") + version.getName() + " = " + tableName + "."
+                    + version.getName() + " + 1";
+        }
+        return sql + " DO UPDATE SET " + setClause;
+    }
+
+    private String versionIncrement(boolean afterColumns) {
+        ColumnMetadata version = metadata.getVersion();
+        if (version == null) {
+            return "";
+        }
+        return (afterColumns ? ", " : "") + version.getName() + " = " + version.getName() + " + 1";
+    }
+
+    private String versionCondition() {
+        ColumnMetadata version = metadata.getVersion();
+        return version == null ? "" : " AND " + version.getName() + " = ?";
+    }
+
+    private String requirePrimaryKey(String sql) {
+        if (sql == null) {
+            metadata.getPrimaryKey();
+        }
+        return sql;
+    }
+}
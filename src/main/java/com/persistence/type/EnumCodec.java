@@ -0,0 +1,61 @@
+package com.persistence.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Stores an enum as its ordinal in a {@code SMALLINT}, read and bound with {@code getShort}/
+ * {@code setShort}. Constants may be added at the end of the enum but not reordered or removed, since
+ * that changes the meaning of stored ordinals.
+ */
+public final class EnumCodec<E extends Enum<E>> implements TypeCodec<E> {
+    private final Class<E> type;
+    private final E[] constants;
+
+    public EnumCodec(Class<E> type) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        if (constants.length > Short.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Enum " + type.getName() + " has too many constants for a SMALLINT");
+        }
+    }
+
+    @Override
+    public String sqlType() {
+        return "SMALLINT";
+    }
+
+    @Override
+    public void bind(PreparedStatement pStmt, int index, E value) throws SQLException {
+        if (value == null) {
+            pStmt.setNull(index, Types.SMALLINT);
+        } else {
+            pStmt.setShort(index, (short) value.ordinal());
+        }
+    }
+
+    @Override
+    public E read(ResultSet resultSet, int index) throws SQLException {
+        short ordinal = resultSet.getShort(index);
+        return resultSet.wasNull() ? null : constant(ordinal);
+    }
+
+    @Override
+    public Object encode(E value) {
+        return (short) value.ordinal();
+    }
+
+    @Override
+    public E decode(Object value) {
+        return constant(((Number) value).intValue());
+    }
+
+    private E constant(int ordinal) {
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new IllegalStateException("No constant of " + type.getName() + " has ordinal " + ordinal);
+        }
+        return constants[ordinal];
+    }
+}
@@ -0,0 +1,43 @@
+package com.persistence.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Stores a {@code String} field holding a JSON document in a {@code JSONB} column, which the server
+ * parses once on write instead of on every query that inspects it. Named per column with
+ * {@code @Column(codec = JsonbCodec.class)}; the value is sent untyped, so that the server reads it as
+ * {@code jsonb} rather than rejecting a {@code varchar}.
+ */
+public final class JsonbCodec implements TypeCodec<String> {
+    @Override
+    public String sqlType() {
+        return "JSONB";
+    }
+
+    @Override
+    public void bind(PreparedStatement pStmt, int index, String value) throws SQLException {
+        if (value == null) {
+            pStmt.setNull(index, Types.OTHER);
+        } else {
+            pStmt.setObject(index, value, Types.OTHER);
+        }
+    }
+
+    @Override
+    public String read(ResultSet resultSet, int index) throws SQLException {
+        return resultSet.getString(index);
+    }
+
+    @Override
+    public Object encode(String value) {
+        return value;
+    }
+
+    @Override
+    public String decode(Object value) {
+        return value.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.persistence.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a Java type to a PostgreSQL column type: the type used in generated DDL, and how values are bound
+ * and read. Codecs are found in {@link TypeCodecs} by field type, or named for one column with
+ * {@link com.persistence.annotation.Column#codec()}, in which case the implementation needs a public
+ * no-arg constructor.
+ *
+ * @param <T> the field type
+ */
+public interface TypeCodec<T> {
+    /**
+     * @return the column type in generated DDL, such as {@code UUID}
+     */
+    String sqlType();
+
+    /**
+     * Binds {@code value}, which may be {@code null}, to parameter {@code index}.
+     */
+    void bind(PreparedStatement pStmt, int index, T value) throws SQLException;
+
+    /**
+     * @return column {@code index} of the current row, or {@code null} for SQL {@code NULL}
+     */
+    T read(ResultSet resultSet, int index) throws SQLException;
+
+    /**
+     * @return a non-null value as the standard JDBC type of the column, such as {@code Short} for
+     *         {@code SMALLINT}; this is the form {@code COPY} encodes
+     */
+    Object encode(T value);
+
+    /**
+     * @return the field value of a non-null value of the column's standard JDBC type
+     */
+    T decode(Object value);
+}
@@ -0,0 +1,205 @@
+package com.persistence.type;
+
+import java.lang.reflect.Field;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.persistence.annotation.Column;
+
+/**
+ * Process-wide registry of {@link TypeCodec}s by Java type. It comes with codecs that store
+ * {@link UUID} as {@code UUID}, {@link Instant} as {@code TIMESTAMP WITH TIME ZONE},
+ * {@link LocalDateTime} as {@code TIMESTAMP}, {@link LocalDate} as {@code DATE} and every enum as a
+ * {@code SMALLINT} ordinal, all in their native binary form rather than as text.
+ * <p>
+ * Entity metadata picks up codecs when it is first built, so codecs must be registered before the
+ * entities that use them are first mapped.
+ */
+public final class TypeCodecs {
+    private static final ConcurrentMap<Class<?>, TypeCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(UUID.class, new UuidCodec());
+        register(Instant.class, new InstantCodec());
+        register(LocalDateTime.class, new LocalDateTimeCodec());
+        register(LocalDate.class, new LocalDateCodec());
+    }
+
+    private TypeCodecs() {
+    }
+
+    /**
+     * Maps every column of type {@code type} through {@code codec}, replacing any codec registered for it.
+     */
+    public static <T> void register(Class<T> type, TypeCodec<T> codec) {
+        CODECS.put(type, codec);
+    }
+
+    /**
+     * @return the codec registered for {@code type}, one storing an enum as its ordinal, or {@code null}
+     *         if the type is mapped without a codec
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static TypeCodec<?> forType(Class<?> type) {
+        TypeCodec<?> codec = CODECS.get(type);
+        if (codec == null && type.isEnum()) {
+            codec = CODECS.computeIfAbsent(type, enumType -> new EnumCodec(enumType));
+        }
+        return codec;
+    }
+
+    /**
+     * @return the codec named by the field's {@link Column#codec()}, else {@link #forType(Class)} of its type
+     * @throws IllegalArgumentException if the named codec cannot be instantiated
+     */
+    public static TypeCodec<?> forField(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column == null || column.codec() == TypeCodec.class) {
+            return field.getType().isPrimitive() ? null : forType(field.getType());
+        }
+        try {
+            return column.codec().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot instantiate codec " + column.codec().getName() + " of field "
+                    + field.getName() + " in " + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static final class UuidCodec implements TypeCodec<UUID> {
+        @Override
+        public String sqlType() {
+            return "UUID";
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, UUID value) throws SQLException {
+            if (value == null) {
+                pStmt.setNull(index, Types.OTHER);
+            } else {
+                pStmt.setObject(index, value);
+            }
+        }
+
+        @Override
+        public UUID read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getObject(index, UUID.class);
+        }
+
+        @Override
+        public Object encode(UUID value) {
+            return value;
+        }
+
+        @Override
+        public UUID decode(Object value) {
+            return (UUID) value;
+        }
+    }
+
+    /** Binds as a UTC {@link OffsetDateTime}, the JDBC type of {@code TIMESTAMP WITH TIME ZONE}. */
+    private static final class InstantCodec implements TypeCodec<Instant> {
+        @Override
+        public String sqlType() {
+            return "TIMESTAMP WITH TIME ZONE";
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, Instant value) throws SQLException {
+            if (value == null) {
+                pStmt.setNull(index, Types.TIMESTAMP_WITH_TIMEZONE);
+            } else {
+                pStmt.setObject(index, value.atOffset(ZoneOffset.UTC));
+            }
+        }
+
+        @Override
+        public Instant read(ResultSet resultSet, int index) throws SQLException {
+            OffsetDateTime value = resultSet.getObject(index, OffsetDateTime.class);
+            return value == null ? null : value.toInstant();
+        }
+
+        @Override
+        public Object encode(Instant value) {
+            return value.atOffset(ZoneOffset.UTC);
+        }
+
+        @Override
+        public Instant decode(Object value) {
+            return ((OffsetDateTime) value).toInstant();
+        }
+    }
+
+    private static final class LocalDateTimeCodec implements TypeCodec<LocalDateTime> {
+        @Override
+        public String sqlType() {
+            return "TIMESTAMP";
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, LocalDateTime value) throws SQLException {
+            if (value == null) {
+                pStmt.setNull(index, Types.TIMESTAMP);
+            } else {
+                pStmt.setObject(index, value);
+            }
+        }
+
+        @Override
+        public LocalDateTime read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getObject(index, LocalDateTime.class);
+        }
+
+        @Override
+        public Object encode(LocalDateTime value) {
+            return value;
+        }
+
+        @Override
+        public LocalDateTime decode(Object value) {
+            return value instanceof LocalDateTime ? (LocalDateTime) value
+                    : ((java.sql.Timestamp) value).toLocalDateTime();
+        }
+    }
+
+    private static final class LocalDateCodec implements TypeCodec<LocalDate> {
+        @Override
+        public String sqlType() {
+            return "DATE";
+        }
+
+        @Override
+        public void bind(PreparedStatement pStmt, int index, LocalDate value) throws SQLException {
+            if (value == null) {
+                pStmt.setNull(index, Types.DATE);
+            } else {
+                pStmt.setObject(index, value);
+            }
+        }
+
+        @Override
+        public LocalDate read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getObject(index, LocalDate.class);
+        }
+
+        @Override
+        public Object encode(LocalDate value) {
+            return Date.valueOf(value);
+        }
+
+        @Override
+        public LocalDate decode(Object value) {
+            return ((Date) value).toLocalDate();
+        }
+    }
+}
@@ -1,35 +1,33 @@
 package com.persistence.utils;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.persistence.annotation.Column;
+import com.persistence.metadata.ColumnMetadata;
+import com.persistence.metadata.EntityMetadataRegistry;
 
 public class ColumnHelper {
+    private static final ConcurrentMap<Class<?>, List<Field>> ANNOTATED_FIELDS = new ConcurrentHashMap<>();
+
     public String getColumnName(Field field) {
-        if (field.isAnnotationPresent(Column.class)) {
-            Column columnAnnotation = field.getAnnotation(Column.class);
-            if (!columnAnnotation.name().isEmpty()) {
-                return columnAnnotation.name();
-            }
-        }
-        return field.getName().toLowerCase();
+        return EntityMetadataRegistry.getColumnName(field);
     }
 
     public List<Field> getAnnotatedFields(Class<?> entityClass) {
-        return Arrays.stream(entityClass.getDeclaredFields())
-                .filter(field -> field.isAnnotationPresent(Column.class))
-                .peek(field -> field.setAccessible(true))
-                .collect(Collectors.toList());
+        return ANNOTATED_FIELDS.computeIfAbsent(entityClass, type -> {
+            List<Field> fields = new ArrayList<>();
+            for (ColumnMetadata column : EntityMetadataRegistry.get(type).getColumns()) {
+                fields.add(column.getField());
+            }
+            return Collections.unmodifiableList(fields);
+        });
     }
 
     public Field getPrimaryKeyField(Class<?> entityClass) {
-        return getAnnotatedFields(entityClass).stream()
-                .filter(field -> field.getAnnotation(Column.class).primaryKey())
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException(
-                        "No primary key field found in class " + entityClass.getName()));
+        return EntityMetadataRegistry.get(entityClass).getPrimaryKey().getField();
     }
 }
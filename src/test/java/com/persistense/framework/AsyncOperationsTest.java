@@ -0,0 +1,204 @@
+package com.persistense.framework;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.db.ConnectionPool;
+import com.persistence.db.DbConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Cancellation, timeouts and the in-flight limit of the {@code *Async} operations. The entities map to
+ * views: {@code slow} scans billions of generated rows, which only a statement cancel stops in time,
+ * and {@code gated} calls {@link #gate(long)}, which records how many reads run at once.
+ */
+public class AsyncOperationsTest
+    extends TestCase
+{
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+    private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+
+    @Entity( name = "slow" )
+    public static class Slow
+    {
+        @Column( primaryKey = true )
+        private long id;
+    }
+
+    @Entity( name = "gated" )
+    public static class Gated
+    {
+        @Column( primaryKey = true )
+        private long id;
+    }
+
+    private String url;
+    private ExecutorService executor;
+    private ConnectionPool pool;
+
+    public AsyncOperationsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( AsyncOperationsTest.class );
+    }
+
+    /**
+     * Called by H2 for each row of {@code gated}.
+     */
+    public static long gate( long value ) throws InterruptedException
+    {
+        MAX_RUNNING.accumulateAndGet( RUNNING.incrementAndGet(), Math::max );
+        try
+        {
+            Thread.sleep( 100 );
+            return value;
+        }
+        finally
+        {
+            RUNNING.decrementAndGet();
+        }
+    }
+
+    protected void setUp() throws Exception
+    {
+        url = H2.url( getName() );
+        try ( Connection connection = DriverManager.getConnection( url, "sa", "" );
+                Statement stmt = connection.createStatement() )
+        {
+            stmt.execute( "CREATE VIEW slow AS SELECT X AS id FROM SYSTEM_RANGE(1, 10000000000) WHERE MOD(X, 7) = 9" );
+            stmt.execute( "CREATE ALIAS gate FOR \"" + AsyncOperationsTest.class.getName() + ".gate\"" );
+            stmt.execute( "CREATE VIEW gated AS SELECT gate(X) AS id FROM SYSTEM_RANGE(1, 1)" );
+        }
+        H2.initialize( getName() );
+        pool = DbConnection.getDbConnection().getPool();
+        executor = Executors.newCachedThreadPool();
+        RUNNING.set( 0 );
+        MAX_RUNNING.set( 0 );
+    }
+
+    protected void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        DbConnection.closeDbConnection();
+    }
+
+    public void testCancelCancelsTheRunningStatement() throws Exception
+    {
+        PersistenceFramework slow = framework( Slow.class );
+        CompletableFuture<List<Object>> future = slow.findAllAsync();
+        awaitActiveConnections( 1 );
+
+        assertTrue( future.cancel( true ) );
+        assertOperationsFinish();
+        assertEquals( "connection returned", 0, pool.getActiveConnections() );
+    }
+
+    public void testTimeoutCancelsTheRunningStatement() throws Exception
+    {
+        PersistenceFramework slow = framework( Slow.class );
+        slow.setAsyncTimeoutMillis( 200 );
+        try
+        {
+            slow.findAllAsync().get( 10, TimeUnit.SECONDS );
+            fail( "slow read completed" );
+        }
+        catch ( ExecutionException e )
+        {
+            assertTrue( e.getCause() instanceof TimeoutException );
+        }
+        assertOperationsFinish();
+        assertEquals( 0, pool.getActiveConnections() );
+    }
+
+    public void testInFlightLimitCapsConcurrency() throws Exception
+    {
+        PersistenceFramework gated = framework( Gated.class );
+        gated.setMaxInFlight( 2 );
+        List<CompletableFuture<List<Object>>> futures = new ArrayList<>();
+        for ( int i = 0; i < 6; i++ )
+        {
+            futures.add( gated.findAllAsync() );
+        }
+        for ( CompletableFuture<List<Object>> future : futures )
+        {
+            assertEquals( 1, future.get( 10, TimeUnit.SECONDS ).size() );
+        }
+        assertEquals( 2, MAX_RUNNING.get() );
+        assertEquals( 0, pool.getActiveConnections() );
+    }
+
+    public void testPermitsAreReleasedOnFailureAndCancellation() throws Exception
+    {
+        PersistenceFramework slow = framework( Slow.class );
+        slow.setMaxInFlight( 1 );
+        try
+        {
+            slow.insertAsync( new Object() ).get( 10, TimeUnit.SECONDS );
+            fail( "insert of a foreign object succeeded" );
+        }
+        catch ( ExecutionException e )
+        {
+            assertTrue( e.getCause() instanceof IllegalArgumentException );
+        }
+
+        // runs only if the failed insert gave back its permit
+        CompletableFuture<List<Object>> running = slow.findAllAsync();
+        awaitActiveConnections( 1 );
+        CompletableFuture<List<Object>> queued = slow.findAllAsync();
+        assertTrue( queued.cancel( true ) );
+        assertTrue( running.cancel( true ) );
+
+        // fails on the view, but only once it holds the one permit
+        slow.insertAsync( new Slow() ).get( 10, TimeUnit.SECONDS );
+        assertOperationsFinish();
+        assertEquals( 0, pool.getActiveConnections() );
+    }
+
+    private PersistenceFramework framework( Class<?> entityClass )
+    {
+        PersistenceFramework framework = new PersistenceFramework( entityClass );
+        framework.setAsyncExecutor( executor );
+        return framework;
+    }
+
+    private void awaitActiveConnections( int count ) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ( pool.getActiveConnections() != count )
+        {
+            assertTrue( "no connection borrowed", System.currentTimeMillis() < deadline );
+            Thread.sleep( 10 );
+        }
+        // give the statement time to start executing
+        Thread.sleep( 100 );
+    }
+
+    /**
+     * Fails unless every operation has returned, which the slow scan only does once cancelled.
+     */
+    private void assertOperationsFinish() throws InterruptedException
+    {
+        executor.shutdown();
+        assertTrue( "statement was not cancelled", executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+    }
+}
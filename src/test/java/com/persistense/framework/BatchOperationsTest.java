@@ -0,0 +1,133 @@
+package com.persistense.framework;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.DbConnection;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Per-row results of the batched {@code *All} operations, and rollback of a batch that fails partway.
+ */
+public class BatchOperationsTest
+    extends TestCase
+{
+    private static final int F = Statement.EXECUTE_FAILED;
+
+    private PersistenceFramework users;
+
+    public BatchOperationsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BatchOperationsTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        users.setBatchSize( 2 );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    private static List<User> users( int from, int to )
+    {
+        List<User> rows = new ArrayList<>();
+        for ( int id = from; id <= to; id++ )
+        {
+            rows.add( new User( id, "user" + id, "user" + id + "@example.com" ) );
+        }
+        return rows;
+    }
+
+    private List<Integer> storedIds()
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( Object user : users.findAll() )
+        {
+            ids.add( ( (User) user ).getId() );
+        }
+        Collections.sort( ids );
+        return ids;
+    }
+
+    public void testInsertAllReportsEveryRow()
+    {
+        int[] results = users.insertAll( users( 1, 5 ) );
+        assertTrue( Arrays.toString( results ), Arrays.equals( new int[] { 1, 1, 1, 1, 1 }, results ) );
+        assertEquals( Arrays.asList( 1, 2, 3, 4, 5 ), storedIds() );
+        assertEquals( 0, users.insertAll( Collections.emptyList() ).length );
+    }
+
+    public void testFailingBatchIsRolledBackAndTheOthersCommitted()
+    {
+        users.insert( new User( 100, "taken", "taken@example.com" ) );
+        List<User> rows = users( 1, 5 );
+        // row 3 collides, so its whole batch, rows 3 and 4, is rolled back
+        rows.get( 3 ).setEmail( "taken@example.com" );
+        int[] results = users.insertAll( rows );
+        assertTrue( Arrays.toString( results ), Arrays.equals( new int[] { 1, 1, F, F, 1 }, results ) );
+        assertEquals( Arrays.asList( 1, 2, 5, 100 ), storedIds() );
+    }
+
+    public void testMultiRowInsertRollsBackTheFailingStatementOnly()
+    {
+        users.setMultiRowInsert( true );
+        users.insert( new User( 100, "taken", "taken@example.com" ) );
+        List<User> rows = users( 1, 5 );
+        rows.get( 2 ).setName( "taken" );
+        int[] results = users.insertAll( rows );
+        assertTrue( Arrays.toString( results ), Arrays.equals( new int[] { 1, 1, F, F, 1 }, results ) );
+        assertEquals( Arrays.asList( 1, 2, 5, 100 ), storedIds() );
+    }
+
+    public void testUpdateAndDeleteReportMissingRows()
+    {
+        users.insertAll( users( 1, 3 ) );
+        List<User> rows = users( 2, 4 );
+        for ( User user : rows )
+        {
+            user.setName( "renamed" + user.getId() );
+        }
+        int[] updated = users.updateAll( rows );
+        assertTrue( Arrays.toString( updated ), Arrays.equals( new int[] { 1, 1, 0 }, updated ) );
+        assertEquals( "renamed3", ( (User) users.findById( 3 ) ).getName() );
+
+        int[] deleted = users.deleteAll( users( 3, 4 ) );
+        assertTrue( Arrays.toString( deleted ), Arrays.equals( new int[] { 1, 0 }, deleted ) );
+        assertEquals( Arrays.asList( 1, 2 ), storedIds() );
+    }
+
+    public void testFailingUpdateBatchKeepsTheRowsUnchanged()
+    {
+        users.insertAll( users( 1, 4 ) );
+        List<User> rows = users( 1, 4 );
+        for ( User user : rows )
+        {
+            user.setName( "renamed" + user.getId() );
+        }
+        rows.get( 3 ).setName( "renamed1" );
+        int[] results = users.updateAll( rows );
+        assertTrue( Arrays.toString( results ), Arrays.equals( new int[] { 1, 1, F, F }, results ) );
+        assertEquals( "user3", ( (User) users.findById( 3 ) ).getName() );
+        assertEquals( "renamed2", ( (User) users.findById( 2 ) ).getName() );
+        assertEquals( 0, DbConnection.getDbConnection().getPool().getActiveConnections() );
+    }
+}
@@ -0,0 +1,163 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.cache.CacheInvalidationBus;
+import com.persistence.cache.EntityCache;
+import com.persistence.cache.EvictionPolicy;
+import com.persistence.cache.InProcessTransport;
+import com.persistence.db.DbConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Keeps the second-level caches of two simulated nodes consistent through a shared in-process transport.
+ */
+public class CacheInvalidationTest
+    extends TestCase
+{
+    @Entity
+    public static class Price
+    {
+        @Column( nullable = false, primaryKey = true )
+        private String sku;
+
+        @Column
+        private int cents;
+
+        public Price()
+        {
+        }
+
+        Price( String sku, int cents )
+        {
+            this.sku = sku;
+            this.cents = cents;
+        }
+    }
+
+    /** Records what is sent before delivering it. */
+    private static class RecordingTransport
+        extends InProcessTransport
+    {
+        private final List<String> sent = new ArrayList<>();
+
+        @Override
+        public void send( List<String> messages )
+        {
+            sent.addAll( messages );
+            super.send( messages );
+        }
+    }
+
+    private RecordingTransport transport;
+    private PersistenceFramework nodeA;
+    private PersistenceFramework nodeB;
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+
+    public CacheInvalidationTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CacheInvalidationTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+
+        transport = new RecordingTransport();
+        busA = new CacheInvalidationBus( transport );
+        busB = new CacheInvalidationBus( transport );
+        nodeA = node( busA );
+        nodeB = node( busB );
+        nodeA.initializeSchema();
+        nodeA.insertAll( Arrays.asList( new Price( "a,1", 100 ), new Price( "b*", 200 ), new Price( "c 3", 300 ) ) );
+    }
+
+    private static PersistenceFramework node( CacheInvalidationBus bus )
+    {
+        PersistenceFramework framework = new PersistenceFramework( Price.class );
+        framework.setSecondLevelCache( new EntityCache( 100, EvictionPolicy.LRU, 0 ) );
+        framework.setInvalidationBus( bus );
+        return framework;
+    }
+
+    protected void tearDown()
+    {
+        transport.close();
+        DbConnection.closeDbConnection();
+    }
+
+    public void testWriteOnOneNodeEvictsTheOther()
+    {
+        assertEquals( 100, ( (Price) nodeA.findById( "a,1" ) ).cents );
+        assertEquals( 1, nodeA.getSecondLevelCache().size() );
+
+        Price price = (Price) nodeB.findById( "a,1" );
+        price.cents = 150;
+        nodeB.update( price );
+        assertEquals( 0, nodeA.getSecondLevelCache().size() );
+        assertEquals( 150, ( (Price) nodeA.findById( "a,1" ) ).cents );
+
+        nodeA.findById( "b*" );
+        nodeA.findById( "c 3" );
+        nodeB.delete( new Price( "c 3", 0 ) );
+        assertEquals( 2, nodeA.getSecondLevelCache().size() );
+        assertNull( nodeA.findById( "c 3" ) );
+    }
+
+    public void testBatchIsSentAsOneMessageAndLargeBatchesAsWholeTable()
+    {
+        List<Object> prices = new ArrayList<>();
+        for ( String sku : new String[] { "a,1", "b*", "c 3" } )
+        {
+            prices.add( nodeA.findById( sku ) );
+        }
+        transport.sent.clear();
+        nodeB.updateAll( prices );
+        assertEquals( 1, transport.sent.size() );
+        assertTrue( transport.sent.get( 0 ), transport.sent.get( 0 ).endsWith( " price a%2C1,b%2A,c+3" ) );
+        assertEquals( 0, nodeA.getSecondLevelCache().size() );
+
+        CacheInvalidationBus small = new CacheInvalidationBus( transport, 0, 2 );
+        nodeB.setInvalidationBus( small );
+        for ( String sku : new String[] { "a,1", "b*" } )
+        {
+            nodeA.findById( sku );
+        }
+        transport.sent.clear();
+        nodeB.updateAll( prices );
+        assertEquals( 1, transport.sent.size() );
+        assertTrue( transport.sent.get( 0 ), transport.sent.get( 0 ).endsWith( " price *" ) );
+        assertEquals( 0, nodeA.getSecondLevelCache().size() );
+    }
+
+    public void testCoalescesWithinWindowAndClearsOnGap() throws Exception
+    {
+        CacheInvalidationBus delayed = new CacheInvalidationBus( transport, 60_000, 1000 );
+        delayed.publish( "price", Arrays.asList( "a,1", "b*" ) );
+        delayed.publish( "price", Arrays.asList( "b*", "c 3" ) );
+        transport.sent.clear();
+        delayed.flush();
+        assertEquals( 1, transport.sent.size() );
+        assertTrue( transport.sent.get( 0 ).endsWith( " price a%2C1,b%2A,c+3" ) );
+
+        nodeA.findById( "a,1" );
+        assertEquals( 1, nodeA.getSecondLevelCache().size() );
+        transport.simulateGap();
+        assertEquals( 0, nodeA.getSecondLevelCache().size() );
+        delayed.close();
+    }
+}
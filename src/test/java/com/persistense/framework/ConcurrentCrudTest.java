@@ -0,0 +1,90 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.SessionFactory;
+import com.persistence.db.DbConnection;
+import com.persistence.model.User;
+import com.persistence.utils.VirtualThreads;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Runs thousands of concurrent CRUD tasks, one virtual thread each, against a shared repository
+ * backed by an in-memory database and a small connection pool.
+ */
+public class ConcurrentCrudTest
+    extends TestCase
+{
+    private static final int TASKS = 2000;
+
+    public ConcurrentCrudTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ConcurrentCrudTest.class );
+    }
+
+    protected void setUp()
+    {
+        Properties properties = H2.properties( "concurrent_crud" );
+        properties.setProperty( "db.pool.maxSize", "8" );
+        DbConnection.initialize( properties );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testConcurrentCrudOnVirtualThreads() throws Exception
+    {
+        SessionFactory sessionFactory = new SessionFactory();
+        final PersistenceFramework users = sessionFactory.getRepository( User.class );
+        assertSame( users, sessionFactory.getRepository( User.class ) );
+        users.initializeSchema();
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor( "crud-test" );
+        List<Future<Boolean>> results = new ArrayList<>();
+        for ( int i = 0; i < TASKS; i++ )
+        {
+            final int id = i;
+            results.add( executor.submit( () -> {
+                User user = new User( id, "user-" + id, "user" + id + "@example.com" );
+                users.insert( user );
+
+                user.setName( "renamed-" + id );
+                users.update( user );
+                User reloaded = (User) users.findById( id );
+
+                if ( id % 2 == 0 )
+                {
+                    users.delete( user );
+                }
+                return reloaded != null && ( "renamed-" + id ).equals( reloaded.getName() );
+            } ) );
+        }
+
+        for ( Future<Boolean> result : results )
+        {
+            assertTrue( result.get( 60, TimeUnit.SECONDS ) );
+        }
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 60, TimeUnit.SECONDS ) );
+
+        assertEquals( TASKS / 2, users.findAll().size() );
+        assertEquals( 0, DbConnection.getDbConnection().getPool().getActiveConnections() );
+        assertTrue( DbConnection.getDbConnection().getPool().getTotalConnections() <= 8 );
+    }
+}
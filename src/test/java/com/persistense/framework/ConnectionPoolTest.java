@@ -0,0 +1,222 @@
+package com.persistense.framework;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import com.persistence.db.ConnectionPool;
+import com.persistence.db.PoolConfig;
+import com.persistence.db.PooledConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Acquire timeout, idle eviction, validation on borrow and start-up failure of {@link ConnectionPool}.
+ */
+public class ConnectionPoolTest
+    extends TestCase
+{
+    /**
+     * Opens H2 connections for {@code jdbc:failing:} URLs, failing once {@code limit} are open.
+     */
+    private static class FailingDriver
+        implements Driver
+    {
+        private final List<Connection> opened = new ArrayList<>();
+
+        private int limit;
+
+        public Connection connect( String url, Properties info )
+            throws SQLException
+        {
+            if ( !acceptsURL( url ) )
+            {
+                return null;
+            }
+            if ( opened.size() >= limit )
+            {
+                throw new SQLException( "Too many connections" );
+            }
+            Connection connection = DriverManager.getConnection( "jdbc:h2:" + url.substring( 13 ), info );
+            opened.add( connection );
+            return connection;
+        }
+
+        public boolean acceptsURL( String url )
+        {
+            return url.startsWith( "jdbc:failing:" );
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo( String url, Properties info )
+        {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion()
+        {
+            return 1;
+        }
+
+        public int getMinorVersion()
+        {
+            return 0;
+        }
+
+        public boolean jdbcCompliant()
+        {
+            return false;
+        }
+
+        public Logger getParentLogger()
+            throws SQLFeatureNotSupportedException
+        {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    private ConnectionPool pool;
+
+    public ConnectionPoolTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ConnectionPoolTest.class );
+    }
+
+    protected void tearDown()
+    {
+        if ( pool != null )
+        {
+            pool.close();
+        }
+    }
+
+    private PoolConfig config( int minSize, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+                               long evictionIntervalMillis, long validationIntervalMillis )
+    {
+        return new PoolConfig( H2.url( getName() ), "sa", "", minSize, maxSize,
+                acquireTimeoutMillis, idleTimeoutMillis, evictionIntervalMillis, validationIntervalMillis, 2, 8 );
+    }
+
+    public void testBorrowTimesOutWhenEveryConnectionIsOnLoan()
+        throws SQLException
+    {
+        pool = new ConnectionPool( config( 0, 1, 100, 60000, 60000, 60000 ) );
+        PooledConnection first = pool.borrow();
+        long start = System.currentTimeMillis();
+        try
+        {
+            pool.borrow();
+            fail( "borrowed beyond the maximum size" );
+        }
+        catch ( SQLTimeoutException expected )
+        {
+        }
+        assertTrue( System.currentTimeMillis() - start >= 100 );
+        assertEquals( 1, pool.getActiveConnections() );
+
+        first.close();
+        PooledConnection second = pool.borrow();
+        assertSame( "the returned connection is reused", first.getConnection(), second.getConnection() );
+        second.close();
+        assertEquals( 0, pool.getActiveConnections() );
+    }
+
+    public void testIdleConnectionsAreEvictedDownToTheMinimum()
+        throws SQLException, InterruptedException
+    {
+        pool = new ConnectionPool( config( 1, 4, 1000, 50, 20, 60000 ) );
+        List<PooledConnection> borrowed = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            borrowed.add( pool.borrow() );
+        }
+        for ( PooledConnection pooled : borrowed )
+        {
+            pooled.close();
+        }
+        assertEquals( 3, pool.getTotalConnections() );
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( pool.getTotalConnections() > 1 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 20 );
+        }
+        assertEquals( 1, pool.getTotalConnections() );
+        assertEquals( 1, pool.getIdleConnections() );
+    }
+
+    public void testBrokenConnectionsAreReplacedOnBorrow()
+        throws SQLException
+    {
+        pool = new ConnectionPool( config( 0, 2, 1000, 60000, 60000, 0 ) );
+        PooledConnection pooled = pool.borrow();
+        Connection broken = pooled.getConnection();
+        pooled.close();
+        broken.close();
+
+        pooled = pool.borrow();
+        assertNotSame( broken, pooled.getConnection() );
+        assertFalse( pooled.getConnection().isClosed() );
+        assertEquals( 1, pool.getTotalConnections() );
+        pooled.close();
+    }
+
+    public void testRecentlyUsedConnectionsAreNotValidated()
+        throws SQLException
+    {
+        pool = new ConnectionPool( config( 0, 2, 1000, 60000, 60000, 60000 ) );
+        PooledConnection pooled = pool.borrow();
+        Connection broken = pooled.getConnection();
+        pooled.close();
+        broken.close();
+
+        // within the validation interval the pool trusts the connection
+        pooled = pool.borrow();
+        assertSame( broken, pooled.getConnection() );
+        pooled.close();
+    }
+
+    public void testConnectionsOpenedBeforeAStartUpFailureAreClosed()
+        throws SQLException
+    {
+        FailingDriver driver = new FailingDriver();
+        driver.limit = 2;
+        DriverManager.registerDriver( driver );
+        try
+        {
+            PoolConfig failing = new PoolConfig( "jdbc:failing:mem:" + getName(), "sa", "", 3, 4, 1000, 60000,
+                    60000, 60000, 2, 8 );
+            try
+            {
+                new ConnectionPool( failing );
+                fail( "pool started without its minimum connections" );
+            }
+            catch ( SQLException expected )
+            {
+            }
+            assertEquals( 2, driver.opened.size() );
+            for ( Connection connection : driver.opened )
+            {
+                assertTrue( connection.isClosed() );
+            }
+        }
+        finally
+        {
+            DriverManager.deregisterDriver( driver );
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.persistense.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.GenerationType;
+import com.persistence.copy.CopyCodec;
+import com.persistence.copy.CopyFormat;
+import com.persistence.metadata.EntityMetadataRegistry;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks the COPY encodings without a database: binary rows must round-trip and follow PostgreSQL's
+ * wire layout, and CSV rows must keep NULLs and empty strings apart.
+ */
+public class CopyCodecTest
+    extends TestCase
+{
+    @Entity( name = "copy_row" )
+    public static class CopyRow
+    {
+        @Column( primaryKey = true )
+        private long id;
+
+        @Column
+        private int count;
+
+        @Column
+        private Double ratio;
+
+        @Column
+        private boolean active;
+
+        @Column
+        private String label;
+
+        @Column
+        private Timestamp createdAt;
+
+        public CopyRow()
+        {
+        }
+
+        CopyRow( long id, int count, Double ratio, boolean active, String label, Timestamp createdAt )
+        {
+            this.id = id;
+            this.count = count;
+            this.ratio = ratio;
+            this.active = active;
+            this.label = label;
+            this.createdAt = createdAt;
+        }
+    }
+
+    @Entity( name = "copy_blob" )
+    public static class CopyBlob
+    {
+        @Column( primaryKey = true )
+        private long id;
+
+        @Column
+        private byte[] payload;
+
+        public CopyBlob()
+        {
+        }
+
+        CopyBlob( long id, byte[] payload )
+        {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    @Entity( name = "copy_event" )
+    public static class CopyEvent
+    {
+        @Column( nullable = false, primaryKey = true, generation = GenerationType.IDENTITY )
+        private long id;
+
+        @Column
+        private String name;
+
+        public CopyEvent()
+        {
+        }
+
+        CopyEvent( String name )
+        {
+            this.name = name;
+        }
+    }
+
+    @Entity( name = "copy_link" )
+    public static class CopyLink
+    {
+        @Column( primaryKey = true )
+        private long id;
+
+        @Column
+        private URI target;
+
+        public CopyLink()
+        {
+        }
+    }
+
+    private final CopyCodec codec = new CopyCodec( EntityMetadataRegistry.get( CopyRow.class ) );
+
+    public CopyCodecTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CopyCodecTest.class );
+    }
+
+    public void testSqlNamesColumnsInOrder()
+    {
+        assertEquals( "COPY copy_row (id, count, ratio, active, label, createdat) FROM STDIN WITH (FORMAT binary)",
+                codec.copyInSql( CopyFormat.BINARY ) );
+        assertEquals( "COPY copy_row (id, count, ratio, active, label, createdat) TO STDOUT WITH (FORMAT csv)",
+                codec.copyOutSql( CopyFormat.CSV ) );
+    }
+
+    public void testBinaryRoundTrip() throws Exception
+    {
+        Timestamp createdAt = Timestamp.valueOf( "2024-02-29 13:45:01.123456" );
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        codec.writeBinaryHeader( out );
+        codec.writeBinaryRow( out, new CopyRow( 1, 7, 0.5, true, "caf\u00e9", createdAt ) );
+        codec.writeBinaryRow( out, new CopyRow( 2, -1, null, false, null, null ) );
+        codec.writeBinaryTrailer( out );
+
+        List<Object> rows = new ArrayList<>();
+        long count = codec.readBinary( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ),
+                rows::add );
+
+        assertEquals( 2, count );
+        CopyRow first = (CopyRow) rows.get( 0 );
+        assertEquals( 1, first.id );
+        assertEquals( 7, first.count );
+        assertEquals( Double.valueOf( 0.5 ), first.ratio );
+        assertTrue( first.active );
+        assertEquals( "caf\u00e9", first.label );
+        assertEquals( createdAt, first.createdAt );
+        CopyRow second = (CopyRow) rows.get( 1 );
+        assertEquals( -1, second.count );
+        assertNull( second.ratio );
+        assertNull( second.label );
+        assertNull( second.createdAt );
+    }
+
+    public void testBinaryTimestampIsMicrosecondsSincePostgresEpoch() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        codec.writeBinaryRow( out, new CopyRow( 0, 0, null, false, null,
+                Timestamp.valueOf( "2000-01-01 00:00:01" ) ) );
+
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+        assertEquals( 6, in.readShort() );
+        assertEquals( 8, in.readInt() );
+        in.readLong();
+        assertEquals( 4, in.readInt() );
+        in.readInt();
+        assertEquals( -1, in.readInt() );
+        assertEquals( 1, in.readInt() );
+        in.readByte();
+        assertEquals( -1, in.readInt() );
+        assertEquals( 8, in.readInt() );
+        assertEquals( 1000000L, in.readLong() );
+    }
+
+    public void testCsvQuotesTextAndLeavesNullsEmpty() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        codec.writeCsvRow( out, new CopyRow( 3, 4, 1.5, true, "say \"hi\", ok", null ) );
+        codec.writeCsvRow( out, new CopyRow( 4, 0, null, false, "", null ) );
+
+        assertEquals( "3,4,1.5,t,\"say \"\"hi\"\", ok\",\n4,0,,f,\"\",\n", out.toString() );
+    }
+
+    public void testByteArraysRoundTripAsBytea() throws Exception
+    {
+        CopyCodec blobs = new CopyCodec( EntityMetadataRegistry.get( CopyBlob.class ) );
+        byte[] payload = { 0, 1, (byte) 0x7f, (byte) 0x80, (byte) 0xff };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        blobs.writeBinaryHeader( out );
+        blobs.writeBinaryRow( out, new CopyBlob( 1, payload ) );
+        blobs.writeBinaryRow( out, new CopyBlob( 2, new byte[0] ) );
+        blobs.writeBinaryRow( out, new CopyBlob( 3, null ) );
+        blobs.writeBinaryTrailer( out );
+
+        List<Object> rows = new ArrayList<>();
+        blobs.readBinary( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ), rows::add );
+        assertEquals( 3, rows.size() );
+        assertTrue( Arrays.equals( payload, ( (CopyBlob) rows.get( 0 ) ).payload ) );
+        assertEquals( 0, ( (CopyBlob) rows.get( 1 ) ).payload.length );
+        assertNull( ( (CopyBlob) rows.get( 2 ) ).payload );
+
+        StringWriter csv = new StringWriter();
+        blobs.writeCsvRow( csv, new CopyBlob( 1, payload ) );
+        blobs.writeCsvRow( csv, new CopyBlob( 2, new byte[0] ) );
+        blobs.writeCsvRow( csv, new CopyBlob( 3, null ) );
+        assertEquals( "1,\\x00017f80ff\n2,\\x\n3,\n", csv.toString() );
+    }
+
+    public void testCopyInLeavesOutAnIdentityKey() throws Exception
+    {
+        CopyCodec events = new CopyCodec( EntityMetadataRegistry.get( CopyEvent.class ) );
+        assertEquals( "COPY copy_event (name) FROM STDIN WITH (FORMAT binary)", events.copyInSql( CopyFormat.BINARY ) );
+        assertEquals( "COPY copy_event (id, name) TO STDOUT WITH (FORMAT binary)",
+                events.copyOutSql( CopyFormat.BINARY ) );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        events.writeBinaryRow( new DataOutputStream( bytes ), new CopyEvent( "start" ) );
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+        assertEquals( 1, in.readShort() );
+        assertEquals( 5, in.readInt() );
+
+        StringWriter csv = new StringWriter();
+        events.writeCsvRow( csv, new CopyEvent( null ) );
+        events.writeCsvRow( csv, new CopyEvent( "stop" ) );
+        assertEquals( "\n\"stop\"\n", csv.toString() );
+    }
+
+    public void testColumnsWithoutAnEncodingAreRejected()
+    {
+        try
+        {
+            new CopyCodec( EntityMetadataRegistry.get( CopyLink.class ) );
+            fail( "a URI column would be copied as its toString()" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().contains( "target" ) );
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.persistense.framework;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.cache.CacheStatistics;
+import com.persistence.cache.EntityCache;
+import com.persistence.cache.EvictionPolicy;
+import com.persistence.db.DbConnection;
+import com.persistence.mapping.EntityMapper;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Bounds, eviction and expiry of the second-level cache, and its consistency with concurrent writes.
+ */
+public class EntityCacheTest
+    extends TestCase
+{
+    @Entity
+    public static class Document
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private byte[] content;
+
+        public Document()
+        {
+        }
+    }
+
+    public EntityCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( EntityCacheTest.class );
+    }
+
+    protected void tearDown()
+    {
+        if ( DbConnection.isInitialized() )
+        {
+            DbConnection.closeDbConnection();
+        }
+    }
+
+    public void testLruEvictsTheLeastRecentlyUsedEntry()
+    {
+        EntityCache cache = new EntityCache( 3, EvictionPolicy.LRU, 0 );
+        cache.put( 1, new Object[] { "one" } );
+        cache.put( 2, new Object[] { "two" } );
+        cache.put( 3, new Object[] { "three" } );
+        cache.get( 1 );
+        cache.put( 4, new Object[] { "four" } );
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get( 2 ) );
+        assertNotNull( cache.get( 1 ) );
+
+        cache.put( 5, new Object[] { "five" } );
+        assertNull( cache.get( 3 ) );
+        assertNotNull( cache.get( 4 ) );
+        assertNotNull( cache.get( 5 ) );
+    }
+
+    public void testLfuEvictsTheLeastFrequentlyUsedEntry()
+    {
+        EntityCache cache = new EntityCache( 3, EvictionPolicy.LFU, 0 );
+        cache.put( 1, new Object[] { "one" } );
+        cache.put( 2, new Object[] { "two" } );
+        cache.put( 3, new Object[] { "three" } );
+        for ( int i = 0; i < 3; i++ )
+        {
+            cache.get( 1 );
+            cache.get( 2 );
+        }
+        // 1 and 2 are used more often, so 3 goes even though it was used most recently
+        cache.get( 3 );
+        cache.put( 4, new Object[] { "four" } );
+        assertNull( cache.get( 3 ) );
+        assertNotNull( cache.get( 1 ) );
+        assertNotNull( cache.get( 2 ) );
+        assertNotNull( cache.get( 4 ) );
+    }
+
+    public void testWeigherBoundsTheTotalWeight()
+    {
+        EntityCache cache = new EntityCache( 10, EvictionPolicy.LRU, 0,
+                ( key, values ) -> ( (String) values[0] ).length() );
+        cache.put( 1, new Object[] { "aaaa" } );
+        cache.put( 2, new Object[] { "bbbb" } );
+        assertEquals( 2, cache.size() );
+        cache.put( 3, new Object[] { "cccc" } );
+        assertEquals( "12 exceeds 10, so the oldest entry goes", 2, cache.size() );
+        assertNull( cache.get( 1 ) );
+
+        cache.put( 4, new Object[] { "dddddddddddd" } );
+        assertNull( "heavier than the whole cache", cache.get( 4 ) );
+        assertEquals( 2, cache.size() );
+
+        cache.put( 5, new Object[] { "eeeeeeeeee" } );
+        assertEquals( 1, cache.size() );
+        assertNotNull( cache.get( 5 ) );
+    }
+
+    public void testEntriesExpireAfterTheirTimeToLive()
+        throws InterruptedException
+    {
+        EntityCache cache = new EntityCache( 10, EvictionPolicy.LRU, 50 );
+        cache.put( 1, new Object[] { "one" } );
+        assertNotNull( cache.get( 1 ) );
+        Thread.sleep( 100 );
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 1, cache.getStatistics().getExpirations() );
+    }
+
+    public void testStatisticsCountEveryOutcome()
+    {
+        EntityCache cache = new EntityCache( 2, EvictionPolicy.LRU, 0 );
+        cache.put( 1, new Object[] { "one" } );
+        cache.put( 2, new Object[] { "two" } );
+        cache.put( 3, new Object[] { "three" } );
+        cache.get( 1 );
+        cache.get( 2 );
+        cache.get( 3 );
+        cache.invalidate( 2 );
+        cache.invalidate( 1 );
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals( 3, statistics.getPuts() );
+        assertEquals( 1, statistics.getEvictions() );
+        assertEquals( 2, statistics.getHits() );
+        assertEquals( 1, statistics.getMisses() );
+        assertEquals( "absent keys are not counted", 1, statistics.getInvalidations() );
+        assertEquals( 2.0 / 3, statistics.getHitRate(), 1e-9 );
+    }
+
+    public void testCachedValuesAreIsolatedFromTheEntities()
+        throws ReflectiveOperationException
+    {
+        EntityMapper mapper = EntityMetadataRegistry.get( Document.class ).getMapper();
+        EntityCache cache = new EntityCache( 10, EvictionPolicy.LRU, 0 );
+        Document document = new Document();
+        document.id = 1;
+        document.content = new byte[] { 1, 2, 3 };
+        cache.put( 1, mapper.snapshot( document ) );
+        document.content[0] = 9;
+
+        Document first = (Document) mapper.fromSnapshot( cache.get( 1 ) );
+        assertEquals( 1, first.content[0] );
+        first.content[1] = 9;
+        Document second = (Document) mapper.fromSnapshot( cache.get( 1 ) );
+        assertEquals( 2, second.content[1] );
+        assertNotSame( first.content, second.content );
+    }
+
+    public void testLoadInvalidatedMidwayIsNotCached()
+    {
+        EntityCache cache = new EntityCache( 10, EvictionPolicy.LRU, 0 );
+        long token = cache.beginLoad();
+        cache.invalidate( 1 );
+        assertFalse( cache.putFromLoad( 1, new Object[] { "stale" }, token ) );
+        assertTrue( "other keys are unaffected", cache.putFromLoad( 2, new Object[] { "fresh" }, token ) );
+        cache.endLoad( token );
+        assertNull( cache.get( 1 ) );
+
+        token = cache.beginLoad();
+        assertTrue( "a load begun after the invalidation is current", cache.putFromLoad( 1, new Object[] { "new" },
+                token ) );
+        cache.clear();
+        assertFalse( cache.putFromLoad( 2, new Object[] { "stale" }, token ) );
+        cache.endLoad( token );
+        assertEquals( 0, cache.size() );
+    }
+
+    public void testUpdateDuringFindByIdIsNotOverwrittenByTheStaleRow()
+    {
+        H2.initialize( getName() );
+        final PersistenceFramework users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        users.insert( new User( 1, "before", "user@example.com" ) );
+
+        // the weigher runs between the read and the cache put, which is where the update lands
+        final AtomicBoolean raced = new AtomicBoolean();
+        users.setSecondLevelCache( new EntityCache( 100, EvictionPolicy.LRU, 0, ( key, values ) -> {
+            if ( raced.compareAndSet( false, true ) )
+            {
+                users.update( new User( 1, "after", "user@example.com" ) );
+            }
+            return 1;
+        } ) );
+
+        assertEquals( "before", ( (User) users.findById( 1 ) ).getName() );
+        assertTrue( raced.get() );
+        assertEquals( 0, users.getSecondLevelCache().size() );
+        assertEquals( "after", ( (User) users.findById( 1 ) ).getName() );
+        assertEquals( "after", ( (User) users.findById( 1 ) ).getName() );
+        assertEquals( 1, users.getSecondLevelCache().getStatistics().getHits() );
+    }
+}
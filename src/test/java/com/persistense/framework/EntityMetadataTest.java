@@ -0,0 +1,70 @@
+package com.persistense.framework;
+
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.db.DbConnection;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Table names resolved from {@link Entity}.
+ */
+public class EntityMetadataTest
+    extends TestCase
+{
+    @Entity
+    public static class OrderLine
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String product;
+
+        public OrderLine()
+        {
+        }
+    }
+
+    public EntityMetadataTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( EntityMetadataTest.class );
+    }
+
+    public void testNamedEntityUsesItsName()
+    {
+        assertEquals( "users", EntityMetadataRegistry.get( User.class ).getTableName() );
+    }
+
+    public void testUnnamedEntityUsesItsLowerCaseSimpleName()
+    {
+        assertEquals( "orderline", EntityMetadataRegistry.get( OrderLine.class ).getTableName() );
+
+        H2.initialize( getName() );
+        try
+        {
+            PersistenceFramework lines = new PersistenceFramework( OrderLine.class );
+            lines.initializeSchema();
+            OrderLine line = new OrderLine();
+            line.id = 1;
+            line.product = "lamp";
+            lines.insert( line );
+            assertEquals( "lamp", ( (OrderLine) lines.findById( 1 ) ).product );
+        }
+        finally
+        {
+            DbConnection.closeDbConnection();
+        }
+    }
+}
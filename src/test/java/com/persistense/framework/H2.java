@@ -0,0 +1,44 @@
+package com.persistense.framework;
+
+import java.util.Properties;
+
+import com.persistence.db.DbConnection;
+
+/**
+ * In-memory H2 databases in PostgreSQL mode, which the tests use in place of PostgreSQL.
+ */
+final class H2
+{
+    private H2()
+    {
+    }
+
+    /**
+     * @return the URL of the in-memory database {@code name}, which lives until the JVM exits
+     */
+    static String url( String name )
+    {
+        return "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * @return connection settings for the database {@code name}, to which a test may add its own
+     */
+    static Properties properties( String name )
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "db.url", url( name ) );
+        properties.setProperty( "db.user", "sa" );
+        properties.setProperty( "db.password", "" );
+        properties.setProperty( "db.driver", "org.h2.Driver" );
+        return properties;
+    }
+
+    /**
+     * Initializes the shared {@link DbConnection} over the database {@code name}.
+     */
+    static DbConnection initialize( String name )
+    {
+        return DbConnection.initialize( properties( name ) );
+    }
+}
@@ -0,0 +1,189 @@
+package com.persistense.framework;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.SchemaGenerator;
+import com.persistence.Session;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.GenerationType;
+import com.persistence.annotation.Version;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.sql.SqlTemplates;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Generates primary keys from identity columns and block-allocated sequences, and renders upserts.
+ */
+public class KeyGenerationTest
+    extends TestCase
+{
+    @Entity
+    public static class Invoice
+    {
+        @Column( nullable = false, primaryKey = true, generation = GenerationType.SEQUENCE, allocationSize = 10 )
+        private long id;
+
+        @Column
+        private String customer;
+
+        public Invoice()
+        {
+        }
+
+        Invoice( String customer )
+        {
+            this.customer = customer;
+        }
+    }
+
+    @Entity
+    public static class Ticket
+    {
+        @Column( nullable = false, primaryKey = true, generation = GenerationType.IDENTITY )
+        private Integer id;
+
+        @Column
+        private String title;
+
+        @Version
+        private int version;
+
+        public Ticket()
+        {
+        }
+
+        Ticket( String title )
+        {
+            this.title = title;
+        }
+    }
+
+    public KeyGenerationTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( KeyGenerationTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testSequenceKeysAreAllocatedInBlocks() throws Exception
+    {
+        PersistenceFramework invoices = new PersistenceFramework( Invoice.class );
+        invoices.initializeSchema();
+
+        Invoice first = new Invoice( "first" );
+        invoices.insert( first );
+        assertEquals( 1, first.id );
+
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 0; i < 25; i++ )
+        {
+            rows.add( new Invoice( "customer" + i ) );
+        }
+        invoices.insertAll( rows );
+        for ( int i = 0; i < rows.size(); i++ )
+        {
+            assertEquals( i + 2, ( (Invoice) rows.get( i ) ).id );
+        }
+        assertEquals( 26, invoices.findAll().size() );
+        assertEquals( "customer24", ( (Invoice) invoices.findById( 26L ) ).customer );
+
+        // 26 keys took three blocks of ten, so the sequence has handed out 1, 11 and 21
+        assertEquals( 31, nextSequenceValue( "invoice_id_seq" ) );
+
+        Session session = invoices.openSession();
+        Invoice persisted = new Invoice( "session" );
+        session.persist( persisted );
+        assertEquals( 27, persisted.id );
+        session.flush();
+        assertEquals( "session", ( (Invoice) invoices.findById( 27L ) ).customer );
+    }
+
+    public void testIdentityKeysAreWrittenBack()
+    {
+        PersistenceFramework tickets = new PersistenceFramework( Ticket.class );
+        tickets.initializeSchema();
+
+        Ticket ticket = new Ticket( "one" );
+        tickets.insert( ticket );
+        assertEquals( Integer.valueOf( 1 ), ticket.id );
+
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            rows.add( new Ticket( "batch" + i ) );
+        }
+        tickets.setBatchSize( 2 );
+        tickets.insertAll( rows );
+        for ( int i = 0; i < rows.size(); i++ )
+        {
+            Ticket inserted = (Ticket) rows.get( i );
+            assertEquals( Integer.valueOf( i + 2 ), inserted.id );
+            assertEquals( inserted.title, ( (Ticket) tickets.findById( inserted.id ) ).title );
+        }
+
+        tickets.setMultiRowInsert( true );
+        rows.clear();
+        rows.add( new Ticket( "multi0" ) );
+        rows.add( new Ticket( "multi1" ) );
+        tickets.insertAll( rows );
+        assertEquals( Integer.valueOf( 7 ), ( (Ticket) rows.get( 0 ) ).id );
+        assertEquals( Integer.valueOf( 8 ), ( (Ticket) rows.get( 1 ) ).id );
+
+        Session session = tickets.openSession();
+        Ticket persisted = new Ticket( "session" );
+        session.persist( persisted );
+        assertNull( persisted.id );
+        session.flush();
+        assertEquals( Integer.valueOf( 9 ), persisted.id );
+        assertSame( persisted, session.findById( 9 ) );
+    }
+
+    public void testUpsertStatements()
+    {
+        SqlTemplates tickets = new SqlTemplates( EntityMetadataRegistry.get( Ticket.class ) );
+        assertEquals( "INSERT INTO ticket (title, version) VALUES (?, ?)", tickets.insert() );
+        assertEquals( "INSERT INTO ticket (id, title, version) VALUES (?, ?, ?) ON CONFLICT (id)"
+                + " DO UPDATE SET title = EXCLUDED.title, version = ticket.version + 1", tickets.upsert() );
+
+        SqlTemplates invoices = new SqlTemplates( EntityMetadataRegistry.get( Invoice.class ) );
+        assertEquals( "INSERT INTO invoice (id, customer) VALUES (?, ?) ON CONFLICT (id)"
+                + " DO UPDATE SET customer = EXCLUDED.customer", invoices.upsert() );
+
+        new PersistenceFramework( Invoice.class ).initializeSchema();
+        assertTrue( new SchemaGenerator().diffSchema( Invoice.class ).isEmpty() );
+    }
+
+    private static long nextSequenceValue( String sequence ) throws Exception
+    {
+        try ( PooledConnection conn = DbConnection.getDbConnection().acquire();
+                Statement stmt = conn.getConnection().createStatement();
+                ResultSet resultSet = stmt.executeQuery( "SELECT nextval('" + sequence + "')" ) )
+        {
+            resultSet.next();
+            return resultSet.getLong( 1 );
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.persistense.framework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.Session;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.FetchType;
+import com.persistence.db.DbConnection;
+import com.persistence.mapping.LazyValue;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.MetricsRegistry;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Leaves {@code @Column(fetch = LAZY)} columns out of reads and loads or streams them on demand.
+ */
+public class LazyColumnTest
+    extends TestCase
+{
+    @Entity
+    public static class Document
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String title;
+
+        @Column( fetch = FetchType.LAZY )
+        private LazyValue<String> body;
+
+        @Column( fetch = FetchType.LAZY )
+        private LazyValue<byte[]> attachment;
+
+        public Document()
+        {
+        }
+
+        Document( int id, String title, String body, byte[] attachment )
+        {
+            this.id = id;
+            this.title = title;
+            this.body = LazyValue.of( body );
+            this.attachment = LazyValue.of( attachment );
+        }
+    }
+
+    @Entity
+    public static class Unwrapped
+    {
+        @Column( primaryKey = true )
+        private int id;
+
+        @Column( fetch = FetchType.LAZY )
+        private String body;
+    }
+
+    private PersistenceFramework documents;
+    private MetricsRegistry registry;
+
+    public LazyColumnTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LazyColumnTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        documents = new PersistenceFramework( Document.class );
+        documents.initializeSchema();
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 1; i <= 3; i++ )
+        {
+            rows.add( new Document( i, "title" + i, "body" + i, new byte[] { (byte) i } ) );
+        }
+        documents.insertAll( rows );
+        registry = new MetricsRegistry();
+        Metrics.addListener( registry );
+    }
+
+    protected void tearDown()
+    {
+        Metrics.removeListener( registry );
+        DbConnection.closeDbConnection();
+    }
+
+    public void testReadsOmitLazyColumnsAndLoadThemInOneBatch()
+    {
+        assertEquals( "SELECT id, title FROM document", documents.query().toSql() );
+
+        List<Object> all = documents.findAll();
+        assertEquals( 3, all.size() );
+        Document first = (Document) all.get( 0 );
+        Document second = (Document) all.get( 1 );
+        assertEquals( "title1", first.title );
+        assertFalse( first.body.isLoaded() );
+
+        assertEquals( "body1", first.body.get() );
+        assertTrue( second.body.isLoaded() );
+        assertEquals( "body2", second.body.get() );
+        assertFalse( "columns load separately", second.attachment.isLoaded() );
+        assertEquals( 1, registry.getOperation( "document", "lazyFetch" ).getCount() );
+        assertEquals( 3, registry.getOperation( "document", "lazyFetch" ).getRowsRead() );
+
+        Document single = (Document) documents.findById( 3 );
+        assertEquals( 3, single.attachment.get()[0] );
+
+        List<Object> streamed = new ArrayList<>();
+        documents.forEach( streamed::add );
+        assertEquals( "body2", ( (Document) streamed.get( 1 ) ).body.get() );
+        assertFalse( ( (Document) streamed.get( 2 ) ).body.isLoaded() );
+
+        documents.fetch( all, "attachment" );
+        assertTrue( ( (Document) all.get( 2 ) ).attachment.isLoaded() );
+    }
+
+    public void testWritesLeaveUnloadedColumnsAlone()
+    {
+        Document document = (Document) documents.findById( 1 );
+        document.title = "renamed";
+        documents.update( document );
+        Document reread = (Document) documents.findById( 1 );
+        assertEquals( "renamed", reread.title );
+        assertEquals( "body1", reread.body.get() );
+
+        documents.updateAll( documents.findAll() );
+        Session session = documents.openSession();
+        Document managed = (Document) session.findById( 2 );
+        managed.title = "session";
+        managed.attachment.set( null );
+        session.flush();
+
+        Document cleared = (Document) documents.findById( 2 );
+        assertEquals( "session", cleared.title );
+        assertEquals( "body2", cleared.body.get() );
+        assertNull( cleared.attachment.get() );
+
+        document = (Document) documents.findById( 3 );
+        document.body = LazyValue.of( "replaced" );
+        documents.update( document );
+        assertEquals( "replaced", ( (Document) documents.findById( 3 ) ).body.get() );
+    }
+
+    public void testLargeValuesStreamInChunks() throws Exception
+    {
+        StringBuilder text = new StringBuilder();
+        byte[] bytes = new byte[600_000];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            text.append( (char) ( 'a' + i % 26 ) );
+            bytes[i] = (byte) i;
+        }
+        documents.insert( new Document( 10, "large", text.toString(), bytes ) );
+
+        Document document = (Document) documents.findById( 10 );
+        StringWriter read = new StringWriter();
+        try ( Reader reader = document.body.openReader() )
+        {
+            char[] buffer = new char[8192];
+            for ( int n; ( n = reader.read( buffer ) ) != -1; )
+            {
+                read.write( buffer, 0, n );
+            }
+        }
+        assertEquals( text.toString(), read.toString() );
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try ( InputStream in = document.attachment.openStream() )
+        {
+            byte[] buffer = new byte[8192];
+            for ( int n; ( n = in.read( buffer ) ) != -1; )
+            {
+                streamed.write( buffer, 0, n );
+            }
+        }
+        assertTrue( Arrays.equals( bytes, streamed.toByteArray() ) );
+        assertFalse( "streaming does not load the value", document.body.isLoaded() );
+        // three 256 KiB chunks per value
+        assertEquals( 6, registry.getOperation( "document", "lazyStream" ).getCount() );
+
+        documents.insert( new Document( 11, "empty", null, null ) );
+        assertNull( ( (Document) documents.findById( 11 ) ).body.openReader() );
+    }
+
+    public void testLazyColumnMustBeHeldInLazyValue()
+    {
+        try
+        {
+            new PersistenceFramework( Unwrapped.class );
+            fail( "lazy String field accepted" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+}
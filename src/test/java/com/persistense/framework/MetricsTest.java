@@ -0,0 +1,103 @@
+package com.persistense.framework;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.DbConnection;
+import com.persistence.metrics.Histogram;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.MetricsRegistry;
+import com.persistence.metrics.OperationSnapshot;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Records CRUD operations against an in-memory database into a {@link MetricsRegistry} and reads
+ * them back directly and over JMX.
+ */
+public class MetricsTest
+    extends TestCase
+{
+    private MetricsRegistry registry;
+
+    public MetricsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MetricsTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( "metrics" );
+        registry = new MetricsRegistry();
+    }
+
+    protected void tearDown()
+    {
+        Metrics.removeListener( registry );
+        DbConnection.closeDbConnection();
+    }
+
+    public void testDisabledUntilAListenerIsRegistered()
+    {
+        assertFalse( Metrics.start( "users", "findById" ).isEnabled() );
+        Metrics.addListener( registry );
+        assertTrue( Metrics.start( "users", "findById" ).isEnabled() );
+    }
+
+    public void testRecordsOperationsPhasesAndRows() throws Exception
+    {
+        Metrics.addListener( registry );
+        PersistenceFramework users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+
+        users.insert( new User( 1, "ana", "ana@example.com" ) );
+        users.insertAll( Arrays.asList( new User( 2, "bia", "bia@example.com" ),
+                new User( 3, "caio", "caio@example.com" ) ) );
+        users.findById( 1 );
+        users.findById( 2 );
+        users.findAll();
+
+        OperationSnapshot findById = registry.getOperation( "users", "findById" );
+        assertEquals( 2, findById.getCount() );
+        assertEquals( 2, findById.getRowsRead() );
+        assertEquals( 0, findById.getErrors() );
+        assertTrue( findById.getMeanExecuteMillis() > 0 );
+        assertTrue( findById.getMeanMillis() >= findById.getMeanExecuteMillis() );
+        assertEquals( 3, registry.getOperation( "users", "findAll" ).getRowsRead() );
+        assertEquals( 2, registry.getOperation( "users", "insertAll" ).getRowsWritten() );
+        assertEquals( 1, registry.getOperation( "users", "insert" ).getRowsWritten() );
+
+        registry.registerMBean();
+        ObjectName name = new ObjectName( MetricsRegistry.OBJECT_NAME );
+        CompositeData[] operations = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute( name, "Operations" );
+        assertEquals( registry.getOperations().size(), operations.length );
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean( name );
+    }
+
+    public void testHistogramPercentilesAreWithinBucketPrecision()
+    {
+        Histogram histogram = new Histogram();
+        for ( int i = 1; i <= 1000; i++ )
+        {
+            histogram.record( i * 1000L );
+        }
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 1000000L, histogram.getMax() );
+        long p50 = histogram.getPercentile( 50 );
+        assertTrue( String.valueOf( p50 ), p50 >= 500000L && p50 <= 500000L * 1.125 );
+        assertEquals( 1000000L, histogram.getPercentile( 100 ) );
+    }
+}
@@ -0,0 +1,106 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.DbConnection;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.MetricsRegistry;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Reads many entities by primary key with {@link PersistenceFramework#findAllById}.
+ */
+public class MultiGetTest
+    extends TestCase
+{
+    private static final int ROWS = 1200;
+
+    private PersistenceFramework users;
+    private MetricsRegistry registry;
+
+    public MultiGetTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MultiGetTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 0; i < ROWS; i++ )
+        {
+            rows.add( new User( i, "user" + i, "user" + i + "@example.com" ) );
+        }
+        users.insertAll( rows );
+        registry = new MetricsRegistry();
+        Metrics.addListener( registry );
+    }
+
+    protected void tearDown()
+    {
+        Metrics.removeListener( registry );
+        DbConnection.closeDbConnection();
+    }
+
+    public void testPageOfIdsIsReadInOneQueryInInputOrder()
+    {
+        List<Object> ids = new ArrayList<>();
+        for ( int i = 0; i < 500; i++ )
+        {
+            ids.add( i * 2 );
+        }
+        Collections.shuffle( ids );
+
+        Map<Object, Object> found = users.findAllById( ids );
+        assertEquals( new ArrayList<>( ids ), new ArrayList<>( found.keySet() ) );
+        for ( Map.Entry<Object, Object> entry : found.entrySet() )
+        {
+            assertEquals( entry.getKey(), ( (User) entry.getValue() ).getId() );
+        }
+        assertEquals( 1, registry.getOperation( "users", "findAllById" ).getCount() );
+        assertEquals( 500, registry.getOperation( "users", "findAllById" ).getRowsRead() );
+        assertNull( registry.getOperation( "users", "findById" ) );
+    }
+
+    public void testChunksDuplicatesAndMissingKeys()
+    {
+        users.setMultiGetChunkSize( 7 );
+        List<Object> ids = new ArrayList<>();
+        for ( int i = ROWS + 10; i >= 0; i -= 3 )
+        {
+            ids.add( i );
+        }
+        ids.add( 3 );
+
+        Map<Object, Object> found = users.findAllById( ids );
+        List<Object> expected = new ArrayList<>();
+        for ( Object id : ids )
+        {
+            if ( (Integer) id < ROWS && !expected.contains( id ) )
+            {
+                expected.add( id );
+            }
+        }
+        assertEquals( expected, new ArrayList<>( found.keySet() ) );
+        assertEquals( "user3", ( (User) found.get( 3 ) ).getName() );
+
+        assertTrue( users.findAllById( Collections.emptyList() ).isEmpty() );
+        assertTrue( users.findAllById( Arrays.asList( -1, -2 ) ).isEmpty() );
+    }
+}
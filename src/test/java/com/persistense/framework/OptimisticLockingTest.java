@@ -0,0 +1,192 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.persistence.OptimisticLockException;
+import com.persistence.OptimisticRetry;
+import com.persistence.PersistenceFramework;
+import com.persistence.Session;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.Version;
+import com.persistence.db.DbConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Detects lost updates on a {@link Version}ed entity and resolves contention with {@link OptimisticRetry}.
+ */
+public class OptimisticLockingTest
+    extends TestCase
+{
+    @Entity
+    public static class Counter
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private int total;
+
+        @Version
+        private long version;
+
+        public Counter()
+        {
+        }
+
+        Counter( int id )
+        {
+            this.id = id;
+        }
+    }
+
+    private PersistenceFramework counters;
+
+    public OptimisticLockingTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( OptimisticLockingTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        counters = new PersistenceFramework( Counter.class );
+        counters.initializeSchema();
+        counters.insert( new Counter( 1 ) );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testStaleUpdateAndDeleteAreRejected()
+    {
+        Counter first = (Counter) counters.findById( 1 );
+        Counter second = (Counter) counters.findById( 1 );
+
+        first.total = 10;
+        counters.update( first );
+        assertEquals( 1, first.version );
+
+        second.total = 20;
+        try
+        {
+            counters.update( second );
+            fail( "stale update succeeded" );
+        }
+        catch ( OptimisticLockException e )
+        {
+            assertSame( second, e.getEntity() );
+        }
+        assertEquals( 0, second.version );
+        try
+        {
+            counters.delete( second );
+            fail( "stale delete succeeded" );
+        }
+        catch ( OptimisticLockException expected )
+        {
+        }
+
+        Counter stored = (Counter) counters.findById( 1 );
+        assertEquals( 10, stored.total );
+        assertEquals( 1, stored.version );
+        counters.delete( stored );
+        assertNull( counters.findById( 1 ) );
+    }
+
+    public void testStaleBatchIsRolledBack()
+    {
+        counters.insert( new Counter( 2 ) );
+        Counter one = (Counter) counters.findById( 1 );
+        Counter two = (Counter) counters.findById( 2 );
+        Counter staleTwo = (Counter) counters.findById( 2 );
+        staleTwo.total = 5;
+        counters.update( staleTwo );
+
+        one.total = 1;
+        two.total = 2;
+        try
+        {
+            counters.updateAll( Arrays.asList( one, two ) );
+            fail( "stale batch succeeded" );
+        }
+        catch ( OptimisticLockException e )
+        {
+            assertSame( two, e.getEntity() );
+        }
+        assertEquals( 0, ( (Counter) counters.findById( 1 ) ).total );
+        assertEquals( 0, one.version );
+    }
+
+    public void testSessionFlushChecksVersions()
+    {
+        Session session = counters.openSession();
+        Counter managed = (Counter) session.findById( 1 );
+        Counter concurrent = (Counter) counters.findById( 1 );
+        concurrent.total = 7;
+        counters.update( concurrent );
+
+        managed.total = 3;
+        try
+        {
+            session.flush();
+            fail( "stale flush succeeded" );
+        }
+        catch ( OptimisticLockException expected )
+        {
+        }
+        assertEquals( 7, ( (Counter) counters.findById( 1 ) ).total );
+
+        session.clear();
+        managed = (Counter) session.findById( 1 );
+        managed.total = 8;
+        session.flush();
+        assertEquals( 2, managed.version );
+        assertEquals( 8, ( (Counter) counters.findById( 1 ) ).total );
+    }
+
+    public void testConcurrentIncrementsWithRetryLoseNoUpdates() throws Exception
+    {
+        int threads = 4;
+        int increments = 25;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        List<Future<?>> futures = new ArrayList<>();
+        for ( int t = 0; t < threads; t++ )
+        {
+            futures.add( executor.submit( () -> {
+                for ( int i = 0; i < increments; i++ )
+                {
+                    OptimisticRetry.run( 1000, () -> {
+                        Counter counter = (Counter) counters.findById( 1 );
+                        counter.total++;
+                        counters.update( counter );
+                    } );
+                }
+            } ) );
+        }
+        for ( Future<?> future : futures )
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        Counter counter = (Counter) counters.findById( 1 );
+        assertEquals( threads * increments, counter.total );
+        assertEquals( threads * increments, counter.version );
+    }
+}
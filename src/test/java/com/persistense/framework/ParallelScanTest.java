@@ -0,0 +1,143 @@
+package com.persistense.framework;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Scans tables with integer and text primary keys in parallel partitions and checks that every row
+ * is read exactly once.
+ */
+public class ParallelScanTest
+    extends TestCase
+{
+    private static final int ROWS = 1000;
+
+    @Entity
+    public static class Tag
+    {
+        @Column( nullable = false, primaryKey = true )
+        private String code;
+
+        public Tag()
+        {
+        }
+
+        Tag( String code )
+        {
+            this.code = code;
+        }
+    }
+
+    @Entity
+    public static class Note
+    {
+        @Column
+        private String text;
+
+        public Note()
+        {
+        }
+    }
+
+    public ParallelScanTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ParallelScanTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testRangePartitionsCoverEveryRowOnce()
+    {
+        PersistenceFramework users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        List<Object> rows = new ArrayList<>();
+        // leave gaps so that ranges are uneven
+        for ( int i = 0; i < ROWS; i++ )
+        {
+            rows.add( new User( i * 7 + 3, "user" + i, "user" + i + "@example.com" ) );
+        }
+        users.insertAll( rows );
+
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        long scanned = users.parallelScan( 4, entity -> {
+            assertTrue( seen.add( ( (User) entity ).getId() ) );
+            threads.add( Thread.currentThread().toString() );
+        } );
+        assertEquals( ROWS, scanned );
+        assertEquals( ROWS, seen.size() );
+        assertTrue( threads.size() > 1 );
+
+        try ( Stream<Object> stream = users.parallelStream( 3 ) )
+        {
+            assertTrue( stream.isParallel() );
+            Set<Integer> ids = stream.map( entity -> ( (User) entity ).getId() ).collect( Collectors.toSet() );
+            assertEquals( seen, ids );
+        }
+    }
+
+    public void testHashPartitionsCoverEveryRowOnce() throws Exception
+    {
+        try ( PooledConnection conn = DbConnection.getDbConnection().acquire();
+                Statement stmt = conn.getConnection().createStatement() )
+        {
+            // stands in for PostgreSQL's hashtext
+            stmt.execute( "CREATE ALIAS hashtext AS 'int hashtext(String s) { return s.hashCode(); }'" );
+        }
+        PersistenceFramework tags = new PersistenceFramework( Tag.class );
+        tags.initializeSchema();
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 0; i < ROWS; i++ )
+        {
+            rows.add( new Tag( "tag-" + i ) );
+        }
+        tags.insertAll( rows );
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        assertEquals( ROWS, tags.parallelScan( 5, entity -> assertTrue( seen.add( ( (Tag) entity ).code ) ) ) );
+        assertEquals( ROWS, seen.size() );
+    }
+
+    public void testEmptyTable()
+    {
+        PersistenceFramework users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        assertEquals( 0, users.parallelScan( 4, entity -> fail() ) );
+    }
+
+    public void testTableWithoutPrimaryKeyIsNotScanned()
+    {
+        PersistenceFramework notes = new PersistenceFramework( Note.class );
+        notes.initializeSchema();
+        assertEquals( -1, notes.parallelScan( 4, entity -> fail() ) );
+    }
+}
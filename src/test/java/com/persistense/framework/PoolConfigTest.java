@@ -0,0 +1,49 @@
+package com.persistense.framework;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import com.persistence.db.PoolConfig;
+import com.persistence.db.ReplicaSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Reads the bundled application.properties, which {@code DbConnection} loads at startup.
+ */
+public class PoolConfigTest
+    extends TestCase
+{
+    public PoolConfigTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( PoolConfigTest.class );
+    }
+
+    public void testBundledPropertiesParse() throws Exception
+    {
+        Properties properties = new Properties();
+        try ( InputStream input = new FileInputStream( "src/main/resources/application.properties" ) )
+        {
+            properties.load( input );
+        }
+
+        PoolConfig config = PoolConfig.fromProperties( properties );
+        assertEquals( 1, config.getMinSize() );
+        assertEquals( 10, config.getMaxSize() );
+        assertEquals( 30000, config.getAcquireTimeoutMillis() );
+        assertEquals( 600000, config.getIdleTimeoutMillis() );
+        assertEquals( 30000, config.getEvictionIntervalMillis() );
+        assertEquals( 500, config.getValidationIntervalMillis() );
+        assertEquals( 2, config.getValidationTimeoutSeconds() );
+        assertEquals( 64, config.getStatementCacheSize() );
+        assertNull( "replicas are commented out", ReplicaSet.fromProperties( properties ) );
+    }
+}
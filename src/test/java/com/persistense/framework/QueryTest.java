@@ -0,0 +1,238 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.db.DbConnection;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.query.Direction;
+import com.persistence.query.Operator;
+import com.persistence.query.Query;
+import com.persistence.query.QueryPlanCache;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Filtering, projection, keyset paging and plan caching of {@link Query}.
+ */
+public class QueryTest
+    extends TestCase
+{
+    @Entity
+    public static class Player
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String name;
+
+        @Column
+        private int score;
+
+        @Column
+        private String team;
+
+        public Player()
+        {
+        }
+
+        Player( int id, String name, int score, String team )
+        {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+            this.team = team;
+        }
+    }
+
+    private PersistenceFramework players;
+
+    public QueryTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( QueryTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        players = new PersistenceFramework( Player.class );
+        players.initializeSchema();
+        // scores repeat, so that paging must break ties on id
+        List<Object> rows = new ArrayList<>();
+        for ( int i = 1; i <= 20; i++ )
+        {
+            rows.add( new Player( i, "player" + i, i % 4 * 10, i % 5 == 0 ? null : "team" + i % 2 ) );
+        }
+        players.insertAll( rows );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testOperatorsRenderAndBind()
+    {
+        assertQuery( "SELECT id, name, score, team FROM player WHERE score = ?",
+                Arrays.asList( 4, 8, 12, 16, 20 ), players.query().where( "score", Operator.EQ, 0 ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE score <> ? AND score <> ?",
+                Arrays.asList( 1, 2, 5, 6, 9, 10, 13, 14, 17, 18 ),
+                players.query().where( "score", Operator.NE, 0 ).where( "score", Operator.NE, 30 ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE score < ? AND id <= ?",
+                Arrays.asList( 1, 4, 5, 8 ),
+                players.query().where( "score", Operator.LT, 20 ).where( "id", Operator.LE, 8 ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE score > ? AND id >= ?",
+                Arrays.asList( 15, 19 ),
+                players.query().where( "score", Operator.GT, 20 ).where( "id", Operator.GE, 14 ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE name LIKE ?",
+                Arrays.asList( 1, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 ),
+                players.query().where( "name", Operator.LIKE, "player1%" ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE id IN (?, ?, ?)",
+                Arrays.asList( 3, 7, 9 ), players.query().whereIn( "id", Arrays.asList( 9, 3, 7 ) ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE 1 = 0",
+                Collections.<Integer> emptyList(), players.query().whereIn( "id", Collections.emptyList() ) );
+        assertQuery( "SELECT id, name, score, team FROM player WHERE team IS NULL",
+                Arrays.asList( 5, 10, 15, 20 ), players.query().whereNull( "team" ) );
+        assertEquals( 16, players.query().whereNotNull( "team" ).list().size() );
+
+        try
+        {
+            players.query().where( "score", Operator.EQ, "ten" );
+            fail( "String accepted for an int column" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+        try
+        {
+            players.query().where( "score", Operator.LIKE, 1 );
+            fail( "LIKE accepted on an int column" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    public void testProjectionLeavesOtherFieldsUnset()
+    {
+        Query query = players.query().select( "name" ).where( "id", Operator.EQ, 7 );
+        assertEquals( "SELECT name FROM player WHERE id = ?", query.toSql() );
+        Player player = (Player) query.first();
+        assertEquals( "player7", player.name );
+        assertEquals( 0, player.id );
+        assertEquals( 0, player.score );
+        assertNull( player.team );
+    }
+
+    public void testKeysetPagingVisitsEveryRowOnceDespiteTies()
+    {
+        List<Integer> expected = new ArrayList<>();
+        for ( int score = 30; score >= 0; score -= 10 )
+        {
+            for ( int id = 1; id <= 20; id++ )
+            {
+                if ( id % 4 * 10 == score )
+                {
+                    expected.add( id );
+                }
+            }
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        Player last = null;
+        while ( true )
+        {
+            Query page = players.query().orderBy( "score", Direction.DESC ).orderBy( "id", Direction.ASC ).limit( 3 );
+            if ( last != null )
+            {
+                page.after( last.score, last.id );
+            }
+            List<Object> rows = page.list();
+            if ( rows.isEmpty() )
+            {
+                break;
+            }
+            for ( Object row : rows )
+            {
+                seen.add( ( (Player) row ).id );
+            }
+            last = (Player) rows.get( rows.size() - 1 );
+        }
+        assertEquals( expected, seen );
+
+        Query seek = players.query().orderBy( "score", Direction.DESC ).orderBy( "id", Direction.ASC ).after( 20, 6 );
+        assertEquals( "SELECT id, name, score, team FROM player WHERE ((score < ?) OR (score = ? AND id > ?))"
+                + " ORDER BY score DESC, id ASC", seek.toSql() );
+        assertEquals( Arrays.asList( 10, 14, 18 ), ids( seek.limit( 3 ).list() ) );
+
+        try
+        {
+            players.query().orderBy( "id", Direction.ASC ).after( 1, 2 );
+            fail( "more seek values than orderings accepted" );
+        }
+        catch ( IllegalArgumentException expected2 )
+        {
+        }
+    }
+
+    public void testLimitAndOffset()
+    {
+        Query query = players.query().orderBy( "id", Direction.DESC ).limit( 2 ).offset( 3 );
+        assertEquals( "SELECT id, name, score, team FROM player ORDER BY id DESC LIMIT ? OFFSET ?", query.toSql() );
+        assertEquals( Arrays.asList( 17, 16 ), ids( query.list() ) );
+    }
+
+    public void testPlansAreSharedByShapeAndBounded()
+    {
+        QueryPlanCache cache = new QueryPlanCache();
+        Query first = new Query( EntityMetadataRegistry.get( Player.class ), DbConnection.getDbConnection(), cache );
+        Query second = new Query( EntityMetadataRegistry.get( Player.class ), DbConnection.getDbConnection(), cache );
+        assertEquals( first.where( "score", Operator.EQ, 10 ).toSql(),
+                second.where( "score", Operator.EQ, 30 ).toSql() );
+        assertEquals( "values do not change the shape", 1, cache.size() );
+        assertEquals( 5, first.list().size() );
+        assertEquals( 5, second.list().size() );
+
+        new Query( EntityMetadataRegistry.get( Player.class ), DbConnection.getDbConnection(), cache )
+                .where( "score", Operator.GT, 10 ).toSql();
+        assertEquals( 2, cache.size() );
+
+        for ( int i = 1; i <= 600; i++ )
+        {
+            new Query( EntityMetadataRegistry.get( Player.class ), DbConnection.getDbConnection(), cache )
+                    .whereIn( "id", Collections.nCopies( i, 1 ) ).toSql();
+            assertTrue( cache.size() <= 512 );
+        }
+    }
+
+    private void assertQuery( String sql, List<Integer> ids, Query query )
+    {
+        assertEquals( sql, query.toSql() );
+        List<Integer> found = ids( query.list() );
+        Collections.sort( found );
+        assertEquals( ids, found );
+    }
+
+    private static List<Integer> ids( List<Object> rows )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( Object row : rows )
+        {
+            ids.add( ( (Player) row ).id );
+        }
+        return ids;
+    }
+}
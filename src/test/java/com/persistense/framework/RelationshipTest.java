@@ -0,0 +1,178 @@
+package com.persistense.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.SchemaGenerator;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.FetchType;
+import com.persistence.annotation.ManyToOne;
+import com.persistence.annotation.OneToMany;
+import com.persistence.db.DbConnection;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.MetricsRegistry;
+import com.persistence.query.Operator;
+import com.persistence.relation.LazyList;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Loads {@code @ManyToOne} and {@code @OneToMany} relationships against an in-memory database and
+ * counts the batched queries they cost.
+ */
+public class RelationshipTest
+    extends TestCase
+{
+    @Entity
+    public static class Author
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String name;
+
+        @OneToMany( mappedBy = "author" )
+        private List<Book> books;
+    }
+
+    @Entity
+    public static class Book
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String title;
+
+        @ManyToOne( nullable = false )
+        private Author author;
+    }
+
+    @Entity
+    public static class Review
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @ManyToOne( fetch = FetchType.EAGER )
+        private Book book;
+    }
+
+    private MetricsRegistry registry;
+    private PersistenceFramework authors;
+    private PersistenceFramework books;
+
+    public RelationshipTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RelationshipTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        new SchemaGenerator().generateSchema( Review.class, Book.class, Author.class );
+
+        authors = new PersistenceFramework( Author.class );
+        books = new PersistenceFramework( Book.class );
+        PersistenceFramework reviews = new PersistenceFramework( Review.class );
+        List<Object> newBooks = new ArrayList<>();
+        for ( int a = 1; a <= 3; a++ )
+        {
+            Author author = new Author();
+            author.id = a;
+            author.name = "author " + a;
+            authors.insert( author );
+            for ( int b = 1; b <= 2; b++ )
+            {
+                Book book = new Book();
+                book.id = a * 10 + b;
+                book.title = "book " + book.id;
+                book.author = author;
+                newBooks.add( book );
+            }
+        }
+        books.insertAll( newBooks );
+        Review review = new Review();
+        review.id = 1;
+        review.book = (Book) newBooks.get( 0 );
+        reviews.insert( review );
+
+        registry = new MetricsRegistry();
+        Metrics.addListener( registry );
+    }
+
+    protected void tearDown()
+    {
+        Metrics.removeListener( registry );
+        DbConnection.closeDbConnection();
+    }
+
+    public void testLazyCollectionsLoadInOneQueryPerResult()
+    {
+        List<Object> all = authors.findAll();
+        assertEquals( 3, all.size() );
+        Author first = (Author) all.get( 0 );
+        assertTrue( first.books instanceof LazyList );
+        assertFalse( ( (LazyList<Book>) first.books ).isLoaded() );
+        assertNull( registry.getOperation( "book", "batchFetch" ) );
+
+        int total = 0;
+        for ( Object entity : all )
+        {
+            Author author = (Author) entity;
+            assertEquals( 2, author.books.size() );
+            for ( Book book : author.books )
+            {
+                assertSame( author, book.author );
+            }
+            total += author.books.size();
+        }
+        assertEquals( 6, total );
+        assertEquals( 1, registry.getOperation( "book", "batchFetch" ).getCount() );
+    }
+
+    public void testLazyReferencesHoldTheKeyUntilFetched()
+    {
+        List<Object> all = books.findAll();
+        Book book = (Book) all.get( 0 );
+        assertEquals( book.id / 10, book.author.id );
+        assertNull( book.author.name );
+
+        books.fetch( all, "author" );
+        assertEquals( "author " + book.id / 10, book.author.name );
+        assertSame( ( (Book) all.get( 0 ) ).author, ( (Book) all.get( 1 ) ).author );
+        assertEquals( 1, registry.getOperation( "author", "batchFetch" ).getCount() );
+        assertEquals( 3, registry.getOperation( "author", "batchFetch" ).getRowsRead() );
+    }
+
+    public void testEagerReferencesAreLoadedWithTheEntity()
+    {
+        Review review = (Review) new PersistenceFramework( Review.class ).findById( 1 );
+        assertEquals( "book 11", review.book.title );
+        assertEquals( 1, registry.getOperation( "book", "batchFetch" ).getCount() );
+    }
+
+    public void testFetchJoinLoadsReferencesInTheSameStatement()
+    {
+        String sql = books.query().fetchJoin( "author" ).where( "author", Operator.EQ, 2 )
+                .toSql();
+        assertTrue( sql, sql.contains( "LEFT JOIN author t1 ON t0.author_id = t1.id" ) );
+
+        List<Object> found = books.query().fetchJoin( "author" ).where( "author", Operator.EQ, 2 )
+                .list();
+        assertEquals( 2, found.size() );
+        assertEquals( "author 2", ( (Book) found.get( 0 ) ).author.name );
+        assertSame( ( (Book) found.get( 0 ) ).author, ( (Book) found.get( 1 ) ).author );
+        assertNull( registry.getOperation( "author", "batchFetch" ) );
+    }
+}
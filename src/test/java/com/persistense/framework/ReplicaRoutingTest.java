@@ -0,0 +1,195 @@
+package com.persistense.framework;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.Session;
+import com.persistence.cache.EntityCache;
+import com.persistence.cache.EvictionPolicy;
+import com.persistence.db.DbConnection;
+import com.persistence.db.LoadBalancing;
+import com.persistence.db.PooledConnection;
+import com.persistence.db.ReplicaSet;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Routes reads to replicas and writes to the primary, using separate in-memory databases as the
+ * primary and its replicas. Each database holds a different row 1, which shows where a read went.
+ */
+public class ReplicaRoutingTest
+    extends TestCase
+{
+    private static final String CREATE_USERS = "CREATE TABLE IF NOT EXISTS users (id INTEGER NOT NULL PRIMARY KEY,"
+            + " name VARCHAR(255) NOT NULL UNIQUE, email VARCHAR(255) NOT NULL UNIQUE)";
+
+    private Properties properties;
+
+    public ReplicaRoutingTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ReplicaRoutingTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        properties = H2.properties( getName() + "_primary" );
+        properties.setProperty( "db.replica.1.url", url( "replica1" ) );
+        properties.setProperty( "db.replica.2.url", url( "replica2" ) );
+        for ( String node : new String[] { "primary", "replica1", "replica2" } )
+        {
+            execute( url( node ), CREATE_USERS,
+                    "INSERT INTO users VALUES (1, '" + node + "', '" + node + "@example.com')" );
+        }
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testReadsRoundRobinOverReplicasAndWritesGoToPrimary() throws Exception
+    {
+        DbConnection.initialize( properties );
+        PersistenceFramework users = new PersistenceFramework( User.class );
+
+        Set<String> nodes = new HashSet<>();
+        for ( int i = 0; i < 4; i++ )
+        {
+            nodes.add( ( (User) users.findById( 1 ) ).getName() );
+        }
+        assertEquals( 2, nodes.size() );
+        assertTrue( nodes.contains( "replica1" ) );
+        assertTrue( nodes.contains( "replica2" ) );
+
+        users.insert( new User( 2, "written", "written@example.com" ) );
+        assertNull( users.findById( 2 ) );
+        DbConnection dbConnection = DbConnection.getDbConnection();
+        assertEquals( "written", ( (User) dbConnection.withPrimary( () -> users.findById( 2 ) ) ).getName() );
+
+        Session session = users.openSession();
+        assertEquals( "primary", ( (User) session.findById( 1 ) ).getName() );
+    }
+
+    public void testOnlyPrimaryReadsPopulateTheCache() throws Exception
+    {
+        DbConnection.initialize( properties );
+        PersistenceFramework users = new PersistenceFramework( User.class );
+        EntityCache cache = new EntityCache( 100, EvictionPolicy.LRU, 0 );
+        users.setSecondLevelCache( cache );
+
+        users.findById( 1 );
+        users.findAllById( Arrays.asList( 1 ) );
+        assertEquals( "replica rows may be stale", 0, cache.size() );
+
+        DbConnection dbConnection = DbConnection.getDbConnection();
+        dbConnection.withPrimary( () -> users.findById( 1 ) );
+        assertEquals( 1, cache.size() );
+        assertEquals( "primary", ( (User) users.findById( 1 ) ).getName() );
+    }
+
+    public void testLeastBusyAvoidsReplicaWithConnectionsOnLoan() throws Exception
+    {
+        properties.setProperty( "db.replica.balancing", "least_busy" );
+        DbConnection.initialize( properties );
+        PersistenceFramework users = new PersistenceFramework( User.class );
+        ReplicaSet replicas = DbConnection.getDbConnection().getReplicas();
+        assertEquals( LoadBalancing.LEAST_BUSY, replicas.getBalancing() );
+
+        try ( PooledConnection held = replicas.borrow() )
+        {
+            String busy = node( held );
+            for ( int i = 0; i < 4; i++ )
+            {
+                assertFalse( busy.equals( ( (User) users.findById( 1 ) ).getName() ) );
+            }
+        }
+    }
+
+    public void testUnreachableReplicasFailOver() throws Exception
+    {
+        properties.setProperty( "db.replica.2.url", "jdbc:unreachable:replica2" );
+        DbConnection.initialize( properties );
+        PersistenceFramework users = new PersistenceFramework( User.class );
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            assertEquals( "replica1", ( (User) users.findById( 1 ) ).getName() );
+        }
+        ReplicaSet replicas = DbConnection.getDbConnection().getReplicas();
+        assertEquals( 1, replicas.getHealthyCount() );
+
+        DbConnection.closeDbConnection();
+        properties.setProperty( "db.replica.1.url", "jdbc:unreachable:replica1" );
+        DbConnection.initialize( properties );
+        users = new PersistenceFramework( User.class );
+        assertEquals( "primary", ( (User) users.findById( 1 ) ).getName() );
+        assertEquals( 0, DbConnection.getDbConnection().getReplicas().getHealthyCount() );
+    }
+
+    public void testBadReplicaSettingsLeaveNoPrimaryConnectionsOpen() throws Exception
+    {
+        properties.setProperty( "db.replica.balancing", "fastest" );
+        try
+        {
+            DbConnection.initialize( properties );
+            fail( "unknown balancing strategy accepted" );
+        }
+        catch ( RuntimeException expected )
+        {
+        }
+        assertFalse( DbConnection.isInitialized() );
+        try ( Connection connection = DriverManager.getConnection( url( "primary" ), "sa", "" );
+                Statement stmt = connection.createStatement();
+                ResultSet resultSet = stmt.executeQuery( "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS" ) )
+        {
+            resultSet.next();
+            assertEquals( "only this session", 1, resultSet.getInt( 1 ) );
+        }
+
+        properties.setProperty( "db.replica.balancing", "least_busy" );
+        DbConnection.initialize( properties );
+        assertEquals( LoadBalancing.LEAST_BUSY, DbConnection.getDbConnection().getReplicas().getBalancing() );
+    }
+
+    private String url( String node )
+    {
+        return H2.url( getName() + "_" + node );
+    }
+
+    private static String node( PooledConnection conn ) throws Exception
+    {
+        try ( Statement stmt = conn.getConnection().createStatement();
+                ResultSet resultSet = stmt.executeQuery( "SELECT name FROM users WHERE id = 1" ) )
+        {
+            resultSet.next();
+            return resultSet.getString( 1 );
+        }
+    }
+
+    private static void execute( String url, String... statements ) throws Exception
+    {
+        try ( Connection connection = DriverManager.getConnection( url, "sa", "" );
+                Statement stmt = connection.createStatement() )
+        {
+            for ( String sql : statements )
+            {
+                stmt.execute( sql );
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.persistense.framework;
+
+import java.util.List;
+
+import com.persistence.SchemaGenerator;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.annotation.Index;
+import com.persistence.db.DbConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Declares indexes and migrates an existing table to a newer version of its entity.
+ */
+public class SchemaDiffTest
+    extends TestCase
+{
+    @Entity( name = "account" )
+    public static class AccountV1
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Column
+        private String email;
+    }
+
+    @Entity( name = "account" )
+    @Index( columns = { "status", "email" } )
+    public static class AccountV2
+    {
+        @Column( nullable = false, primaryKey = true )
+        private int id;
+
+        @Index( unique = true )
+        @Column
+        private String email;
+
+        @Column( nullable = false )
+        private String status;
+    }
+
+    @Entity
+    @Index( name = "active_session_idx", columns = "owner", where = "closed = false" )
+    public static class Session
+    {
+        @Column( nullable = false, primaryKey = true )
+        private long id;
+
+        @Column
+        private int owner;
+
+        @Column
+        private boolean closed;
+    }
+
+    private SchemaGenerator generator;
+
+    public SchemaDiffTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( SchemaDiffTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        generator = new SchemaGenerator();
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testDiffAddsOnlyMissingColumnsAndIndexes()
+    {
+        generator.generateSchema( AccountV1.class );
+
+        List<String> diff = generator.diffSchema( AccountV2.class );
+        assertEquals( diff.toString(), 3, diff.size() );
+        assertEquals( "ALTER TABLE account ADD COLUMN status VARCHAR(255)", diff.get( 0 ) );
+        assertEquals( "CREATE INDEX IF NOT EXISTS account_status_email_idx ON account (status, email)",
+                diff.get( 1 ) );
+        assertEquals( "CREATE UNIQUE INDEX IF NOT EXISTS account_email_idx ON account (email)", diff.get( 2 ) );
+
+        assertEquals( diff, generator.migrateSchema( AccountV2.class ) );
+        assertTrue( generator.diffSchema( AccountV2.class ).isEmpty() );
+    }
+
+    public void testGeneratedSchemaIncludesIndexes()
+    {
+        generator.generateSchema( AccountV2.class );
+        assertTrue( generator.diffSchema( AccountV2.class ).isEmpty() );
+    }
+
+    public void testMissingTableAndPartialConcurrentIndex()
+    {
+        generator.setConcurrentIndexes( true );
+        List<String> diff = generator.diffSchema( Session.class );
+        assertEquals( 2, diff.size() );
+        assertTrue( diff.get( 0 ), diff.get( 0 ).startsWith( "CREATE TABLE IF NOT EXISTS session (" ) );
+        assertEquals( "CREATE INDEX CONCURRENTLY IF NOT EXISTS active_session_idx ON session (owner)"
+                + " WHERE closed = false", diff.get( 1 ) );
+    }
+}
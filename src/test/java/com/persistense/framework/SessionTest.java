@@ -0,0 +1,152 @@
+package com.persistense.framework;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.Session;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.metrics.Metrics;
+import com.persistence.metrics.MetricsRegistry;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Snapshot-based dirty checking and transactional flushes of a {@link Session}. H2's query statistics
+ * show which UPDATE statements a flush sent and how often each ran.
+ */
+public class SessionTest
+    extends TestCase
+{
+    private PersistenceFramework users;
+    private MetricsRegistry registry;
+
+    public SessionTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( SessionTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        H2.initialize( getName() );
+        users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        for ( int i = 1; i <= 4; i++ )
+        {
+            users.insert( new User( i, "user" + i, "user" + i + "@example.com" ) );
+        }
+        execute( "SET QUERY_STATISTICS TRUE" );
+        registry = new MetricsRegistry();
+        Metrics.addListener( registry );
+    }
+
+    protected void tearDown()
+    {
+        Metrics.removeListener( registry );
+        DbConnection.closeDbConnection();
+    }
+
+    public void testUnchangedEntitiesAreNotWritten() throws Exception
+    {
+        Session session = users.openSession();
+        session.findAll();
+        User user = (User) session.findById( 2 );
+        user.setName( "changed" );
+        user.setName( "user2" );
+        session.flush();
+
+        assertNull( "no flush ran", registry.getOperation( "users", "flush" ) );
+        assertTrue( updates().isEmpty() );
+    }
+
+    public void testChangedEntitiesAreBatchedByChangedColumns() throws Exception
+    {
+        Session session = users.openSession();
+        for ( int i = 1; i <= 3; i++ )
+        {
+            ( (User) session.findById( i ) ).setName( "renamed" + i );
+        }
+        User user = (User) session.findById( 4 );
+        user.setEmail( "moved@example.com" );
+        session.flush();
+
+        Map<String, Long> updates = updates();
+        assertEquals( updates.toString(), 2, updates.size() );
+        assertEquals( Long.valueOf( 3 ), updates.get( "UPDATE users SET name = ? WHERE id = ?" ) );
+        assertEquals( Long.valueOf( 1 ), updates.get( "UPDATE users SET email = ? WHERE id = ?" ) );
+        assertEquals( 1, registry.getOperation( "users", "flush" ).getCount() );
+        assertEquals( 4, registry.getOperation( "users", "flush" ).getRowsWritten() );
+        assertEquals( "renamed3", ( (User) users.findById( 3 ) ).getName() );
+
+        // the snapshots now match the flushed state
+        session.flush();
+        assertEquals( 1, registry.getOperation( "users", "flush" ).getCount() );
+    }
+
+    public void testFailedFlushRollsBackAndKeepsPendingWork()
+    {
+        Session session = users.openSession();
+        session.persist( new User( 5, "user5", "user5@example.com" ) );
+        User renamed = (User) session.findById( 1 );
+        renamed.setName( "user2" );
+        session.remove( session.findById( 3 ) );
+        try
+        {
+            session.flush();
+            fail( "duplicate name was flushed" );
+        }
+        catch ( RuntimeException expected )
+        {
+        }
+        assertNull( "insert rolled back", users.findById( 5 ) );
+        assertEquals( "user1", ( (User) users.findById( 1 ) ).getName() );
+        assertNotNull( users.findById( 3 ) );
+
+        renamed.setName( "renamed" );
+        session.flush();
+        assertEquals( "user5", ( (User) users.findById( 5 ) ).getName() );
+        assertEquals( "renamed", ( (User) users.findById( 1 ) ).getName() );
+        assertNull( users.findById( 3 ) );
+        assertEquals( 1, registry.getOperation( "users", "flush" ).getErrors() );
+    }
+
+    /**
+     * @return the UPDATE statements executed since statistics were enabled, with their execution counts
+     */
+    private Map<String, Long> updates() throws SQLException
+    {
+        Map<String, Long> updates = new HashMap<>();
+        try ( PooledConnection conn = DbConnection.getDbConnection().acquire();
+                Statement stmt = conn.getConnection().createStatement();
+                ResultSet resultSet = stmt.executeQuery( "SELECT SQL_STATEMENT, EXECUTION_COUNT"
+                        + " FROM INFORMATION_SCHEMA.QUERY_STATISTICS WHERE SQL_STATEMENT LIKE 'UPDATE %'" ) )
+        {
+            while ( resultSet.next() )
+            {
+                updates.put( resultSet.getString( 1 ), resultSet.getLong( 2 ) );
+            }
+        }
+        return updates;
+    }
+
+    private void execute( String sql ) throws SQLException
+    {
+        try ( PooledConnection conn = DbConnection.getDbConnection().acquire();
+                Statement stmt = conn.getConnection().createStatement() )
+        {
+            stmt.execute( sql );
+        }
+    }
+}
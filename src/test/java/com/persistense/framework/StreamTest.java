@@ -0,0 +1,137 @@
+package com.persistense.framework;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.db.ConnectionPool;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.model.User;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Cursor-backed {@code stream()} and {@code forEach()}, and the release of their connection.
+ */
+public class StreamTest
+    extends TestCase
+{
+    private PersistenceFramework users;
+
+    private ConnectionPool pool;
+
+    public StreamTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( StreamTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        users = new PersistenceFramework( User.class );
+        users.initializeSchema();
+        users.setFetchSize( 3 );
+        List<User> rows = new ArrayList<>();
+        for ( int id = 1; id <= 10; id++ )
+        {
+            rows.add( new User( id, "user" + id, "user" + id + "@example.com" ) );
+        }
+        users.insertAll( rows );
+        pool = DbConnection.getDbConnection().getPool();
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    /**
+     * Asserts that no connection is on loan and that the stream's transaction was ended.
+     */
+    private void assertReleased()
+        throws SQLException
+    {
+        assertEquals( 0, pool.getActiveConnections() );
+        try ( PooledConnection conn = pool.borrow() )
+        {
+            assertTrue( conn.getConnection().getAutoCommit() );
+        }
+    }
+
+    public void testExhaustingTheStreamReleasesTheConnection()
+        throws SQLException
+    {
+        Stream<Object> rows = users.stream();
+        assertEquals( 1, pool.getActiveConnections() );
+        Iterator<Object> iterator = rows.iterator();
+        int count = 0;
+        while ( iterator.hasNext() )
+        {
+            iterator.next();
+            count++;
+        }
+        assertEquals( 10, count );
+        assertReleased();
+        rows.close();
+        assertReleased();
+    }
+
+    public void testClosingAPartlyReadStreamReleasesTheConnection()
+        throws SQLException
+    {
+        List<Object> firstRows;
+        try ( Stream<Object> rows = users.stream() )
+        {
+            firstRows = rows.limit( 4 ).collect( Collectors.toList() );
+            assertEquals( 1, pool.getActiveConnections() );
+        }
+        assertEquals( 4, firstRows.size() );
+        assertReleased();
+    }
+
+    public void testAFailingActionReleasesTheConnection()
+        throws SQLException
+    {
+        final List<Object> seen = new ArrayList<>();
+        try
+        {
+            users.forEach( user -> {
+                if ( seen.size() == 5 )
+                {
+                    throw new IllegalStateException( "stop" );
+                }
+                seen.add( user );
+            } );
+            fail( "the action's exception was swallowed" );
+        }
+        catch ( IllegalStateException expected )
+        {
+        }
+        assertEquals( 5, seen.size() );
+        assertReleased();
+    }
+
+    public void testForEachVisitsEveryRowOnce()
+        throws SQLException
+    {
+        final List<Integer> ids = new ArrayList<>();
+        users.forEach( user -> ids.add( ( (User) user ).getId() ) );
+        Collections.sort( ids );
+        assertEquals( Arrays.asList( 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 ), ids );
+        assertReleased();
+    }
+}
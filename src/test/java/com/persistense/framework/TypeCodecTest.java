@@ -0,0 +1,197 @@
+package com.persistense.framework;
+
+import java.net.URI;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.persistence.PersistenceFramework;
+import com.persistence.SchemaGenerator;
+import com.persistence.annotation.Column;
+import com.persistence.annotation.Entity;
+import com.persistence.db.DbConnection;
+import com.persistence.db.PooledConnection;
+import com.persistence.metadata.EntityMetadataRegistry;
+import com.persistence.query.Operator;
+import com.persistence.type.JsonbCodec;
+import com.persistence.type.TypeCodec;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Maps UUIDs, enums, {@code java.time} values and JSON to native column types through type codecs.
+ */
+public class TypeCodecTest
+    extends TestCase
+{
+    public enum Status
+    {
+        ACTIVE, SUSPENDED, CLOSED
+    }
+
+    @Entity
+    public static class Account
+    {
+        @Column( nullable = false, primaryKey = true )
+        private UUID id;
+
+        @Column
+        private Status status;
+
+        @Column
+        private Instant createdAt;
+
+        @Column
+        private LocalDateTime lastLogin;
+
+        @Column
+        private LocalDate birthday;
+
+        @Column( codec = UriCodec.class )
+        private URI homepage;
+
+        public Account()
+        {
+        }
+
+        Account( UUID id, Status status )
+        {
+            this.id = id;
+            this.status = status;
+        }
+    }
+
+    @Entity
+    public static class Event
+    {
+        @Column( primaryKey = true )
+        private long id;
+
+        @Column( codec = JsonbCodec.class )
+        private String payload;
+    }
+
+    /** Stores a URI as text, to exercise a codec named on the column. */
+    public static class UriCodec
+        implements TypeCodec<URI>
+    {
+        public String sqlType()
+        {
+            return "VARCHAR(2048)";
+        }
+
+        public void bind( PreparedStatement pStmt, int index, URI value ) throws SQLException
+        {
+            pStmt.setString( index, value == null ? null : value.toString() );
+        }
+
+        public URI read( ResultSet resultSet, int index ) throws SQLException
+        {
+            String value = resultSet.getString( index );
+            return value == null ? null : URI.create( value );
+        }
+
+        public Object encode( URI value )
+        {
+            return value.toString();
+        }
+
+        public URI decode( Object value )
+        {
+            return URI.create( value.toString() );
+        }
+    }
+
+    private PersistenceFramework accounts;
+
+    public TypeCodecTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TypeCodecTest.class );
+    }
+
+    protected void setUp()
+    {
+        H2.initialize( getName() );
+        accounts = new PersistenceFramework( Account.class );
+    }
+
+    protected void tearDown()
+    {
+        DbConnection.closeDbConnection();
+    }
+
+    public void testColumnsUseNativeTypes()
+    {
+        List<String> ddl = new SchemaGenerator().diffSchema( Account.class );
+        assertEquals( 1, ddl.size() );
+        String table = ddl.get( 0 );
+        assertTrue( table, table.contains( "id UUID NOT NULL PRIMARY KEY" ) );
+        assertTrue( table, table.contains( "status SMALLINT" ) );
+        assertTrue( table, table.contains( "createdat TIMESTAMP WITH TIME ZONE" ) );
+        assertTrue( table, table.contains( "lastlogin TIMESTAMP," ) );
+        assertTrue( table, table.contains( "birthday DATE" ) );
+        assertTrue( table, table.contains( "homepage VARCHAR(2048)" ) );
+        assertEquals( "JSONB",
+                SchemaGenerator.getSqlType( EntityMetadataRegistry.get( Event.class ).getColumn( "payload" ) ) );
+    }
+
+    public void testValuesRoundTrip() throws Exception
+    {
+        accounts.initializeSchema();
+        Account account = new Account( UUID.randomUUID(), Status.SUSPENDED );
+        account.createdAt = Instant.parse( "2024-03-10T12:30:45.123456Z" );
+        account.lastLogin = LocalDateTime.of( 2024, 3, 31, 2, 30 );
+        account.birthday = LocalDate.of( 1990, 7, 14 );
+        account.homepage = URI.create( "https://example.org/a" );
+        accounts.insert( account );
+        Account empty = new Account( UUID.randomUUID(), null );
+        accounts.insert( empty );
+
+        Account found = (Account) accounts.findById( account.id );
+        assertEquals( account.id, found.id );
+        assertEquals( Status.SUSPENDED, found.status );
+        assertEquals( account.createdAt, found.createdAt );
+        assertEquals( account.lastLogin, found.lastLogin );
+        assertEquals( account.birthday, found.birthday );
+        assertEquals( account.homepage, found.homepage );
+
+        Account nulls = (Account) accounts.findById( empty.id );
+        assertNull( nulls.status );
+        assertNull( nulls.createdAt );
+        assertNull( nulls.homepage );
+
+        found.status = Status.CLOSED;
+        accounts.update( found );
+        List<Object> closed = accounts.query().where( "status", Operator.EQ, Status.CLOSED ).list();
+        assertEquals( 1, closed.size() );
+        assertEquals( account.id, ( (Account) closed.get( 0 ) ).id );
+        assertEquals( 1, accounts.query().where( "createdAt", Operator.LT, Instant.parse( "2025-01-01T00:00:00Z" ) )
+                .list().size() );
+
+        Map<Object, Object> byId = accounts.findAllById( Arrays.asList( account.id, empty.id, UUID.randomUUID() ) );
+        assertEquals( 2, byId.size() );
+
+        try ( PooledConnection conn = DbConnection.getDbConnection().acquire();
+                Statement stmt = conn.getConnection().createStatement();
+                ResultSet resultSet = stmt.executeQuery( "SELECT status FROM account WHERE status IS NOT NULL" ) )
+        {
+            assertTrue( resultSet.next() );
+            assertEquals( "stored as the ordinal", 2, resultSet.getShort( 1 ) );
+        }
+    }
+}